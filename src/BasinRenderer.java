@@ -0,0 +1,647 @@
+import math.CompiledExpression;
+import math.Complex;
+import math.EvaluationContext;
+import math.Expression;
+import math.ExpressionCompiler;
+import math.PreparedFunction;
+import math.exception.UnknownVariableException;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+
+// runs newton's method for every cell of a grid and records which root each start value converges to (the basins of
+// attraction). in the real mode the x axis is the start value and the y axis the value of a parameter of the function
+// (e.g. a in x^3 - a*x + 1), in the complex mode the axes are the real and imaginary part of the start value. the grid
+// is split into tiles which are rendered in parallel, each tile allocates its evaluator once
+public class BasinRenderer {
+
+    public static final short NO_ROOT = -1;
+
+    // cells per side of a tile
+    private static final int TILE_SIZE = 64;
+
+    // roots per table, further roots are reported as NO_ROOT
+    private static final int MAXIMUM_ROOT_COUNT = Short.MAX_VALUE;
+
+
+    private final Expression function;
+    private final Expression functionDerivative;
+    private final String variableName;
+    private final String parameterName;
+    private final Mode mode;
+
+    // function and derivative, evaluated with [variable, parameter]
+    private final CompiledExpression compiledFunctionAndDerivative;
+
+    private double xMin = -1, xMax = 1;
+    private double yMin = -1, yMax = 1;
+    private int width = 256, height = 256;
+
+    private double minimumPrecision = 1e-10;
+    private int maximumIterationCount = 100;
+    private double rootTolerance = 1e-6;
+    private int stagnationLimit = 0;  // iterations without a new minimum of |f|
+
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+
+    // parameterName may be null, then every row of the grid is the same
+    public BasinRenderer (PreparedFunction preparedFunction, String parameterName) throws UnknownVariableException {
+        this(preparedFunction, Mode.REAL, parameterName);
+    }
+
+    // the parameter is only supported by the real mode
+    public BasinRenderer (PreparedFunction preparedFunction, Mode mode, String parameterName) throws UnknownVariableException {
+        if (preparedFunction == null)
+            throw new NullPointerException("prepared function may not be null");
+
+        if (mode == null)
+            throw new NullPointerException("mode may not be null");
+
+        if (Mode.COMPLEX.equals(mode) && parameterName != null)
+            throw new IllegalArgumentException("the complex mode does not support a parameter");
+
+        if (preparedFunction.getFunctionDerivative() == null)
+            throw new IllegalArgumentException("function derivative cannot be computed");
+
+        this.function = preparedFunction.getFunction();
+        this.functionDerivative = preparedFunction.getFunctionDerivative();
+        this.variableName = preparedFunction.getVariableName();
+        this.parameterName = parameterName;
+        this.mode = mode;
+
+        String[] variableNames = parameterName != null ? new String[] {variableName, parameterName} : new String[] {variableName};
+        compiledFunctionAndDerivative = ExpressionCompiler.compile(new Expression[] {function, functionDerivative}, variableNames);
+    }
+
+
+    public Expression getFunction () {
+        return function;
+    }
+
+    public Expression getFunctionDerivative () {
+        return functionDerivative;
+    }
+
+    public String getVariableName () {
+        return variableName;
+    }
+
+    public String getParameterName () {
+        return parameterName;
+    }
+
+    public Mode getMode () {
+        return mode;
+    }
+
+    public double getXMin () {
+        return xMin;
+    }
+
+    public double getXMax () {
+        return xMax;
+    }
+
+    public double getYMin () {
+        return yMin;
+    }
+
+    public double getYMax () {
+        return yMax;
+    }
+
+    public int getWidth () {
+        return width;
+    }
+
+    public int getHeight () {
+        return height;
+    }
+
+    public double getMinimumPrecision () {
+        return minimumPrecision;
+    }
+
+    public int getMaximumIterationCount () {
+        return maximumIterationCount;
+    }
+
+    public double getRootTolerance () {
+        return rootTolerance;
+    }
+
+    public int getStagnationLimit () {
+        return stagnationLimit;
+    }
+
+
+    // the start values (x) and parameter values or imaginary parts of the start values (y) of the cell centers lie within
+    // these ranges
+    public void setArea (double xMin, double xMax, double yMin, double yMax) {
+        this.xMin = xMin;
+        this.xMax = xMax;
+        this.yMin = yMin;
+        this.yMax = yMax;
+    }
+
+    public void setSize (int width, int height) {
+        if (width <= 0 || height <= 0)
+            throw new IllegalArgumentException("width and height must be positive");
+
+        this.width = width;
+        this.height = height;
+    }
+
+    public void setMinimumPrecision (double minimumPrecision) {
+        this.minimumPrecision = minimumPrecision;
+    }
+
+    public void setMaximumIterationCount (int maximumIterationCount) {
+        if (maximumIterationCount <= 0)
+            throw new IllegalArgumentException("maximum iteration count must be positive");
+
+        this.maximumIterationCount = maximumIterationCount;
+    }
+
+    // two results closer than this (relative to their magnitude, at least absolute) are the same root
+    public void setRootTolerance (double rootTolerance) {
+        this.rootTolerance = rootTolerance;
+    }
+
+    // cells whose iteration has not reached a new minimum of |f| for this many iterations get NO_ROOT, like
+    // NewtonsMethod.setStagnationLimit(). cycles (e.g. 0, 1, 0, ... for x^3 - 2x + 2) are always detected
+    public void setStagnationLimit (int stagnationLimit) {
+        if (stagnationLimit < 0)
+            throw new IllegalArgumentException("stagnation limit may not be negative");
+
+        this.stagnationLimit = stagnationLimit;
+    }
+
+    public void setPool (ForkJoinPool pool) {
+        if (pool == null)
+            throw new NullPointerException("pool may not be null");
+
+        this.pool = pool;
+    }
+
+
+    public Basins render () {
+        // with a parameter every row has its own roots, otherwise all cells share one table
+        RootTable[] rootTables = new RootTable[parameterName != null ? height : 1];
+        for (int i=0; i<rootTables.length; i++)
+            rootTables[i] = new RootTable();
+
+        Basins basins = new Basins(width, height, rootTables);
+
+        int renderedHeight = getRenderedHeight();
+        int tileColumnCount = (width + TILE_SIZE - 1) / TILE_SIZE;
+        int tileRowCount = (renderedHeight + TILE_SIZE - 1) / TILE_SIZE;
+        pool.invoke(new RenderTask(basins, 0, tileColumnCount * tileRowCount, tileColumnCount));
+
+        // the roots are found in a nondeterministic order, sorting them makes the indices reproducible
+        for (int i=0; i<rootTables.length; i++) {
+            short[] newIndices = rootTables[i].sort();
+
+            int begin = rootTables.length == 1 ? 0 : i * width;
+            int end = rootTables.length == 1 ? width * renderedHeight : begin + width;
+            for (int j=begin; j<end; j++) {
+                if (basins.roots[j] != NO_ROOT)
+                    basins.roots[j] = newIndices[basins.roots[j]];
+            }
+        }
+
+        for (int y=renderedHeight; y<height; y++) {
+            System.arraycopy(basins.roots, 0, basins.roots, y * width, width);
+            System.arraycopy(basins.iterationCounts, 0, basins.iterationCounts, y * width, width);
+        }
+
+        return basins;
+    }
+
+    // without a parameter every row of the real mode is the same, so only the first one is rendered and then copied
+    private int getRenderedHeight () {
+        return parameterName == null && Mode.REAL.equals(mode) ? 1 : height;
+    }
+
+    private void renderTile (Basins basins, int tileX, int tileY) {
+        Iteration iteration = new Iteration();
+
+        int xBegin = tileX * TILE_SIZE, xEnd = Math.min(xBegin + TILE_SIZE, width);
+        int yBegin = tileY * TILE_SIZE, yEnd = Math.min(yBegin + TILE_SIZE, getRenderedHeight());
+
+        for (int y=yBegin; y<yEnd; y++) {
+            double yValue = getCellCenter(yMin, yMax, height, y);
+            if (parameterName != null)
+                iteration.context.setValue(1, yValue);
+
+            RootTable rootTable = basins.rootTables[basins.rootTables.length == 1 ? 0 : y];
+
+            for (int x=xBegin; x<xEnd; x++) {
+                double xValue = getCellCenter(xMin, xMax, width, x);
+
+                if (Mode.COMPLEX.equals(mode))
+                    iteration.runComplex(xValue, yValue);
+                else
+                    iteration.runReal(xValue);
+
+                int index = y * width + x;
+                basins.roots[index] = iteration.converged ? rootTable.getIndex(iteration.real, iteration.imaginary, rootTolerance) : NO_ROOT;
+                basins.iterationCounts[index] = (short) Math.min(iteration.iterationCount, Short.MAX_VALUE);
+            }
+        }
+    }
+
+    private static double getCellCenter (double min, double max, int count, int i) {
+        return min + (max - min) * (i + 0.5) / count;
+    }
+
+
+    public enum Mode {
+        REAL, COMPLEX
+    }
+
+
+    // newton's method for one cell, the evaluator and buffers are reused for all cells of a tile. like NewtonsMethod it
+    // stops early if the iteration returns to one of its previous values or stagnates
+    private class Iteration {
+
+        private final CompiledExpression compiledFunctionAndDerivative = BasinRenderer.this.compiledFunctionAndDerivative.copy();
+        private final EvaluationContext context = new EvaluationContext(compiledFunctionAndDerivative.getVariableNames());
+
+        private final double[] realResults = new double[2];
+        private final double[] imaginaryResults = new double[2];
+        private final Complex complex = new Complex();
+
+        // ring of the previous values (the most recent at historyIndex) and the best |f| so far
+        private final double[] historyReal = new double[NewtonsMethod.HISTORY_SIZE];
+        private final double[] historyImaginary = new double[NewtonsMethod.HISTORY_SIZE];
+        private int historyIndex, historyCount;
+        private double minimumAbsoluteY;
+        private int stagnationCount;
+
+        // result of the last run
+        private double real, imaginary;
+        private int iterationCount;
+        private boolean converged;
+
+
+        private void runReal (double value) {
+            iterationCount = 0;
+            converged = false;
+            startHistory(value, 0);
+
+            while (true) {
+                context.setValue(0, value);
+                compiledFunctionAndDerivative.evaluate(context, realResults);
+
+                double a = realResults[0];
+                double b = realResults[1];
+
+                if (!Double.isFinite(a))
+                    break;
+
+                if (Math.abs(a) <= minimumPrecision) {
+                    converged = true;
+                    break;
+                }
+
+                if (iterationCount >= maximumIterationCount || !Double.isFinite(b) || b == 0)
+                    break;
+
+                if (iterationCount > 0 && isStuck(value, 0, Math.abs(a)))
+                    break;
+
+                value = value - a/b;
+                iterationCount++;
+            }
+
+            real = value;
+            imaginary = 0;
+        }
+
+        private void runComplex (double real, double imaginary) {
+            iterationCount = 0;
+            converged = false;
+            startHistory(real, imaginary);
+
+            while (true) {
+                context.setValue(0, real, imaginary);
+                compiledFunctionAndDerivative.evaluateComplex(context, realResults, imaginaryResults);
+
+                complex.set(realResults[0], imaginaryResults[0]);
+                if (!complex.isFinite())
+                    break;
+
+                if (complex.getAbsolute() <= minimumPrecision) {
+                    converged = true;
+                    break;
+                }
+
+                if (iterationCount >= maximumIterationCount)
+                    break;
+
+                if (iterationCount > 0 && isStuck(real, imaginary, complex.getAbsolute()))
+                    break;
+
+                // step = f(z) / f'(z)
+                complex.divide(realResults[1], imaginaryResults[1]);
+                if (!complex.isFinite())
+                    break;
+
+                real -= complex.getReal();
+                imaginary -= complex.getImaginary();
+                iterationCount++;
+            }
+
+            this.real = real;
+            this.imaginary = imaginary;
+        }
+
+        private void startHistory (double real, double imaginary) {
+            historyReal[0] = real;
+            historyImaginary[0] = imaginary;
+            historyIndex = 0;
+            historyCount = 1;
+            minimumAbsoluteY = Double.POSITIVE_INFINITY;
+            stagnationCount = 0;
+        }
+
+        // the same checks as NewtonsMethod.isStuck() for the new value with |f| = absoluteY
+        private boolean isStuck (double real, double imaginary, double absoluteY) {
+            double scale = NewtonsMethod.CYCLE_TOLERANCE * NewtonsMethod.CYCLE_TOLERANCE * (real*real + imaginary*imaginary);
+
+            // a sequence which converges makes small steps, a cycle returns to a previous value with large steps
+            if (getSquaredDistance(real, imaginary, historyIndex) > scale) {
+                for (int k=2; k<=historyCount; k++) {
+                    if (getSquaredDistance(real, imaginary, (historyIndex - k + 1 + NewtonsMethod.HISTORY_SIZE) % NewtonsMethod.HISTORY_SIZE) <= scale)
+                        return true;
+                }
+            }
+
+            if (absoluteY < minimumAbsoluteY) {
+                minimumAbsoluteY = absoluteY;
+                stagnationCount = 0;
+            } else if (stagnationLimit > 0 && ++stagnationCount >= stagnationLimit) {
+                return true;
+            }
+
+            historyIndex = (historyIndex + 1) % NewtonsMethod.HISTORY_SIZE;
+            historyReal[historyIndex] = real;
+            historyImaginary[historyIndex] = imaginary;
+            historyCount = Math.min(historyCount + 1, NewtonsMethod.HISTORY_SIZE);
+
+            return false;
+        }
+
+        private double getSquaredDistance (double real, double imaginary, int historyIndex) {
+            double realDistance = real - historyReal[historyIndex];
+            double imaginaryDistance = imaginary - historyImaginary[historyIndex];
+
+            return realDistance*realDistance + imaginaryDistance*imaginaryDistance;
+        }
+
+    }
+
+
+    private class RenderTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Basins basins;
+        private final int begin, end;  // tile indices
+        private final int tileColumnCount;
+
+
+        private RenderTask (Basins basins, int begin, int end, int tileColumnCount) {
+            this.basins = basins;
+            this.begin = begin;
+            this.end = end;
+            this.tileColumnCount = tileColumnCount;
+        }
+
+
+        @Override
+        protected void compute () {
+            if (end - begin > 1) {
+                int middle = (begin + end) >>> 1;
+                invokeAll(new RenderTask(basins, begin, middle, tileColumnCount), new RenderTask(basins, middle, end, tileColumnCount));
+                return;
+            }
+
+            renderTile(basins, begin % tileColumnCount, begin / tileColumnCount);
+        }
+
+    }
+
+
+    // the roots found so far as pairs of real and imaginary part. lookups read an immutable snapshot without locking,
+    // only new roots are added under the lock (there are usually only a few of them). each root keeps the smallest of
+    // the values which converged to it, so the roots and their order do not depend on the order of the cells
+    private static class RootTable {
+
+        private volatile double[] roots = new double[0];
+
+
+        private short getIndex (double real, double imaginary, double tolerance) {
+            double[] roots = this.roots;
+
+            int index = find(roots, real, imaginary, tolerance);
+            if (index == -1)
+                return add(real, imaginary, tolerance);
+
+            if (compare(real, imaginary, roots[2*index], roots[2*index + 1]) < 0)
+                replace(index, real, imaginary);
+
+            return (short) index;
+        }
+
+        private synchronized void replace (int index, double real, double imaginary) {
+            double[] roots = this.roots;
+
+            // another thread may have replaced it with an even smaller value in the meantime
+            if (compare(real, imaginary, roots[2*index], roots[2*index + 1]) >= 0)
+                return;
+
+            double[] newRoots = roots.clone();
+            newRoots[2*index] = real;
+            newRoots[2*index + 1] = imaginary;
+            this.roots = newRoots;
+        }
+
+        // by real and then by imaginary part
+        private static int compare (double real0, double imaginary0, double real1, double imaginary1) {
+            int result = Double.compare(real0, real1);
+            return result != 0 ? result : Double.compare(imaginary0, imaginary1);
+        }
+
+        private synchronized short add (double real, double imaginary, double tolerance) {
+            double[] roots = this.roots;
+
+            // another thread may have added it in the meantime
+            int index = find(roots, real, imaginary, tolerance);
+            if (index != -1)
+                return (short) index;
+
+            int count = roots.length / 2;
+            if (count >= MAXIMUM_ROOT_COUNT)
+                return NO_ROOT;
+
+            double[] newRoots = Arrays.copyOf(roots, roots.length + 2);
+            newRoots[roots.length] = real;
+            newRoots[roots.length + 1] = imaginary;
+            this.roots = newRoots;
+
+            return (short) count;
+        }
+
+        private static int find (double[] roots, double real, double imaginary, double tolerance) {
+            double maximumDistance = tolerance * Math.max(1, Math.hypot(real, imaginary));
+            for (int i=0; i<roots.length; i+=2) {
+                if (Math.hypot(roots[i] - real, roots[i+1] - imaginary) <= maximumDistance)
+                    return i / 2;
+            }
+
+            return -1;
+        }
+
+        // sorts the roots by real and then by imaginary part and returns the new index of each old index
+        private short[] sort () {
+            double[] roots = this.roots;
+
+            Integer[] order = new Integer[roots.length / 2];
+            for (int i=0; i<order.length; i++)
+                order[i] = i;
+
+            Arrays.sort(order, (i, j) -> compare(roots[2*i], roots[2*i + 1], roots[2*j], roots[2*j + 1]));
+
+            double[] sortedRoots = new double[roots.length];
+            short[] newIndices = new short[order.length];
+            for (int i=0; i<order.length; i++) {
+                sortedRoots[2*i] = roots[2*order[i]];
+                sortedRoots[2*i + 1] = roots[2*order[i] + 1];
+                newIndices[order[i]] = (short) i;
+            }
+
+            this.roots = sortedRoots;
+
+            return newIndices;
+        }
+
+        private double[] getParts (int offset) {
+            double[] roots = this.roots;
+
+            double[] parts = new double[roots.length / 2];
+            for (int i=0; i<parts.length; i++)
+                parts[i] = roots[2*i + offset];
+
+            return parts;
+        }
+
+    }
+
+
+    // one entry per cell in each array, row by row
+    public static class Basins {
+
+        private final int width, height;
+
+        private final short[] roots;  // index of the root (see getRoots), or NO_ROOT
+        private final short[] iterationCounts;
+
+        private final RootTable[] rootTables;
+
+
+        private Basins (int width, int height, RootTable[] rootTables) {
+            this.width = width;
+            this.height = height;
+            this.rootTables = rootTables;
+
+            roots = new short[width * height];
+            iterationCounts = new short[width * height];
+        }
+
+
+        public int getWidth () {
+            return width;
+        }
+
+        public int getHeight () {
+            return height;
+        }
+
+        public short[] getRoots () {
+            return roots;
+        }
+
+        public short[] getIterationCounts () {
+            return iterationCounts;
+        }
+
+        public short getRoot (int x, int y) {
+            return roots[y * width + x];
+        }
+
+        public short getIterationCount (int x, int y) {
+            return iterationCounts[y * width + x];
+        }
+
+        // the roots of a row in ascending order, the root indices of the cells refer to this array. without a parameter
+        // all rows share the same roots
+        public double[] getRootValues (int y) {
+            return rootTables[rootTables.length == 1 ? 0 : y].getParts(0);
+        }
+
+        // imaginary parts of the roots, all 0 in the real mode
+        public double[] getImaginaryRootValues (int y) {
+            return rootTables[rootTables.length == 1 ? 0 : y].getParts(1);
+        }
+
+
+        // every root gets its own hue, the more iterations were needed the darker the cell. cells without a root are
+        // black
+        public BufferedImage toImage () {
+            BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+
+            int maximumIterationCount = 1;
+            for (short iterationCount : iterationCounts)
+                maximumIterationCount = Math.max(maximumIterationCount, iterationCount);
+
+            double logMaximumIterationCount = Math.log(maximumIterationCount + 1);
+
+            int[] row = new int[width];
+            for (int y=0; y<height; y++) {
+                for (int x=0; x<width; x++) {
+                    int index = y * width + x;
+                    if (roots[index] == NO_ROOT) {
+                        row[x] = 0;
+                        continue;
+                    }
+
+                    // golden ratio steps keep neighbouring indices apart
+                    float hue = (float) ((roots[index] * 0.618033988749895) % 1);
+                    float brightness = (float) (1 - 0.75 * Math.log(iterationCounts[index] + 1) / logMaximumIterationCount);
+                    row[x] = Color.HSBtoRGB(hue, 0.8f, brightness);
+                }
+
+                // the first row is the smallest parameter value, so it is drawn at the bottom
+                image.setRGB(0, height - 1 - y, width, 1, row, 0, width);
+            }
+
+            return image;
+        }
+
+        public void writePng (File file) throws IOException {
+            ImageIO.write(toImage(), "png", file);
+        }
+
+    }
+
+}
@@ -0,0 +1,196 @@
+import math.PreparedFunction;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+
+// runs newton's method for many start values of the same function in parallel. every task owns one NewtonsMethod
+// (with its own copies of the compiled programs) and reuses it for all of its start values
+public class BatchNewtonSolver {
+
+    // start values per task
+    private static final int TASK_SIZE = 1024;
+
+    private static final NewtonsMethod.Error[] ERRORS = NewtonsMethod.Error.values();
+
+
+    private final PreparedFunction preparedFunction;
+    private final double minimumPrecision;
+    private final int maximumIterationCount;
+    private final NewtonsMethod.DerivativeMode derivativeMode;
+
+    private final ForkJoinPool pool;
+
+    private boolean codeGeneration = false;
+
+
+    public BatchNewtonSolver (PreparedFunction preparedFunction, double minimumPrecision, int maximumIterationCount) {
+        this(preparedFunction, minimumPrecision, maximumIterationCount, NewtonsMethod.DerivativeMode.SYMBOLIC, ForkJoinPool.commonPool());
+    }
+
+    public BatchNewtonSolver (PreparedFunction preparedFunction, double minimumPrecision, int maximumIterationCount, NewtonsMethod.DerivativeMode derivativeMode, ForkJoinPool pool) {
+        if (preparedFunction == null)
+            throw new NullPointerException("prepared function may not be null");
+
+        if (derivativeMode == null)
+            throw new NullPointerException("derivative mode may not be null");
+
+        if (pool == null)
+            throw new NullPointerException("pool may not be null");
+
+        this.preparedFunction = preparedFunction;
+        this.minimumPrecision = minimumPrecision;
+        this.maximumIterationCount = maximumIterationCount;
+        this.derivativeMode = derivativeMode;
+        this.pool = pool;
+    }
+
+
+    public PreparedFunction getPreparedFunction () {
+        return preparedFunction;
+    }
+
+    public double getMinimumPrecision () {
+        return minimumPrecision;
+    }
+
+    public int getMaximumIterationCount () {
+        return maximumIterationCount;
+    }
+
+    public NewtonsMethod.DerivativeMode getDerivativeMode () {
+        return derivativeMode;
+    }
+
+    public boolean isCodeGeneration () {
+        return codeGeneration;
+    }
+
+
+    // evaluates the function with classes generated for it instead of the compiled programs, see
+    // NewtonsMethod.setCodeGeneration(). the classes are generated once and shared by all tasks
+    public void setCodeGeneration (boolean codeGeneration) {
+        this.codeGeneration = codeGeneration;
+    }
+
+
+    public Result solve (double[] startValues) {
+        if (startValues == null)
+            throw new NullPointerException("start values may not be null");
+
+        Result result = new Result(startValues.length);
+        pool.invoke(new SolveTask(startValues, result, 0, startValues.length));
+
+        return result;
+    }
+
+    private NewtonsMethod createNewtonsMethod () {
+        NewtonsMethod newtonsMethod = new NewtonsMethod(preparedFunction, 0, minimumPrecision, maximumIterationCount);
+
+        // the prepared function already contains the symbolic derivative
+        if (!NewtonsMethod.DerivativeMode.SYMBOLIC.equals(derivativeMode))
+            newtonsMethod.setDerivativeMode(derivativeMode);
+
+        newtonsMethod.setCodeGeneration(codeGeneration);
+
+        return newtonsMethod;
+    }
+
+
+    private class SolveTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final double[] startValues;
+        private final Result result;
+        private final int begin, end;
+
+
+        private SolveTask (double[] startValues, Result result, int begin, int end) {
+            this.startValues = startValues;
+            this.result = result;
+            this.begin = begin;
+            this.end = end;
+        }
+
+
+        @Override
+        protected void compute () {
+            if (end - begin > TASK_SIZE) {
+                int middle = (begin + end) >>> 1;
+                invokeAll(new SolveTask(startValues, result, begin, middle), new SolveTask(startValues, result, middle, end));
+                return;
+            }
+
+            NewtonsMethod newtonsMethod = createNewtonsMethod();
+
+            for (int i=begin; i<end; i++) {
+                newtonsMethod.setStartValue(startValues[i]);
+                newtonsMethod.reset();
+
+                while (!newtonsMethod.step());
+
+                result.x[i] = newtonsMethod.getCurrentValueX();
+                result.y[i] = newtonsMethod.getCurrentValueY();
+                result.iterationCounts[i] = newtonsMethod.getIterationCount();
+                result.errors[i] = (byte) newtonsMethod.getError().ordinal();
+            }
+        }
+
+    }
+
+
+    // one entry per start value in each array
+    public static class Result {
+
+        private final double[] x;
+        private final double[] y;
+        private final int[] iterationCounts;
+        private final byte[] errors;  // ordinals of NewtonsMethod.Error
+
+
+        private Result (int size) {
+            x = new double[size];
+            y = new double[size];
+            iterationCounts = new int[size];
+            errors = new byte[size];
+        }
+
+
+        public int getSize () {
+            return x.length;
+        }
+
+        public double[] getX () {
+            return x;
+        }
+
+        public double[] getY () {
+            return y;
+        }
+
+        public int[] getIterationCounts () {
+            return iterationCounts;
+        }
+
+        public byte[] getErrors () {
+            return errors;
+        }
+
+        public NewtonsMethod.Error getError (int index) {
+            return ERRORS[errors[index]];
+        }
+
+        public int getErrorCount (NewtonsMethod.Error error) {
+            int count = 0;
+            for (byte e : errors) {
+                if (e == error.ordinal())
+                    count++;
+            }
+
+            return count;
+        }
+
+    }
+
+}
@@ -0,0 +1,389 @@
+import math.CompiledExpression;
+import math.EvaluationContext;
+import math.ExpressionCompiler;
+import math.Interval;
+import math.PreparedFunction;
+import math.exception.UnknownVariableException;
+
+import java.util.Arrays;
+
+
+// guaranteed enclosures of all roots of a function within an interval. the function is evaluated with interval
+// arithmetic over each box, a box whose range does not contain 0 has no root and is discarded. otherwise the box is
+// narrowed by the interval newton or the krawczyk operator, which contains all roots of the box, or bisected if that
+// does not make progress. if the operator maps a box into itself, the box contains exactly one root. the derivative is
+// the one of the prepared function, without it the boxes are only bisected. the compiled expressions are reused, so a
+// solver must not be shared between threads
+public class IntervalNewtonSolver {
+
+    public enum Operator {
+        // N(X) = m - f(m) / f'(X), only applicable if f'(X) does not contain 0
+        NEWTON,
+
+        // K(X) = m - y f(m) + (1 - y f'(X)) (X - m) with y = 1 / mid(f'(X)), does not narrow the box if f'(X) contains
+        // 0 and is not applicable if f'(X) is unbounded, so boxes around poles are only bisected
+        KRAWCZYK
+    }
+
+
+    // a narrowed box has to be at most this fraction of the previous one, otherwise it is bisected
+    private static final double NARROWING_FACTOR = 0.5;
+
+
+    private final PreparedFunction preparedFunction;
+    private final CompiledExpression compiledFunction;
+    private final CompiledExpression compiledFunctionDerivative;  // null if the derivative cannot be computed
+
+    private final EvaluationContext context;
+    private final Interval value = new Interval();
+    private final Interval derivative = new Interval();
+    private final Interval midpointValue = new Interval();
+    private final Interval image = new Interval();
+    private final Interval term = new Interval();
+
+    private Operator operator = Operator.NEWTON;
+    private double tolerance = 1e-12;
+    private int maximumBoxCount = 100000;
+    private double mergeDistance = 1e-6;
+
+    // boxes which still have to be refined, the last one is refined next
+    private double[] stackLower = new double[64];
+    private double[] stackUpper = new double[64];
+    private boolean[] stackUnique = new boolean[64];
+    private int stackSize;
+
+    private double[] enclosureLower = new double[16];
+    private double[] enclosureUpper = new double[16];
+    private boolean[] enclosureUnique = new boolean[16];
+    private int enclosureCount;
+
+    private int boxCount;
+    private int excludedBoxCount;
+
+
+    public IntervalNewtonSolver (PreparedFunction preparedFunction) throws UnknownVariableException {
+        if (preparedFunction == null)
+            throw new NullPointerException("prepared function may not be null");
+
+        this.preparedFunction = preparedFunction;
+
+        String variableName = preparedFunction.getVariableName();
+        compiledFunction = ExpressionCompiler.compile(preparedFunction.getFunction(), variableName);
+        compiledFunctionDerivative = preparedFunction.getFunctionDerivative() != null ? ExpressionCompiler.compile(preparedFunction.getFunctionDerivative(), variableName) : null;
+        context = new EvaluationContext(variableName);
+    }
+
+
+    public PreparedFunction getPreparedFunction () {
+        return preparedFunction;
+    }
+
+    public Operator getOperator () {
+        return operator;
+    }
+
+    public double getTolerance () {
+        return tolerance;
+    }
+
+    public int getMaximumBoxCount () {
+        return maximumBoxCount;
+    }
+
+    public double getMergeDistance () {
+        return mergeDistance;
+    }
+
+
+    public void setOperator (Operator operator) {
+        if (operator == null)
+            throw new NullPointerException("operator may not be null");
+
+        this.operator = operator;
+    }
+
+    // boxes are refined until their width is at most this value (relative to their magnitude if it is larger than 1)
+    public void setTolerance (double tolerance) {
+        if (!(tolerance >= 0))
+            throw new IllegalArgumentException("tolerance may not be negative");
+
+        this.tolerance = tolerance;
+    }
+
+    // boxes which are left once this many boxes have been refined are returned as enclosures without being refined
+    public void setMaximumBoxCount (int maximumBoxCount) {
+        if (maximumBoxCount <= 0)
+            throw new IllegalArgumentException("maximum box count must be positive");
+
+        this.maximumBoxCount = maximumBoxCount;
+    }
+
+    // enclosures which are not unique are merged if the gap between them is at most this value (relative to their
+    // magnitude if it is larger than 1). the rounding errors leave many tiny boxes around a multiple root (e.g. the one
+    // of 1 - cos(x)), which are only excluded in between
+    public void setMergeDistance (double mergeDistance) {
+        if (!(mergeDistance >= 0))
+            throw new IllegalArgumentException("merge distance may not be negative");
+
+        this.mergeDistance = mergeDistance;
+    }
+
+
+    public Enclosures solve (double lower, double upper) {
+        if (!Double.isFinite(lower) || !Double.isFinite(upper))
+            throw new IllegalArgumentException("interval must be finite");
+
+        if (lower > upper)
+            throw new IllegalArgumentException("lower bound may not be greater than the upper bound");
+
+
+        stackSize = 0;
+        enclosureCount = 0;
+        boxCount = 0;
+        excludedBoxCount = 0;
+
+        push(lower, upper, false);
+        while (stackSize > 0) {
+            stackSize--;
+            double a = stackLower[stackSize];
+            double b = stackUpper[stackSize];
+            boolean unique = stackUnique[stackSize];
+
+            if (boxCount >= maximumBoxCount) {
+                addEnclosure(a, b, false);
+                continue;
+            }
+
+            boxCount++;
+            refine(a, b, unique);
+        }
+
+        return new Enclosures(Arrays.copyOf(enclosureLower, enclosureCount), Arrays.copyOf(enclosureUpper, enclosureCount), Arrays.copyOf(enclosureUnique, enclosureCount), boxCount, excludedBoxCount);
+    }
+
+    // unique is true if the box is known to contain exactly one root
+    private void refine (double a, double b, boolean unique) {
+        evaluate(compiledFunction, a, b, value);
+        if (!value.contains(0)) {
+            excludedBoxCount++;
+            return;
+        }
+
+        // a zero plateau (e.g. of round(x)) is not bisected any further
+        double m = getMidpoint(a, b);
+        if (isNarrow(a, b, m) || (value.getLower() == 0 && value.getUpper() == 0)) {
+            addEnclosure(a, b, unique);
+            return;
+        }
+
+        if (applyOperator(a, b, m)) {
+            double c = Math.max(a, image.getLower());
+            double d = Math.min(b, image.getUpper());
+
+            // all roots of the box lie within the image
+            if (!(c <= d)) {
+                excludedBoxCount++;
+                return;
+            }
+
+            if (!unique)
+                unique = mapsIntoItself(a, b);
+
+            if (d - c <= NARROWING_FACTOR * (b - a)) {
+                push(c, d, unique);
+                return;
+            }
+
+            a = c;
+            b = d;
+            m = getMidpoint(a, b);
+            if (isNarrow(a, b, m)) {
+                addEnclosure(a, b, unique);
+                return;
+            }
+        }
+
+        // a half of a box with one root may contain none. the lower half is refined first, so the enclosures are found
+        // in ascending order
+        push(m, b, false);
+        push(a, m, false);
+    }
+
+    // computes the image of the operator for the box into image, false if the operator is not applicable
+    private boolean applyOperator (double a, double b, double m) {
+        if (compiledFunctionDerivative == null)
+            return false;
+
+        evaluate(compiledFunctionDerivative, a, b, derivative);
+        evaluate(compiledFunction, m, m, midpointValue);
+        if (derivative.isEmpty() || midpointValue.isEmpty())
+            return false;
+
+        switch (operator) {
+            case NEWTON:
+                if (derivative.contains(0))
+                    return false;
+
+                image.set(midpointValue.getLower(), midpointValue.getUpper());
+                image.divide(derivative.getLower(), derivative.getUpper());
+                image.negate();
+                image.add(m, m);
+                return true;
+
+            case KRAWCZYK: {
+                double y = 1 / derivative.getMidpoint();
+                if (!Double.isFinite(y) || Double.isInfinite(derivative.getWidth()))
+                    return false;
+
+                // (1 - y f'(X)) (X - m)
+                image.set(derivative.getLower(), derivative.getUpper());
+                image.multiply(-y, -y);
+                image.add(1, 1);
+
+                term.set(a, b);
+                term.subtract(m, m);
+                image.multiply(term.getLower(), term.getUpper());
+
+                // m - y f(m)
+                term.set(midpointValue.getLower(), midpointValue.getUpper());
+                term.multiply(-y, -y);
+                term.add(m, m);
+
+                image.add(term.getLower(), term.getUpper());
+                return true;
+            }
+
+
+            default:
+                throw new UnknownError();
+        }
+    }
+
+    // whether the image of the last applied operator proves that the box contains exactly one root. the newton
+    // operator only has to map the box into itself, the krawczyk operator into its interior
+    private boolean mapsIntoItself (double a, double b) {
+        if (Operator.NEWTON.equals(operator))
+            return a <= image.getLower() && image.getUpper() <= b;
+
+        return a < image.getLower() && image.getUpper() < b;
+    }
+
+    private void evaluate (CompiledExpression expression, double lower, double upper, Interval result) {
+        context.setInterval(0, lower, upper);
+        expression.evaluateInterval(context, result);
+    }
+
+    private static double getMidpoint (double a, double b) {
+        return Math.min(Math.max(a/2 + b/2, a), b);
+    }
+
+    // also true if the box cannot be bisected anymore
+    private boolean isNarrow (double a, double b, double m) {
+        return b - a <= tolerance * Math.max(1, Math.abs(m)) || !(a < m && m < b);
+    }
+
+    private void push (double a, double b, boolean unique) {
+        if (stackSize == stackLower.length) {
+            stackLower = Arrays.copyOf(stackLower, 2*stackSize);
+            stackUpper = Arrays.copyOf(stackUpper, 2*stackSize);
+            stackUnique = Arrays.copyOf(stackUnique, 2*stackSize);
+        }
+
+        stackLower[stackSize] = a;
+        stackUpper[stackSize] = b;
+        stackUnique[stackSize] = unique;
+        stackSize++;
+    }
+
+    // enclosures which touch the previous one are merged, e.g. the two halves of a box with the root at its midpoint, and
+    // so are close ones which are both not unique. whether the merged enclosure contains exactly one root is checked again
+    private void addEnclosure (double a, double b, boolean unique) {
+        if (enclosureCount > 0 && isMerged(a, unique)) {
+            a = Math.min(a, enclosureLower[enclosureCount-1]);
+            b = Math.max(b, enclosureUpper[enclosureCount-1]);
+            unique = applyOperator(a, b, getMidpoint(a, b)) && mapsIntoItself(a, b);
+
+            enclosureCount--;
+        }
+
+        if (enclosureCount == enclosureLower.length) {
+            enclosureLower = Arrays.copyOf(enclosureLower, 2*enclosureCount);
+            enclosureUpper = Arrays.copyOf(enclosureUpper, 2*enclosureCount);
+            enclosureUnique = Arrays.copyOf(enclosureUnique, 2*enclosureCount);
+        }
+
+        enclosureLower[enclosureCount] = a;
+        enclosureUpper[enclosureCount] = b;
+        enclosureUnique[enclosureCount] = unique;
+        enclosureCount++;
+    }
+
+
+    private boolean isMerged (double a, boolean unique) {
+        double previous = enclosureUpper[enclosureCount-1];
+        if (a <= previous)
+            return true;
+
+        return !unique && !enclosureUnique[enclosureCount-1] && a - previous <= mergeDistance * Math.max(1, Math.abs(previous));
+    }
+
+
+    // the enclosures in ascending order. every root of the function within the interval lies in one of them, but an
+    // enclosure which is not unique may also contain no root or several ones
+    public static class Enclosures {
+
+        private final double[] lowerBounds;
+        private final double[] upperBounds;
+        private final boolean[] unique;
+        private final int boxCount;
+        private final int excludedBoxCount;
+
+
+        private Enclosures (double[] lowerBounds, double[] upperBounds, boolean[] unique, int boxCount, int excludedBoxCount) {
+            this.lowerBounds = lowerBounds;
+            this.upperBounds = upperBounds;
+            this.unique = unique;
+            this.boxCount = boxCount;
+            this.excludedBoxCount = excludedBoxCount;
+        }
+
+
+        public int getSize () {
+            return lowerBounds.length;
+        }
+
+        public double[] getLowerBounds () {
+            return lowerBounds;
+        }
+
+        public double[] getUpperBounds () {
+            return upperBounds;
+        }
+
+        // true if the enclosure is proven to contain exactly one root
+        public boolean isUnique (int i) {
+            return unique[i];
+        }
+
+        public double getRoot (int i) {
+            return getMidpoint(lowerBounds[i], upperBounds[i]);
+        }
+
+        // the maximum distance between getRoot(i) and the roots within the enclosure
+        public double getErrorBound (int i) {
+            double root = getRoot(i);
+            return Math.nextUp(Math.max(root - lowerBounds[i], upperBounds[i] - root));
+        }
+
+        // boxes which have been refined, and those of them which have been proven to contain no root
+        public int getBoxCount () {
+            return boxCount;
+        }
+
+        public int getExcludedBoxCount () {
+            return excludedBoxCount;
+        }
+
+    }
+
+}
@@ -0,0 +1,432 @@
+import math.CompiledExpression;
+import math.EvaluationContext;
+import math.ExpressionCompiler;
+import math.Interval;
+import math.Polynomial;
+import math.PreparedFunction;
+import math.exception.UnknownVariableException;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+
+// finds all roots of a function within an interval. the interval is split into subintervals, whose ends are evaluated
+// in parallel. every sign change is refined with Method.BRACKETED, every local minimum of |f| without a sign change next
+// to it (e.g. the double root of x^2) with newton's method starting at it. roots closer than the root tolerance are
+// merged. roots which neither change the sign nor form a local minimum at a sample (e.g. two roots within one
+// subinterval) can be missed. the interval evaluation of the function skips the tasks and local minima whose range
+// provably contains no root, which saves the samples and newton's method from local minima like the one of x^2+1
+public class IntervalRootFinder {
+
+    // subintervals per task
+    private static final int TASK_SIZE = 256;
+
+    private static final NewtonsMethod.Error[] ERRORS = NewtonsMethod.Error.values();
+
+
+    private final PreparedFunction preparedFunction;
+    private final CompiledExpression compiledFunction;
+    private final Polynomial polynomial;
+
+    private int subintervalCount = 1024;
+    private double minimumPrecision = 1e-10;
+    private int maximumIterationCount = 100;
+    private double rootTolerance = 1e-6;
+    private boolean pruning = true;
+
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+
+    public IntervalRootFinder (PreparedFunction preparedFunction) throws UnknownVariableException {
+        if (preparedFunction == null)
+            throw new NullPointerException("prepared function may not be null");
+
+        this.preparedFunction = preparedFunction;
+        this.compiledFunction = ExpressionCompiler.compile(preparedFunction.getFunction(), preparedFunction.getVariableName());
+        this.polynomial = preparedFunction.getHornerPolynomial();
+    }
+
+
+    public PreparedFunction getPreparedFunction () {
+        return preparedFunction;
+    }
+
+    public int getSubintervalCount () {
+        return subintervalCount;
+    }
+
+    public double getMinimumPrecision () {
+        return minimumPrecision;
+    }
+
+    public int getMaximumIterationCount () {
+        return maximumIterationCount;
+    }
+
+    public double getRootTolerance () {
+        return rootTolerance;
+    }
+
+    public boolean isPruning () {
+        return pruning;
+    }
+
+    public ForkJoinPool getPool () {
+        return pool;
+    }
+
+
+    public void setSubintervalCount (int subintervalCount) {
+        if (subintervalCount <= 0)
+            throw new IllegalArgumentException("subinterval count must be positive");
+
+        this.subintervalCount = subintervalCount;
+    }
+
+    public void setMinimumPrecision (double minimumPrecision) {
+        this.minimumPrecision = minimumPrecision;
+    }
+
+    public void setMaximumIterationCount (int maximumIterationCount) {
+        this.maximumIterationCount = maximumIterationCount;
+    }
+
+    // roots are merged if they differ by at most this value (relative to their magnitude if it is larger than 1)
+    public void setRootTolerance (double rootTolerance) {
+        this.rootTolerance = rootTolerance;
+    }
+
+    // skips ranges which are proven to have no root (or value within the precision) by the interval evaluation
+    public void setPruning (boolean pruning) {
+        this.pruning = pruning;
+    }
+
+    public void setPool (ForkJoinPool pool) {
+        if (pool == null)
+            throw new NullPointerException("pool may not be null");
+
+        this.pool = pool;
+    }
+
+
+    public Roots find (double lower, double upper) {
+        if (!Double.isFinite(lower) || !Double.isFinite(upper))
+            throw new IllegalArgumentException("interval must be finite");
+
+        if (lower >= upper)
+            throw new IllegalArgumentException("lower bound must be less than the upper bound");
+
+
+        Candidates candidates = new Candidates(subintervalCount);
+        pool.invoke(new FindTask(lower, upper, candidates, 0, subintervalCount));
+
+        return candidates.merge(rootTolerance);
+    }
+
+    private static double getSample (double lower, double upper, int count, int i) {
+        return i < count ? lower + (upper - lower) * i / count : upper;
+    }
+
+
+    private class FindTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final double lower, upper;
+        private final Candidates candidates;
+        private final int begin, end;
+
+
+        private FindTask (double lower, double upper, Candidates candidates, int begin, int end) {
+            this.lower = lower;
+            this.upper = upper;
+            this.candidates = candidates;
+            this.begin = begin;
+            this.end = end;
+        }
+
+
+        @Override
+        protected void compute () {
+            if (pruning && isRootFree(compiledFunction.copy(), new EvaluationContext(preparedFunction.getVariableName()), new Interval(), getSample(lower, upper, candidates.subintervalCount, begin), getSample(lower, upper, candidates.subintervalCount, end)))
+                return;
+
+            if (end - begin > TASK_SIZE) {
+                int middle = (begin + end) >>> 1;
+                invokeAll(new FindTask(lower, upper, candidates, begin, middle), new FindTask(lower, upper, candidates, middle, end));
+                return;
+            }
+
+            new Search(lower, upper, candidates).run(begin, end);
+        }
+
+    }
+
+    // refines the candidates of a range of subintervals, the evaluators are reused for all of them
+    private class Search {
+
+        private final double lower, upper;
+        private final Candidates candidates;
+        private final int count;
+
+        private final CompiledExpression compiledFunction = IntervalRootFinder.this.compiledFunction.copy();
+        private final EvaluationContext context = new EvaluationContext(preparedFunction.getVariableName());
+        private final Interval interval = new Interval();
+
+        private final NewtonsMethod bracketedMethod;
+        private final NewtonsMethod localMethod;
+
+        // samples begin-1 to end+1 (as far as they exist)
+        private double[] x, y;
+        private int offset;
+
+
+        private Search (double lower, double upper, Candidates candidates) {
+            this.lower = lower;
+            this.upper = upper;
+            this.candidates = candidates;
+            this.count = candidates.subintervalCount;
+
+            bracketedMethod = new NewtonsMethod(preparedFunction, 0, minimumPrecision, maximumIterationCount);
+            bracketedMethod.setMethod(NewtonsMethod.Method.BRACKETED);
+
+            localMethod = new NewtonsMethod(preparedFunction, 0, minimumPrecision, maximumIterationCount);
+            localMethod.setMethod(NewtonsMethod.Method.AUTO);
+        }
+
+
+        private void run (int begin, int end) {
+            offset = Math.max(begin - 1, 0);
+            int last = Math.min(end + 1, count);
+
+            x = new double[last - offset + 1];
+            y = new double[x.length];
+            for (int i=0; i<x.length; i++) {
+                x[i] = getSample(lower, upper, count, offset + i);
+                y[i] = evaluate(x[i]);
+            }
+
+            for (int i=begin; i<end; i++) {
+                searchSample(i);
+                searchSubinterval(i);
+            }
+
+            // the upper end of the interval belongs to the last task
+            if (end == count)
+                searchSample(count);
+        }
+
+        private double evaluate (double value) {
+            if (polynomial != null)
+                return polynomial.evaluate(value);
+
+            context.setValue(0, value);
+            return compiledFunction.evaluate(context);
+        }
+
+        private double getX (int i) {
+            return x[i - offset];
+        }
+
+        private double getY (int i) {
+            return y[i - offset];
+        }
+
+        private boolean hasSignChange (int i) {
+            double y0 = getY(i), y1 = getY(i+1);
+            return Math.abs(y0) > minimumPrecision && Math.abs(y1) > minimumPrecision && (y0 < 0) != (y1 < 0);
+        }
+
+        // a root at the sample itself or newton's method from a local minimum of |f|, which has to converge within the
+        // neighbouring subintervals
+        private void searchSample (int i) {
+            double sampleY = getY(i);
+            if (!Double.isFinite(sampleY))
+                return;
+
+            // of several neighbouring samples within the precision (e.g. close to the flat root of x^4 or on a zero
+            // plateau of round(x)), only the one with the smallest |f| is a root. non-finite neighbours count as larger
+            double absolute = Math.abs(sampleY);
+            boolean leftLarger = i == 0 || !(Math.abs(getY(i-1)) < absolute);
+            boolean rightLarger = i == count || !(Math.abs(getY(i+1)) <= absolute);
+
+            if (absolute <= minimumPrecision) {
+                if (leftLarger && rightLarger)
+                    candidates.set(2*i + 1, getX(i), sampleY, NewtonsMethod.Error.SUCCESS);
+
+                return;
+            }
+
+            if (i == 0 || i == count || hasSignChange(i-1) || hasSignChange(i))
+                return;
+
+            // flat parts, where |f| is the same at all three samples, are no minimum
+            if (!(absolute <= Math.abs(getY(i-1)) && absolute <= Math.abs(getY(i+1))) || !(leftLarger && rightLarger))
+                return;
+
+            if (pruning && isRootFree(compiledFunction, context, interval, getX(i-1), getX(i+1)))
+                return;
+
+            localMethod.setStartValue(getX(i));
+            localMethod.reset();
+            while (!localMethod.step());
+
+            double root = localMethod.getCurrentValueX();
+            NewtonsMethod.Error error = localMethod.getError();
+
+            // a root outside of the neighbouring subintervals is found from another sample, if at all
+            if (NewtonsMethod.Error.SUCCESS.equals(error) && (root < getX(i-1) || root > getX(i+1)))
+                return;
+
+            candidates.set(2*i + 1, root, localMethod.getCurrentValueY(), error);
+        }
+
+        private void searchSubinterval (int i) {
+            if (!hasSignChange(i))
+                return;
+
+            double x0 = getX(i), x1 = getX(i+1);
+
+            bracketedMethod.setBracket(x0, x1);
+            bracketedMethod.setStartValue(x0 + (x1 - x0) / 2);
+            bracketedMethod.reset();
+            while (!bracketedMethod.step());
+
+            double rootY = bracketedMethod.getCurrentValueY();
+            NewtonsMethod.Error error = bracketedMethod.getError();
+
+            // a sign change enclosed between neighbouring doubles is a root which the precision cannot resolve, unless
+            // the function does not get smaller there, which is a pole (e.g. of tan)
+            if (NewtonsMethod.Error.BRACKET_CONVERGED.equals(error)) {
+                if (Math.abs(rootY) >= Math.min(Math.abs(getY(i)), Math.abs(getY(i+1))))
+                    return;
+
+                error = NewtonsMethod.Error.SUCCESS;
+            }
+
+            candidates.set(2*i, bracketedMethod.getCurrentValueX(), rootY, error);
+        }
+
+    }
+
+
+    // whether |f| is larger than the precision on the whole range, so there is neither a root nor a sample which would
+    // be taken as one
+    private boolean isRootFree (CompiledExpression compiledFunction, EvaluationContext context, Interval interval, double lower, double upper) {
+        context.setInterval(0, lower, upper);
+        compiledFunction.evaluateInterval(context, interval);
+
+        return interval.isEmpty() || interval.getLower() > minimumPrecision || interval.getUpper() < -minimumPrecision;
+    }
+
+
+    // two slots per subinterval: 2i for the sign change within it, 2i+1 for its lower end, and one for the upper end of
+    // the interval. every slot is written by one task only
+    private static class Candidates {
+
+        private static final byte NONE = -1;
+
+        private final int subintervalCount;
+        private final double[] x, y;
+        private final byte[] errors;  // ordinals of NewtonsMethod.Error, NONE for empty slots
+
+
+        private Candidates (int subintervalCount) {
+            this.subintervalCount = subintervalCount;
+
+            x = new double[2*subintervalCount + 2];
+            y = new double[x.length];
+            errors = new byte[x.length];
+            Arrays.fill(errors, NONE);
+        }
+
+
+        private void set (int slot, double x, double y, NewtonsMethod.Error error) {
+            this.x[slot] = x;
+            this.y[slot] = y;
+            this.errors[slot] = (byte) error.ordinal();
+        }
+
+        // sorts the successful candidates and keeps the one with the smallest |f| of each group of close roots
+        private Roots merge (double rootTolerance) {
+            int[] errorCounts = new int[ERRORS.length];
+            int successCount = 0;
+            for (byte error : errors) {
+                if (error != NONE)
+                    errorCounts[error]++;
+
+                if (error == NewtonsMethod.Error.SUCCESS.ordinal())
+                    successCount++;
+            }
+
+            double[][] found = new double[successCount][];
+            for (int i=0, j=0; i<x.length; i++) {
+                if (errors[i] == NewtonsMethod.Error.SUCCESS.ordinal())
+                    found[j++] = new double[] {x[i], y[i]};
+            }
+
+            Arrays.sort(found, (a, b) -> Double.compare(a[0], b[0]));
+
+            double[] roots = new double[successCount];
+            double[] values = new double[successCount];
+            int rootCount = 0;
+            for (double[] candidate : found) {
+                if (rootCount > 0) {
+                    double previous = roots[rootCount-1];
+                    if (candidate[0] - previous <= rootTolerance * Math.max(1, Math.abs(previous))) {
+                        if (Math.abs(candidate[1]) < Math.abs(values[rootCount-1])) {
+                            roots[rootCount-1] = candidate[0];
+                            values[rootCount-1] = candidate[1];
+                        }
+
+                        continue;
+                    }
+                }
+
+                roots[rootCount] = candidate[0];
+                values[rootCount] = candidate[1];
+                rootCount++;
+            }
+
+            return new Roots(Arrays.copyOf(roots, rootCount), Arrays.copyOf(values, rootCount), errorCounts);
+        }
+
+    }
+
+
+    // the roots in ascending order and the function values at them
+    public static class Roots {
+
+        private final double[] roots;
+        private final double[] values;
+        private final int[] errorCounts;  // per NewtonsMethod.Error, one count per refined candidate
+
+
+        private Roots (double[] roots, double[] values, int[] errorCounts) {
+            this.roots = roots;
+            this.values = values;
+            this.errorCounts = errorCounts;
+        }
+
+
+        public int getSize () {
+            return roots.length;
+        }
+
+        public double[] getRoots () {
+            return roots;
+        }
+
+        public double[] getValues () {
+            return values;
+        }
+
+        // candidates which ended with the error, e.g. MAX_ITERATIONS_REACHED for a local minimum which is not a root
+        public int getErrorCount (NewtonsMethod.Error error) {
+            return errorCounts[error.ordinal()];
+        }
+
+    }
+
+}
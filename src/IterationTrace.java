@@ -0,0 +1,140 @@
+import java.util.Arrays;
+
+
+// records the iterations of newton's method in primitive arrays: x, f(x), f'(x) (NaN if the method did not evaluate it)
+// and the step to x (NaN for the start value). with a maximum size only the last entries are kept, the arrays are then
+// used as a ring buffer. a trace can be reused, NewtonsMethod clears it on reset
+public class IterationTrace {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+
+    private final int maximumSize;  // 0 for no limit
+
+    private double[] xValues, yValues, derivatives, steps;
+    private int first;  // index of the oldest entry
+    private int size;
+    private int recordedCount;  // including the entries which have been dropped
+
+    private final View view = new View();
+
+
+    public IterationTrace () {
+        this(0);
+    }
+
+    public IterationTrace (int maximumSize) {
+        if (maximumSize < 0)
+            throw new IllegalArgumentException("maximum size may not be negative");
+
+        this.maximumSize = maximumSize;
+
+        int capacity = maximumSize > 0 ? Math.min(INITIAL_CAPACITY, maximumSize) : INITIAL_CAPACITY;
+        xValues = new double[capacity];
+        yValues = new double[capacity];
+        derivatives = new double[capacity];
+        steps = new double[capacity];
+    }
+
+
+    public int getMaximumSize () {
+        return maximumSize;
+    }
+
+    // read-only access to the entries without copying them, the view reflects later changes of the trace
+    public View getView () {
+        return view;
+    }
+
+
+    public void clear () {
+        first = 0;
+        size = 0;
+        recordedCount = 0;
+    }
+
+    void record (double x, double y, double derivative) {
+        double step = size > 0 ? x - xValues[getIndex(size-1)] : Double.NaN;
+
+        int index;
+        if (size < xValues.length) {
+            index = getIndex(size);
+            size++;
+        } else if (maximumSize == 0 || xValues.length < maximumSize) {
+            // the ring only wraps around once the maximum size is reached, so the entries are in order here
+            int capacity = xValues.length * 2;
+            if (maximumSize > 0)
+                capacity = Math.min(capacity, maximumSize);
+
+            xValues = Arrays.copyOf(xValues, capacity);
+            yValues = Arrays.copyOf(yValues, capacity);
+            derivatives = Arrays.copyOf(derivatives, capacity);
+            steps = Arrays.copyOf(steps, capacity);
+
+            index = size;
+            size++;
+        } else {
+            // the oldest entry is overwritten
+            index = first;
+            first = getIndex(1);
+        }
+
+        xValues[index] = x;
+        yValues[index] = y;
+        derivatives[index] = derivative;
+        steps[index] = step;
+
+        recordedCount++;
+    }
+
+    private int getIndex (int i) {
+        int index = first + i;
+        return index < xValues.length ? index : index - xValues.length;
+    }
+
+
+    // entry 0 is the oldest entry which is still kept
+    public class View {
+
+        private View () {
+        }
+
+
+        public int getSize () {
+            return size;
+        }
+
+        // number of the iteration of the entry, 0 for the start value
+        public int getIteration (int i) {
+            checkIndex(i);
+            return recordedCount - size + i;
+        }
+
+        public double getX (int i) {
+            checkIndex(i);
+            return xValues[getIndex(i)];
+        }
+
+        public double getY (int i) {
+            checkIndex(i);
+            return yValues[getIndex(i)];
+        }
+
+        public double getDerivative (int i) {
+            checkIndex(i);
+            return derivatives[getIndex(i)];
+        }
+
+        public double getStep (int i) {
+            checkIndex(i);
+            return steps[getIndex(i)];
+        }
+
+        private void checkIndex (int i) {
+            if (i < 0 || i >= size)
+                throw new IndexOutOfBoundsException("index " + i + " is not within [0, " + size + ")");
+        }
+
+    }
+
+}
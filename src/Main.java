@@ -1,13 +1,15 @@
+import math.BigDecimalBackend;
+import math.Complex;
+import math.DoubleDoubleBackend;
 import math.Expression;
-import math.VariableDefinition;
-import math.exception.EvaluationException;
+import math.Polynomial;
+import math.PreparedFunction;
 import math.exception.ParseException;
+import math.exception.UnknownVariableException;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.util.ArrayList;
-import java.util.List;
 
 
 public class Main {
@@ -44,12 +46,14 @@ public class Main {
         // */
 
         try {
-            Expression function = Expression.parse(functionText);
+            PreparedFunction preparedFunction = PreparedFunction.prepare(functionText, "x");
             double startValue = Double.parseDouble(startValueText);
             double minimumPrecision = Double.parseDouble(minimumPrecisionText);
             int maximumIterationCount = Integer.parseInt(maximumIterationCountText);
 
-            NewtonsMethod newtonsMethod = new NewtonsMethod(function, "x", startValue, minimumPrecision, maximumIterationCount);
+            NewtonsMethod newtonsMethod = new NewtonsMethod(preparedFunction, startValue, minimumPrecision, maximumIterationCount);
+            newtonsMethod.setMethod(NewtonsMethod.Method.AUTO);
+            newtonsMethod.setPolishingBackends(new DoubleDoubleBackend(), new BigDecimalBackend(64));
             Expression functionDerivative = newtonsMethod.getFunctionDerivative();
 
             System.out.println("function: " + newtonsMethod.getFunction());
@@ -57,37 +61,53 @@ public class Main {
             System.out.println();
 
 
-            List<Double> xValues = new ArrayList<>();
-            List<Double> yValues = new ArrayList<>();
-
-            xValues.add(startValue);
-            yValues.add(function.evaluate(new VariableDefinition("x", startValue)));
+            IterationTrace trace = new IterationTrace();
+            newtonsMethod.setTrace(trace);
 
             while (true) {
                 boolean end = newtonsMethod.step();
-
-                double x = newtonsMethod.getCurrentValueX();
-                double y = newtonsMethod.getCurrentValueY();
-
-                xValues.add(x);
-                yValues.add(y);
-
                 if (end)
                     break;
             }
 
-            for (int i=0; i<xValues.size(); i++) {
-                double x = xValues.get(i);
-                double y = yValues.get(i);
+            IterationTrace.View iterations = trace.getView();
+            for (int i=0; i<iterations.getSize(); i++) {
+                double x = iterations.getX(i);
+                double y = iterations.getY(i);
 
                 System.out.println("#" + (i+1) + ": x: " + x);
                 System.out.println("#" + (i+1) + ": y: " + y);
                 System.out.println();
             }
 
+            System.out.println("method: " + newtonsMethod.getSelectedMethod());
+            if (newtonsMethod.getPolishingIterationCount() > 0)
+                System.out.println("polishing iterations: " + newtonsMethod.getPolishingIterationCount());
+
             NewtonsMethod.Error error = newtonsMethod.getError();
             System.out.println("error: " + error);
-        } catch (ParseException | NumberFormatException | EvaluationException e) {
+
+            // guaranteed enclosure of the root close to the result
+            if (NewtonsMethod.Error.SUCCESS.equals(error)) {
+                double root = newtonsMethod.getCurrentValueX();
+                double radius = 1e-6 * Math.max(1, Math.abs(root));
+
+                IntervalNewtonSolver.Enclosures enclosures = new IntervalNewtonSolver(preparedFunction).solve(root - radius, root + radius);
+                for (int i=0; i<enclosures.getSize(); i++)
+                    System.out.println("enclosure: " + enclosures.getRoot(i) + " +- " + enclosures.getErrorBound(i) + (enclosures.isUnique(i) ? " (unique)" : ""));
+            }
+
+            // all roots at once
+            Polynomial polynomial = preparedFunction.getPolynomial();
+            if (polynomial != null && polynomial.getDegree() > 0) {
+                Polynomial.Roots roots = polynomial.findRoots(maximumIterationCount);
+
+                System.out.println();
+                System.out.println("polynomial: " + polynomial);
+                for (int i=0; i<roots.getSize(); i++)
+                    System.out.println("root #" + (i+1) + ": " + (roots.isReal(i) ? roots.getReal()[i] : new Complex(roots.getReal()[i], roots.getImaginary()[i])));
+            }
+        } catch (ParseException | UnknownVariableException | NumberFormatException e) {
             e.printStackTrace();
         }
     }
@@ -1,12 +1,11 @@
 import math.Expression;
-import math.VariableDefinition;
+import math.PreparedFunction;
+import math.PreparedFunctionCache;
 import math.exception.EvaluationException;
 import math.exception.ParseException;
 
 import javax.swing.*;
 import java.awt.*;
-import java.util.ArrayList;
-import java.util.List;
 
 
 public class MainGUI {
@@ -23,12 +22,16 @@ public class MainGUI {
 
     private NewtonsMethodPlotComponent newtonsMethodPlotComponent;
 
+    // pressing update again with the same function does not parse, simplify and derive it again
+    private final PreparedFunctionCache preparedFunctionCache = new PreparedFunctionCache(32);
+
 
     public MainGUI () {
         tfFunction.setText("e^ln((sin(sqrt(x)+pi)*cos(x))+1)*x^-1-0.05");
         tfStartValue.setText("3");
         tfMinimumPrecision.setText("1e-5");
         tfMaximumIterationCount.setText("100");
+        tfStartValue.setToolTipText("Startwert oder Intervall mit Vorzeichenwechsel, z.B. [1, 3]");
 
         btnUpdate.addActionListener(actionEvent -> update());
 
@@ -54,46 +57,58 @@ public class MainGUI {
         String maximumIterationCountText = tfMaximumIterationCount.getText();
 
         try {
-            Expression function = Expression.parse(functionText);
-            double startValue = Double.parseDouble(startValueText);
+            PreparedFunction preparedFunction = preparedFunctionCache.get(functionText, "x");
+            Expression function = preparedFunction.getFunction();
             double minimumPrecision = Double.parseDouble(minimumPrecisionText);
             int maximumIterationCount = Integer.parseInt(maximumIterationCountText);
 
-            NewtonsMethod newtonsMethod = new NewtonsMethod(function, "x", startValue, minimumPrecision, maximumIterationCount);
-            Expression functionDerivative = newtonsMethod.getFunctionDerivative();
+            // an interval [a, b] as start value selects the bracketed method, which starts in the middle of it
+            double startValue;
+            double[] bracket = null;
 
-            taRawValues.append("\n");
-            taRawValues.append("Funktion: " + newtonsMethod.getFunction() + "\n");
-            taRawValues.append("Ableitung: " + functionDerivative + "\n");
-            taRawValues.append("\n\n");
+            startValueText = startValueText.trim();
+            if (startValueText.startsWith("[") && startValueText.endsWith("]")) {
+                String[] bounds = startValueText.substring(1, startValueText.length()-1).split(",");
+                if (bounds.length != 2)
+                    throw new NumberFormatException("invalid interval");
 
+                bracket = new double[] {Double.parseDouble(bounds[0]), Double.parseDouble(bounds[1])};
+                if (!Double.isFinite(bracket[0]) || !Double.isFinite(bracket[1]) || bracket[0] == bracket[1])
+                    throw new NumberFormatException("invalid interval");
 
-            List<Double> xValues = new ArrayList<>();
-            List<Double> yValues = new ArrayList<>();
+                startValue = (bracket[0] + bracket[1]) / 2;
+            } else {
+                startValue = Double.parseDouble(startValueText);
+            }
 
-            double startValueY = function.evaluate(new VariableDefinition("x", startValue));
-            if (!Double.isFinite(startValueY))
-                throw new EvaluationException("value is not finite");
+            NewtonsMethod newtonsMethod = new NewtonsMethod(preparedFunction, startValue, minimumPrecision, maximumIterationCount);
+            if (bracket != null) {
+                newtonsMethod.setMethod(NewtonsMethod.Method.BRACKETED);
+                newtonsMethod.setBracket(bracket[0], bracket[1]);
+            } else if (preparedFunction.getFunctionDerivative() == null) {
+                // e.g. round, ceil and floor have no derivative
+                newtonsMethod.setMethod(NewtonsMethod.Method.SECANT);
+            }
+            Expression functionDerivative = newtonsMethod.getFunctionDerivative();
 
-            xValues.add(startValue);
-            yValues.add(startValueY);
+            taRawValues.append("\n");
+            taRawValues.append("Funktion: " + newtonsMethod.getFunction() + "\n");
+            taRawValues.append("Ableitung: " + (functionDerivative != null ? functionDerivative : "nicht berechenbar") + "\n");
+            taRawValues.append("\n\n");
 
-            while (true) {
-                boolean end = newtonsMethod.step();
 
-                double x = newtonsMethod.getCurrentValueX();
-                double y = newtonsMethod.getCurrentValueY();
+            IterationTrace trace = new IterationTrace();
+            newtonsMethod.setTrace(trace);
 
-                xValues.add(x);
-                yValues.add(y);
+            while (!newtonsMethod.step());
 
-                if (end)
-                    break;
-            }
+            IterationTrace.View iterations = trace.getView();
+            if (!Double.isFinite(iterations.getY(0)))
+                throw new EvaluationException("value is not finite");
 
-            for (int i = 0; i < xValues.size(); i++) {
-                double x = xValues.get(i);
-                double y = yValues.get(i);
+            for (int i = 0; i < iterations.getSize(); i++) {
+                double x = iterations.getX(i);
+                double y = iterations.getY(i);
 
                 taRawValues.append("#" + (i+1) + ": x: " + x + "\n");
                 taRawValues.append("#" + (i+1) + ": y: " + y + "\n");
@@ -128,21 +143,50 @@ public class MainGUI {
                 case MAX_ITERATIONS_REACHED:
                     taRawValues.append("Fehler: Die maximale Anzahl der Iterationen wurde erreicht!\n");
                     break;
-            }
 
+                case NO_SIGN_CHANGE:
+                    taRawValues.append("Fehler: Die Funktion wechselt im Intervall nicht das Vorzeichen!\n");
+                    break;
+
+                case STEP_SIZE_CONVERGED:
+                    taRawValues.append("Fehler: Die Schrittweite ist zu klein geworden, bevor die Genauigkeit erreicht wurde!\n");
+                    break;
+
+                case STAGNATION:
+                    taRawValues.append("Fehler: Das Verfahren kommt der Nullstelle nicht mehr näher!\n");
+                    break;
 
-            if (NewtonsMethod.Error.SUCCESS.equals(error)) {
-                double[] xValuesArr = new double[xValues.size()];
-                for (int i = 0; i < xValues.size(); i++)
-                    xValuesArr[i] = xValues.get(i);
+                case CYCLE_DETECTED:
+                    taRawValues.append("Fehler: Das Verfahren ist in einen Zyklus geraten!\n");
+                    break;
 
-                double[] yValuesArr = new double[xValues.size()];
-                for (int i = 0; i < xValues.size(); i++)
-                    yValuesArr[i] = yValues.get(i);
+                case BRACKET_CONVERGED:
+                    taRawValues.append("Fehler: Der Vorzeichenwechsel ist eingeschlossen, aber die Genauigkeit wurde nicht erreicht (Polstelle?)!\n");
+                    break;
+            }
 
 
-                newtonsMethodPlotComponent = new NewtonsMethodPlotComponent(function, functionDerivative, xValuesArr, yValuesArr, lCurrentStepInfo);
+            // the plot shows the tangents, so it needs the derivative
+            if (NewtonsMethod.Error.SUCCESS.equals(error) && functionDerivative != null) {
+                newtonsMethodPlotComponent = new NewtonsMethodPlotComponent(function, functionDerivative, iterations, lCurrentStepInfo);
                 pPlot.add(newtonsMethodPlotComponent);
+
+                // all roots of the visible range, not just the one reached from the start value
+                double xMin = newtonsMethodPlotComponent.getXMin();
+                double xMax = newtonsMethodPlotComponent.getXMax();
+                if (!Double.isNaN(xMin)) {
+                    IntervalRootFinder intervalRootFinder = new IntervalRootFinder(preparedFunction);
+                    intervalRootFinder.setMinimumPrecision(minimumPrecision);
+                    intervalRootFinder.setMaximumIterationCount(maximumIterationCount);
+
+                    double[] roots = intervalRootFinder.find(xMin, xMax).getRoots();
+                    newtonsMethodPlotComponent.plotRoots(roots);
+
+                    taRawValues.append("\n");
+                    taRawValues.append("Nullstellen im Bereich [" + xMin + ", " + xMax + "]:\n");
+                    for (double root : roots)
+                        taRawValues.append(root + "\n");
+                }
             }
         } catch (NumberFormatException e) {
             taRawValues.append("\n");
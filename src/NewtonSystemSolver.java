@@ -0,0 +1,568 @@
+import math.*;
+import math.exception.EvaluationException;
+import math.exception.UnknownVariableException;
+
+
+// newton's method for systems of n equations f_i(x_1, ..., x_n) = 0 in n variables. all arrays are allocated by the
+// constructor (except for the gradient tape, which grows during the first evaluation), so the steps do not allocate and
+// one solver can be reused for many start values
+public class NewtonSystemSolver {
+
+    // with DerivativeMode.AUTOMATIC the jacobian of systems of at least this size is computed row by row with a gradient
+    // tape (one recording per function) instead of column by column with dual numbers (each column evaluates all
+    // functions), which is faster once the n^2 function evaluations outweigh the recording
+    private static final int GRADIENT_TAPE_SIZE = 10;
+
+    private final Expression[] functions;
+    private final String[] variableNames;
+    private final int size;
+
+    private final NewtonsMethod.DerivativeMode derivativeMode;
+    private Method method;
+
+    private final EvaluationContext context;
+
+    // the functions, and the functions followed by the jacobian row by row in one program, so the partial derivatives
+    // share the subexpressions of the functions. the second one is null with DerivativeMode.AUTOMATIC or if a function
+    // cannot be differentiated
+    private final CompiledExpression compiledFunctions;
+    private final CompiledExpression compiledFunctionsAndJacobian;
+    private final double[] functionsAndJacobian;
+    private final GradientTape gradientTape;  // null if the dual numbers are used
+
+    private final double[] startValues;
+    private double minimumPrecision;
+    private int maximumIterationCount;
+
+    private int iterationCount;
+    private int evaluationCount;
+    private int jacobianEvaluationCount;
+
+    private final double[] values;
+    private final double[] functionValues;
+    private double residual;  // maximum of |f_i|
+    private boolean evaluated;  // false until the functions and the jacobian have been evaluated at the current values
+
+    // row-major, overwritten by its lu factorization: the unit lower triangle holds L, the upper triangle U
+    private final double[] jacobian;
+    private final int[] pivots;
+    private final double[] step;
+    private final double[] column;
+
+    // state of Method.BROYDEN: approximation of the inverse jacobian (row-major), the change of the function values by the
+    // last step and the products needed by the update
+    private final double[] inverseJacobian;
+    private final double[] functionDifference;
+    private final double[] inverseTimesDifference;
+    private final double[] stepTimesInverse;
+
+    private Error error = Error.SUCCESS;
+
+
+    public NewtonSystemSolver (Expression[] functions, String[] variableNames, double[] startValues, double minimumPrecision, int maximumIterationCount) {
+        this(functions, variableNames, startValues, minimumPrecision, maximumIterationCount, NewtonsMethod.DerivativeMode.SYMBOLIC, Method.NEWTON);
+    }
+
+    public NewtonSystemSolver (Expression[] functions, String[] variableNames, double[] startValues, double minimumPrecision, int maximumIterationCount, NewtonsMethod.DerivativeMode derivativeMode, Method method) {
+        if (functions == null)
+            throw new NullPointerException("functions may not be null");
+
+        if (variableNames == null)
+            throw new NullPointerException("variable names may not be null");
+
+        if (derivativeMode == null)
+            throw new NullPointerException("derivative mode may not be null");
+
+        if (method == null)
+            throw new NullPointerException("method may not be null");
+
+        if (functions.length == 0)
+            throw new IllegalArgumentException("expected at least one function");
+
+        if (functions.length != variableNames.length)
+            throw new IllegalArgumentException("expected as many variables as functions");
+
+
+        size = functions.length;
+
+        this.functions = new Expression[size];
+        for (int i=0; i<size; i++) {
+            if (functions[i] == null)
+                throw new NullPointerException("function may not be null");
+
+            this.functions[i] = ExpressionSimplifier.simplify(functions[i]);
+        }
+
+        this.variableNames = variableNames.clone();
+        this.derivativeMode = derivativeMode;
+        this.method = method;
+
+        context = new EvaluationContext(this.variableNames);
+        compiledFunctions = compile(this.functions);
+        compiledFunctionsAndJacobian = NewtonsMethod.DerivativeMode.SYMBOLIC.equals(derivativeMode) ? compileWithJacobian() : null;
+        functionsAndJacobian = new double[size + size*size];
+        gradientTape = NewtonsMethod.DerivativeMode.AUTOMATIC.equals(derivativeMode) && size >= GRADIENT_TAPE_SIZE ? new GradientTape() : null;
+
+        this.startValues = new double[size];
+        values = new double[size];
+        functionValues = new double[size];
+
+        jacobian = new double[size*size];
+        pivots = new int[size];
+        step = new double[size];
+        column = new double[size];
+
+        inverseJacobian = new double[size*size];
+        functionDifference = new double[size];
+        inverseTimesDifference = new double[size];
+        stepTimesInverse = new double[size];
+
+        setStartValues(startValues);
+        setMinimumPrecision(minimumPrecision);
+        setMaximumIterationCount(maximumIterationCount);
+
+        reset();
+    }
+
+
+    private CompiledExpression compile (Expression[] expressions) {
+        try {
+            return ExpressionCompiler.compile(expressions, variableNames);
+        } catch (UnknownVariableException e) {
+            // reported as UNKNOWN_VARIABLE by step()
+            return null;
+        }
+    }
+
+    private CompiledExpression compileWithJacobian () {
+        Expression[] expressions = new Expression[size + size*size];
+        System.arraycopy(functions, 0, expressions, 0, size);
+
+        try {
+            for (int i=0; i<size; i++) {
+                for (int j=0; j<size; j++)
+                    expressions[size + i*size + j] = ExpressionSimplifier.simplify(FunctionDerivative.compute(functions[i], variableNames[j]));
+            }
+        } catch (UnsupportedOperationException e) {
+            // e.g. round, ceil and floor, reported as EVALUATE_JACOBIAN by step()
+            return null;
+        }
+
+        return compile(expressions);
+    }
+
+
+    public Expression[] getFunctions () {
+        return functions.clone();
+    }
+
+    public String[] getVariableNames () {
+        return variableNames.clone();
+    }
+
+    public int getSize () {
+        return size;
+    }
+
+    public double[] getStartValues () {
+        return startValues.clone();
+    }
+
+    public double getMinimumPrecision () {
+        return minimumPrecision;
+    }
+
+    public int getMaximumIterationCount () {
+        return maximumIterationCount;
+    }
+
+    public NewtonsMethod.DerivativeMode getDerivativeMode () {
+        return derivativeMode;
+    }
+
+    public Method getMethod () {
+        return method;
+    }
+
+
+    public int getIterationCount () {
+        return iterationCount;
+    }
+
+    // number of evaluations of a compiled program (or recordings of a function) since the last reset, with
+    // DerivativeMode.AUTOMATIC the jacobian needs one evaluation per variable
+    public int getEvaluationCount () {
+        return evaluationCount;
+    }
+
+    public int getJacobianEvaluationCount () {
+        return jacobianEvaluationCount;
+    }
+
+    public double[] getCurrentValues () {
+        return values.clone();
+    }
+
+    public double getCurrentValue (int index) {
+        return values[index];
+    }
+
+    public double[] getCurrentFunctionValues () {
+        return functionValues.clone();
+    }
+
+    public double getCurrentFunctionValue (int index) {
+        return functionValues[index];
+    }
+
+    public double getResidual () {
+        return residual;
+    }
+
+
+    public void setStartValues (double[] startValues) {
+        if (startValues == null)
+            throw new NullPointerException("start values may not be null");
+
+        if (startValues.length != size)
+            throw new IllegalArgumentException("expected " + size + " start values");
+
+        System.arraycopy(startValues, 0, this.startValues, 0, size);
+    }
+
+    public void setMinimumPrecision (double minimumPrecision) {
+        this.minimumPrecision = minimumPrecision;
+    }
+
+    public void setMaximumIterationCount (int maximumIterationCount) {
+        this.maximumIterationCount = maximumIterationCount;
+    }
+
+    // the next step evaluates the jacobian again at the current values
+    public void setMethod (Method method) {
+        if (method == null)
+            throw new NullPointerException("method may not be null");
+
+        this.method = method;
+        evaluated = false;
+    }
+
+
+    public void reset () {
+        iterationCount = 0;
+        evaluationCount = 0;
+        jacobianEvaluationCount = 0;
+
+        System.arraycopy(startValues, 0, values, 0, size);
+        residual = Double.NaN;
+        evaluated = false;
+
+        error = Error.SUCCESS;
+    }
+
+    public boolean step () {
+        if (maximumIterationCount > 0 && iterationCount >= maximumIterationCount)
+            return true;
+
+        iterationCount++;
+
+
+        if (compiledFunctions == null) {
+            error = Error.UNKNOWN_VARIABLE;
+            return true;
+        }
+
+        boolean broyden = Method.BROYDEN.equals(method);
+
+        if (!evaluated) {
+            if (!evaluate(true))
+                return true;
+
+            if (residual <= minimumPrecision)
+                return true;
+
+            if (broyden && !invertJacobian())
+                return true;
+
+            evaluated = true;
+        }
+
+
+        if (broyden) {
+            multiply(inverseJacobian, functionValues, step);
+            for (int i=0; i<size; i++) {
+                step[i] = -step[i];
+                functionDifference[i] = -functionValues[i];
+            }
+        } else {
+            if (!factorize())
+                return true;
+
+            for (int i=0; i<size; i++)
+                step[i] = -functionValues[i];
+
+            solve(step);
+        }
+
+        for (int i=0; i<size; i++)
+            values[i] += step[i];
+
+
+        // newton's method evaluates the jacobian for the next step together with the function values
+        double previousResidual = residual;
+        if (!evaluate(!broyden))
+            return true;
+
+        if (residual <= minimumPrecision)
+            return true;
+
+        if (broyden) {
+            for (int i=0; i<size; i++)
+                functionDifference[i] += functionValues[i];
+
+            // the exact jacobian is used again if the step did not reduce the residual or the update is not defined
+            if (residual >= previousResidual || !updateInverseJacobian()) {
+                if (!evaluate(true) || !invertJacobian())
+                    return true;
+            }
+        }
+
+        if (maximumIterationCount > 0 && iterationCount >= maximumIterationCount) {
+            error = Error.MAX_ITERATIONS_REACHED;
+            return true;
+        }
+
+
+        return false;
+    }
+
+    public void run () {
+        while (true) {
+            boolean stop = step();
+            if (stop)
+                break;
+        }
+    }
+
+
+    public Error getError () {
+        return error;
+    }
+
+
+    // evaluates the functions and optionally the jacobian at the current values, sets the error and returns false if a
+    // value is not finite
+    private boolean evaluate (boolean withJacobian) {
+        for (int i=0; i<size; i++)
+            context.setValue(i, values[i]);
+
+        if (!withJacobian) {
+            compiledFunctions.evaluate(context, functionValues);
+            evaluationCount++;
+        } else if (gradientTape != null) {
+            // one row of the jacobian per recorded function
+            for (int i=0; i<size; i++) {
+                try {
+                    functionValues[i] = gradientTape.gradient(functions[i], context, column);
+                } catch (EvaluationException e) {
+                    error = Error.EVALUATE_FUNCTION;
+                    return false;
+                }
+
+                evaluationCount++;
+                System.arraycopy(column, 0, jacobian, i*size, size);
+            }
+
+            jacobianEvaluationCount++;
+        } else if (NewtonsMethod.DerivativeMode.AUTOMATIC.equals(derivativeMode)) {
+            // one column of the jacobian per evaluation
+            for (int j=0; j<size; j++) {
+                compiledFunctions.evaluateDual(context, j, functionValues, column);
+                evaluationCount++;
+
+                for (int i=0; i<size; i++)
+                    jacobian[i*size + j] = column[i];
+            }
+
+            jacobianEvaluationCount++;
+        } else {
+            if (compiledFunctionsAndJacobian == null) {
+                error = Error.EVALUATE_JACOBIAN;
+                return false;
+            }
+
+            compiledFunctionsAndJacobian.evaluate(context, functionsAndJacobian);
+            evaluationCount++;
+            jacobianEvaluationCount++;
+
+            System.arraycopy(functionsAndJacobian, 0, functionValues, 0, size);
+            System.arraycopy(functionsAndJacobian, size, jacobian, 0, size*size);
+        }
+
+
+        residual = 0;
+        for (int i=0; i<size; i++)
+            residual = Math.max(residual, Math.abs(functionValues[i]));
+
+        if (!Double.isFinite(residual)) {
+            error = Error.EVALUATE_FUNCTION;
+            return false;
+        }
+
+        if (withJacobian) {
+            for (int i=0; i<size*size; i++) {
+                if (!Double.isFinite(jacobian[i])) {
+                    error = Error.EVALUATE_JACOBIAN;
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+
+    // lu factorization of the jacobian in place with partial pivoting, row k was swapped with row pivots[k]
+    private boolean factorize () {
+        final double[] a = jacobian;
+        final int n = size;
+
+        for (int k=0; k<n; k++) {
+            int pivot = k;
+            double maximum = Math.abs(a[k*n + k]);
+            for (int i=k+1; i<n; i++) {
+                double value = Math.abs(a[i*n + k]);
+                if (value > maximum) {
+                    maximum = value;
+                    pivot = i;
+                }
+            }
+
+            if (maximum == 0) {
+                error = Error.SINGULAR_JACOBIAN;
+                return false;
+            }
+
+            pivots[k] = pivot;
+            if (pivot != k) {
+                for (int j=0; j<n; j++) {
+                    double t = a[k*n + j];
+                    a[k*n + j] = a[pivot*n + j];
+                    a[pivot*n + j] = t;
+                }
+            }
+
+            double diagonal = a[k*n + k];
+            for (int i=k+1; i<n; i++) {
+                double factor = a[i*n + k] /= diagonal;
+                if (factor == 0)
+                    continue;
+
+                for (int j=k+1; j<n; j++)
+                    a[i*n + j] -= factor * a[k*n + j];
+            }
+        }
+
+        return true;
+    }
+
+    // solves J x = b with the factorized jacobian, b is overwritten with x
+    private void solve (double[] b) {
+        final double[] a = jacobian;
+        final int n = size;
+
+        for (int k=0; k<n; k++) {
+            int pivot = pivots[k];
+            if (pivot != k) {
+                double t = b[k];
+                b[k] = b[pivot];
+                b[pivot] = t;
+            }
+        }
+
+        for (int i=1; i<n; i++) {
+            double sum = b[i];
+            for (int j=0; j<i; j++)
+                sum -= a[i*n + j] * b[j];
+            b[i] = sum;
+        }
+
+        for (int i=n-1; i>=0; i--) {
+            double sum = b[i];
+            for (int j=i+1; j<n; j++)
+                sum -= a[i*n + j] * b[j];
+            b[i] = sum / a[i*n + i];
+        }
+    }
+
+    private boolean invertJacobian () {
+        if (!factorize())
+            return false;
+
+        for (int j=0; j<size; j++) {
+            for (int i=0; i<size; i++)
+                column[i] = i == j ? 1 : 0;
+
+            solve(column);
+
+            for (int i=0; i<size; i++)
+                inverseJacobian[i*size + j] = column[i];
+        }
+
+        return true;
+    }
+
+    // broyden's ("good") update of the jacobian, applied to its inverse with the sherman-morrison formula, so a step
+    // only needs O(n^2) operations and no factorization:
+    // H += (s - H*df) * (s^T*H) / (s^T*H*df) with the step s and the change of the function values df
+    private boolean updateInverseJacobian () {
+        final double[] h = inverseJacobian;
+        final int n = size;
+
+        multiply(h, functionDifference, inverseTimesDifference);
+
+        double denominator = 0;
+        for (int i=0; i<n; i++)
+            denominator += step[i] * inverseTimesDifference[i];
+
+        if (denominator == 0 || !Double.isFinite(denominator))
+            return false;
+
+        for (int j=0; j<n; j++) {
+            double sum = 0;
+            for (int i=0; i<n; i++)
+                sum += step[i] * h[i*n + j];
+            stepTimesInverse[j] = sum;
+        }
+
+        for (int i=0; i<n; i++) {
+            double factor = (step[i] - inverseTimesDifference[i]) / denominator;
+            for (int j=0; j<n; j++)
+                h[i*n + j] += factor * stepTimesInverse[j];
+        }
+
+        return true;
+    }
+
+    // result = matrix * vector for a row-major n x n matrix
+    private void multiply (double[] matrix, double[] vector, double[] result) {
+        final int n = size;
+
+        for (int i=0; i<n; i++) {
+            double sum = 0;
+            for (int j=0; j<n; j++)
+                sum += matrix[i*n + j] * vector[j];
+            result[i] = sum;
+        }
+    }
+
+
+    public enum Method {
+        NEWTON, BROYDEN
+    }
+
+    public enum Error {
+        SUCCESS, SINGULAR_JACOBIAN, EVALUATE_FUNCTION, EVALUATE_JACOBIAN, UNKNOWN_VARIABLE, MAX_ITERATIONS_REACHED
+    }
+
+}
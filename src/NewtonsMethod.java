@@ -2,24 +2,110 @@ import math.*;
 import math.exception.EvaluationException;
 import math.exception.UnknownVariableException;
 
+import java.util.Collections;
+import java.util.function.DoubleUnaryOperator;
+
 
 public class NewtonsMethod {
 
+    // Method.AUTO uses a derivative-free method if the simplified derivative has more than this many times the nodes of
+    // the function
+    private static final int MAXIMUM_DERIVATIVE_SIZE_RATIO = 4;
+
+    // nodes the simplifier may rewrite per node of the function while Method.AUTO simplifies the derivative
+    private static final int DERIVATIVE_SIMPLIFICATION_BUDGET = 64;
+
+    // previous values of x which are kept for the cycle detection, the longest detectable cycle
+    public static final int HISTORY_SIZE = 16;
+
+    // an x is considered a repetition of a previous one if it differs by at most this fraction of its magnitude
+    static final double CYCLE_TOLERANCE = 1e-12;
+
+    // newton steps of each polishing backend
+    public static final int MAXIMUM_POLISHING_ITERATIONS = 16;
+
+    private Expression originalFunction;  // not simplified, for the polishing backends
     private Expression function;
     private Expression functionDerivative;
     private String variableName;
 
+    private CompiledExpression compiledFunction;
+    private CompiledExpression compiledFunctionAndDerivative;
+    private final double[] functionAndDerivative = new double[2];
+    private EvaluationContext context;
+    private final Dual dual = new Dual();
+
+    // null if the function is not a sum of monomials of the variable, otherwise the function and its derivative are
+    // evaluated with horner's scheme instead of the compiled programs (see PreparedFunction.getHornerPolynomial())
+    private Polynomial polynomial;
+
+    // classes generated from the function and its derivative (see ExpressionCodeGenerator), which replace the compiled
+    // programs unless horner's scheme or dual numbers are used. null if the code generation is disabled or not possible
+    private boolean codeGeneration = false;
+    private PreparedFunction preparedFunction;  // null if the function has been set as an expression
+    private DoubleUnaryOperator generatedFunction, generatedFunctionDerivative;
+
+    private DerivativeMode derivativeMode = DerivativeMode.SYMBOLIC;
+    private Method method = Method.NEWTON;
+    private Method selectedMethod;  // method chosen by Method.AUTO, null until the first step
+    private int householderOrder = 3;
+
+    // function and its derivatives up to the order of the householder method in one program, compiled on first use
+    private CompiledExpression compiledHigherDerivatives;
+    private int higherDerivativeOrder = 0;  // 0 if not computed yet
+    private double[] derivatives, scaledReciprocalDerivatives, functionPowers;
+    private double[][] binomials;
+
+    // interval for Method.BRACKETED, the function has to change its sign within it
+    private double bracketLower = Double.NaN, bracketUpper = Double.NaN;
+
     private double startValue;
     private double minimumPrecision;
     private int maximumIterationCount;
 
+    // additional stopping criteria, 0 disables them
+    private double absoluteStepTolerance = 0;
+    private double relativeStepTolerance = 0;
+    private int stagnationLimit = 0;  // iterations without a new minimum of |f(x)|
+    private int maximumCycleLength = HISTORY_SIZE;
+
     private int iterationCount;
+    private int evaluationCount;
     private double currentValueX, currentValueY;
+    private double currentDerivative;  // NaN if not evaluated together with currentValueY (or not available)
+
+    // state of Method.BRACKETED: f(negativeX) < 0 < f(positiveX) and the previous point
+    private double negativeX, negativeY, positiveX, positiveY;
+    private double previousX, previousY;
+    private double previousStep;
+
+    // ring of the previous values of x (the most recent at historyIndex) and the best |f(x)| so far
+    private final double[] history = new double[HISTORY_SIZE];
+    private int historyIndex, historyCount;
+    private double minimumAbsoluteY;
+    private int stagnationCount;
+
+    private IterationTrace trace;  // null if the iterations are not recorded
+
+    // higher precisions which are tried in order once the iteration in double stops without reaching the precision
+    private NumericBackend<?>[] polishingBackends = new NumericBackend<?>[0];
+    private int polishingIterationCount;
 
     private Error error = Error.SUCCESS;
 
 
     public NewtonsMethod (Expression function, String variableName, double startValue, double minimumPrecision, int maximumIterationCount) {
+        this(function, variableName, startValue, minimumPrecision, maximumIterationCount, DerivativeMode.SYMBOLIC);
+    }
+
+    public NewtonsMethod (Expression function, String variableName, double startValue, double minimumPrecision, int maximumIterationCount, DerivativeMode derivativeMode) {
+        this(function, variableName, startValue, minimumPrecision, maximumIterationCount, derivativeMode, Method.NEWTON);
+    }
+
+    // derivative-free methods (and Method.AUTO) do not compute the derivative up front
+    public NewtonsMethod (Expression function, String variableName, double startValue, double minimumPrecision, int maximumIterationCount, DerivativeMode derivativeMode, Method method) {
+        setDerivativeMode(derivativeMode);
+        setMethod(method);
         setFunction(function, variableName);
         setStartValue(startValue);
         setMinimumPrecision(minimumPrecision);
@@ -28,6 +114,15 @@ public class NewtonsMethod {
         reset();
     }
 
+    public NewtonsMethod (PreparedFunction preparedFunction, double startValue, double minimumPrecision, int maximumIterationCount) {
+        setFunction(preparedFunction);
+        setStartValue(startValue);
+        setMinimumPrecision(minimumPrecision);
+        setMaximumIterationCount(maximumIterationCount);
+
+        reset();
+    }
+
 
     public Expression getFunction () {
         return function;
@@ -41,6 +136,11 @@ public class NewtonsMethod {
         return functionDerivative;
     }
 
+    // null if the function is not a sum of monomials of the variable
+    public Polynomial getPolynomial () {
+        return polynomial;
+    }
+
     public double getStartValue () {
         return startValue;
     }
@@ -53,6 +153,69 @@ public class NewtonsMethod {
         return maximumIterationCount;
     }
 
+    public DerivativeMode getDerivativeMode () {
+        return derivativeMode;
+    }
+
+    public Method getMethod () {
+        return method;
+    }
+
+    // the method which is actually used, for Method.AUTO null until the first step
+    public Method getSelectedMethod () {
+        return Method.AUTO.equals(method) ? selectedMethod : method;
+    }
+
+    public double getBracketLower () {
+        return bracketLower;
+    }
+
+    public double getBracketUpper () {
+        return bracketUpper;
+    }
+
+    public int getHouseholderOrder () {
+        return householderOrder;
+    }
+
+    public double getAbsoluteStepTolerance () {
+        return absoluteStepTolerance;
+    }
+
+    public double getRelativeStepTolerance () {
+        return relativeStepTolerance;
+    }
+
+    public int getStagnationLimit () {
+        return stagnationLimit;
+    }
+
+    public int getMaximumCycleLength () {
+        return maximumCycleLength;
+    }
+
+    public IterationTrace getTrace () {
+        return trace;
+    }
+
+    public NumericBackend<?>[] getPolishingBackends () {
+        return polishingBackends.clone();
+    }
+
+    public boolean isCodeGeneration () {
+        return codeGeneration;
+    }
+
+
+    public int getIterationCount () {
+        return iterationCount;
+    }
+
+    // number of evaluations of the compiled program since the last reset, a program may evaluate the function together
+    // with its derivatives
+    public int getEvaluationCount () {
+        return evaluationCount;
+    }
 
     public double getCurrentValueX () {
         return currentValueX;
@@ -62,16 +225,64 @@ public class NewtonsMethod {
         return currentValueY;
     }
 
+    // newton steps of the polishing backends since the last reset, not included in the iteration count
+    public int getPolishingIterationCount () {
+        return polishingIterationCount;
+    }
+
 
     public boolean setFunction (Expression function, String variableName) {
+        clearHigherDerivatives();
+        selectedMethod = null;
+
+        this.preparedFunction = null;
+        this.originalFunction = function;
         this.function = ExpressionSimplifier.simplify(function);
         this.variableName = variableName;
+        this.context = new EvaluationContext(variableName);
+        this.compiledFunction = compile(this.function);
+        this.polynomial = Polynomial.isSumOfMonomials(this.function, variableName) ? Polynomial.fromExpression(this.function, variableName) : null;
+
+        // the derivative is computed alongside the function value by step(), or not needed at all
+        if (DerivativeMode.AUTOMATIC.equals(derivativeMode) || defersDerivative(method)) {
+            functionDerivative = null;
+            compiledFunctionAndDerivative = null;
+            generateCode();
+
+            return true;
+        }
 
         return computeFunctionDerivative();
     }
 
+    // uses the already simplified function and derivative and the compiled programs of the prepared function
+    public boolean setFunction (PreparedFunction preparedFunction) {
+        if (preparedFunction == null)
+            throw new NullPointerException("prepared function may not be null");
+
+        clearHigherDerivatives();
+        selectedMethod = null;
+
+        this.preparedFunction = preparedFunction;
+        this.originalFunction = preparedFunction.getOriginalFunction();
+        this.function = preparedFunction.getFunction();
+        this.variableName = preparedFunction.getVariableName();
+        this.context = new EvaluationContext(variableName);
+        this.compiledFunction = preparedFunction.getCompiledFunction();
+        this.polynomial = preparedFunction.getHornerPolynomial();
+        this.functionDerivative = preparedFunction.getFunctionDerivative();
+        this.compiledFunctionAndDerivative = preparedFunction.getCompiledFunctionAndDerivative();
+        generateCode();
+
+        return functionDerivative != null;
+    }
+
     public void setFunctionDerivative (Expression functionDerivative) {
+        clearHigherDerivatives();
+
         this.functionDerivative = functionDerivative;
+        this.compiledFunctionAndDerivative = compileWithDerivative();
+        generateCode();
     }
 
     public void setStartValue (double startValue) {
@@ -86,54 +297,431 @@ public class NewtonsMethod {
         this.maximumIterationCount = maximumIterationCount;
     }
 
+    public void setDerivativeMode (DerivativeMode derivativeMode) {
+        if (derivativeMode == null)
+            throw new NullPointerException("derivative mode may not be null");
+
+        this.derivativeMode = derivativeMode;
+
+        if (function != null && DerivativeMode.SYMBOLIC.equals(derivativeMode) && functionDerivative == null && !defersDerivative(method))
+            computeFunctionDerivative();
+    }
+
+
+    public void setMethod (Method method) {
+        if (method == null)
+            throw new NullPointerException("method may not be null");
+
+        this.method = method;
+        this.selectedMethod = null;
+
+        if (function != null && DerivativeMode.SYMBOLIC.equals(derivativeMode) && functionDerivative == null && !defersDerivative(method))
+            computeFunctionDerivative();
+    }
+
+    // the bracket is used by Method.BRACKETED, the start value is only used if it lies within the bracket
+    public void setBracket (double lower, double upper) {
+        if (!Double.isFinite(lower) || !Double.isFinite(upper))
+            throw new IllegalArgumentException("bracket must be finite");
+
+        if (lower == upper)
+            throw new IllegalArgumentException("bracket may not be empty");
+
+        this.bracketLower = Math.min(lower, upper);
+        this.bracketUpper = Math.max(lower, upper);
+    }
+
+    // order d of Method.HOUSEHOLDER, which converges with order d+1. order 1 is newton's method, order 2 halley's method
+    public void setHouseholderOrder (int householderOrder) {
+        if (householderOrder < 1)
+            throw new IllegalArgumentException("householder order must be at least 1");
+
+        if (householderOrder != this.householderOrder)
+            clearHigherDerivatives();
+
+        this.householderOrder = householderOrder;
+    }
+
+
+    // stops with STEP_SIZE_CONVERGED if |x_n - x_(n-1)| <= absolute + relative * |x_n| before the precision is reached
+    public void setAbsoluteStepTolerance (double absoluteStepTolerance) {
+        if (absoluteStepTolerance < 0)
+            throw new IllegalArgumentException("step tolerance may not be negative");
+
+        this.absoluteStepTolerance = absoluteStepTolerance;
+    }
+
+    public void setRelativeStepTolerance (double relativeStepTolerance) {
+        if (relativeStepTolerance < 0)
+            throw new IllegalArgumentException("step tolerance may not be negative");
+
+        this.relativeStepTolerance = relativeStepTolerance;
+    }
+
+    // stops with STAGNATION if |f(x)| has not reached a new minimum for this many iterations
+    public void setStagnationLimit (int stagnationLimit) {
+        if (stagnationLimit < 0)
+            throw new IllegalArgumentException("stagnation limit may not be negative");
+
+        this.stagnationLimit = stagnationLimit;
+    }
+
+    // stops with CYCLE_DETECTED if x repeats the value of at most this many iterations before, without having made
+    // a small step (which would be convergence instead). values below 2 disable the detection
+    public void setMaximumCycleLength (int maximumCycleLength) {
+        if (maximumCycleLength < 0 || maximumCycleLength > HISTORY_SIZE)
+            throw new IllegalArgumentException("maximum cycle length must be between 0 and " + HISTORY_SIZE);
+
+        this.maximumCycleLength = maximumCycleLength;
+    }
+
+
+    // the trace is cleared and records the start value and every following step, until it is replaced (null stops the
+    // recording)
+    public void setTrace (IterationTrace trace) {
+        if (trace != null)
+            trace.clear();
+
+        this.trace = trace;
+    }
+
+    // if the iteration stalls close to a root (MAX_ITERATIONS_REACHED, STEP_SIZE_CONVERGED or STAGNATION), e.g. because
+    // the function cancels in double, the current x is polished with a few newton steps in each of the backends in turn
+    // until one of them reaches the precision. the function is then evaluated in that backend, so the current value of f is its value in
+    // the higher precision. if none of them reaches it, the result of the iteration in double is kept
+    public void setPolishingBackends (NumericBackend<?>... polishingBackends) {
+        if (polishingBackends == null)
+            throw new NullPointerException("polishing backends may not be null");
+
+        for (NumericBackend<?> polishingBackend : polishingBackends) {
+            if (polishingBackend == null)
+                throw new NullPointerException("polishing backend may not be null");
+        }
+
+        this.polishingBackends = polishingBackends.clone();
+    }
+
+    // evaluates the function and its derivative with classes generated for them, which the jit can inline into the
+    // iteration, instead of the compiled programs. generating them loads two classes, which only pays off if the function
+    // is evaluated many times (e.g. by BatchNewtonSolver). the classes of a prepared function are shared
+    public void setCodeGeneration (boolean codeGeneration) {
+        this.codeGeneration = codeGeneration;
+        generateCode();
+    }
+
 
     public boolean computeFunctionDerivative () {
+        clearHigherDerivatives();
+
         try {
             functionDerivative = ExpressionSimplifier.simplify(FunctionDerivative.compute(function, variableName));
         } catch (UnsupportedOperationException e) {
-            e.printStackTrace();
+            // e.g. round, ceil and floor, reported as EVALUATE_FUNCTION_DERIVATIVE by step()
             functionDerivative = null;
         }
 
+        compiledFunctionAndDerivative = compileWithDerivative();
+        generateCode();
+
         return functionDerivative != null;
     }
 
+    private CompiledExpression compile (Expression expression) {
+        if (expression == null)
+            return null;
+
+        try {
+            return ExpressionCompiler.compile(expression, context.getVariableNames());
+        } catch (UnknownVariableException e) {
+            // reported as UNKNOWN_VARIABLE by step()
+            return null;
+        }
+    }
+
+    private void generateCode () {
+        if (!codeGeneration || function == null) {
+            generatedFunction = null;
+            generatedFunctionDerivative = null;
+            return;
+        }
+
+        if (preparedFunction != null) {
+            generatedFunction = preparedFunction.getGeneratedFunction();
+            generatedFunctionDerivative = functionDerivative == preparedFunction.getFunctionDerivative() ? preparedFunction.getGeneratedFunctionDerivative() : generate(functionDerivative);
+        } else {
+            generatedFunction = generate(function);
+            generatedFunctionDerivative = generate(functionDerivative);
+        }
+    }
+
+    // null if the expression contains other variables or is too large for a generated method
+    private DoubleUnaryOperator generate (Expression expression) {
+        if (expression == null)
+            return null;
+
+        try {
+            return ExpressionCodeGenerator.generateUnary(expression, variableName);
+        } catch (UnknownVariableException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    // the derivative repeats most of the subexpressions of the function, compiling both into one program evaluates
+    // each of them only once
+    private CompiledExpression compileWithDerivative () {
+        if (function == null || functionDerivative == null)
+            return null;
+
+        try {
+            return ExpressionCompiler.compile(new Expression[] {function, functionDerivative}, context.getVariableNames());
+        } catch (UnknownVariableException e) {
+            // reported as UNKNOWN_VARIABLE by step()
+            return null;
+        }
+    }
+
+
+    // the higher derivatives are computed symbolically from the first derivative (also with DerivativeMode.AUTOMATIC),
+    // and compiled together with the function, so common subexpressions are evaluated only once
+    private void computeHigherDerivatives (int order) {
+        higherDerivativeOrder = order;
+
+        Expression[] expressions = new Expression[order + 1];
+        expressions[0] = function;
+
+        try {
+            expressions[1] = functionDerivative != null ? functionDerivative : ExpressionSimplifier.simplify(FunctionDerivative.compute(function, variableName));
+            for (int i=2; i<=order; i++)
+                expressions[i] = ExpressionSimplifier.simplify(FunctionDerivative.compute(expressions[i-1], variableName));
+
+            compiledHigherDerivatives = ExpressionCompiler.compile(expressions, context.getVariableNames());
+        } catch (UnsupportedOperationException | UnknownVariableException e) {
+            // reported as EVALUATE_FUNCTION_DERIVATIVE by step()
+            compiledHigherDerivatives = null;
+            return;
+        }
+
+        derivatives = new double[order + 1];
+        scaledReciprocalDerivatives = new double[order + 1];
+        functionPowers = new double[order];
+
+        binomials = new double[order + 1][];
+        for (int n=0; n<=order; n++) {
+            binomials[n] = new double[n + 1];
+            binomials[n][0] = binomials[n][n] = 1;
+            for (int k=1; k<n; k++)
+                binomials[n][k] = binomials[n-1][k-1] + binomials[n-1][k];
+        }
+    }
+
+    private void clearHigherDerivatives () {
+        compiledHigherDerivatives = null;
+        higherDerivativeOrder = 0;
+    }
+
 
     public void reset () {
         iterationCount = 0;
+        evaluationCount = 0;
 
         currentValueX = startValue;
         currentValueY = 0;
+        currentDerivative = Double.NaN;
+
+        history[0] = startValue;
+        historyIndex = 0;
+        historyCount = 1;
+        minimumAbsoluteY = Double.POSITIVE_INFINITY;
+        stagnationCount = 0;
+        polishingIterationCount = 0;
+
+        if (trace != null)
+            trace.clear();
 
         error = Error.SUCCESS;
     }
 
     public boolean step () {
+        // the start value is evaluated only for the trace, this is not counted as evaluation of the method
+        if (trace != null && iterationCount == 0)
+            trace.record(startValue, evaluateFunction(startValue), Double.NaN);
+
+        int previousIterationCount = iterationCount;
+        boolean stop = iterate() || isStuck();
+
+        if (trace != null && iterationCount > previousIterationCount)
+            trace.record(currentValueX, currentValueY, currentDerivative);
+
+        if (stop && polishingBackends.length > 0 && isStalled() && polish() && trace != null)
+            trace.record(currentValueX, currentValueY, Double.NaN);
+
+        return stop;
+    }
+
+    // a cycle or a derivative of 0 means that x is not close to a root, a few steps in a higher precision would not
+    // change that
+    private boolean isStalled () {
+        switch (error) {
+            case MAX_ITERATIONS_REACHED:
+            case STEP_SIZE_CONVERGED:
+            case STAGNATION:
+                return true;
+
+            default:
+                return false;
+        }
+    }
+
+    // the function is evaluated as it has been given, the simplifier folds its constants in double. the derivative only
+    // determines the steps, so the simplified one is used (it is computed symbolically if the method does not use it)
+    private boolean polish () {
+        Expression derivative = functionDerivative;
+        if (derivative == null) {
+            try {
+                derivative = ExpressionSimplifier.simplify(FunctionDerivative.compute(function, variableName));
+            } catch (UnsupportedOperationException e) {
+                return false;
+            }
+        }
+
+        for (NumericBackend<?> polishingBackend : polishingBackends) {
+            if (polish(polishingBackend, derivative))
+                return true;
+        }
+
+        return false;
+    }
+
+    private <T> boolean polish (NumericBackend<T> backend, Expression derivative) {
+        try {
+            T x = backend.valueOf(currentValueX);
+            double previousStep = Double.POSITIVE_INFINITY;
+            for (int i=0; i<MAXIMUM_POLISHING_ITERATIONS; i++) {
+                T y = backend.evaluate(originalFunction, context, Collections.singletonList(x));
+                if (backend.signum(y) == 0)
+                    break;
+
+                T step = backend.divide(y, backend.evaluate(derivative, context, Collections.singletonList(x)));
+                x = backend.subtract(x, step);
+                polishingIterationCount++;
+
+                // once the steps stop shrinking, they are only noise of the evaluation
+                double absoluteStep = Math.abs(backend.toDouble(step));
+                if (!(absoluteStep > backend.getEpsilon() * Math.abs(backend.toDouble(x))) || absoluteStep >= previousStep)
+                    break;
+
+                previousStep = absoluteStep;
+            }
+
+            // the root is a double, so the precision has to be reached there
+            double rootX = backend.toDouble(x);
+            double rootY = backend.toDouble(backend.evaluate(originalFunction, context, Collections.singletonList(backend.valueOf(rootX))));
+            if (!(Math.abs(rootY) <= minimumPrecision))
+                return false;
+
+            currentValueX = rootX;
+            currentValueY = rootY;
+            currentDerivative = Double.NaN;
+            error = Error.SUCCESS;
+            return true;
+        } catch (EvaluationException | ArithmeticException e) {
+            // e.g. a pole, or a division by a derivative of 0
+            return false;
+        }
+    }
+
+    // checks the new x against the previous ones, returns true (and sets the error) if the method cannot be expected
+    // to reach the precision anymore
+    private boolean isStuck () {
+        double x = currentValueX;
+        double scale = Math.abs(x);
+
+        double step = Math.abs(x - history[historyIndex]);
+        if ((absoluteStepTolerance > 0 || relativeStepTolerance > 0) && step <= absoluteStepTolerance + relativeStepTolerance * scale) {
+            error = Error.STEP_SIZE_CONVERGED;
+            return true;
+        }
+
+        // a sequence which converges makes small steps, a cycle returns to a previous x with large steps
+        if (step > CYCLE_TOLERANCE * scale) {
+            for (int k=2; k<=Math.min(maximumCycleLength, historyCount); k++) {
+                double previous = history[(historyIndex - k + 1 + HISTORY_SIZE) % HISTORY_SIZE];
+                if (Math.abs(x - previous) <= CYCLE_TOLERANCE * scale) {
+                    error = Error.CYCLE_DETECTED;
+                    return true;
+                }
+            }
+        }
+
+        double absoluteY = Math.abs(currentValueY);
+        if (absoluteY < minimumAbsoluteY) {
+            minimumAbsoluteY = absoluteY;
+            stagnationCount = 0;
+        } else if (stagnationLimit > 0 && ++stagnationCount >= stagnationLimit) {
+            error = Error.STAGNATION;
+            return true;
+        }
+
+        historyIndex = (historyIndex + 1) % HISTORY_SIZE;
+        history[historyIndex] = x;
+        historyCount = Math.min(historyCount + 1, HISTORY_SIZE);
+
+        return false;
+    }
+
+    private boolean iterate () {
         if (maximumIterationCount > 0 && iterationCount >= maximumIterationCount)
             return true;
 
         iterationCount++;
 
 
-        VariableDefinition[] variables = new VariableDefinition[]{
-                new VariableDefinition("x", new Scalar(currentValueX))
-        };
+        if (compiledFunction == null) {
+            error = Error.UNKNOWN_VARIABLE;
+            return true;
+        }
 
-        double a, b;
+        Method method = this.method;
+        if (Method.AUTO.equals(method)) {
+            if (selectedMethod == null)
+                selectedMethod = selectMethod();
 
+            method = selectedMethod;
+        }
 
-        try {
-            a = function.evaluate(variables);
-            //System.out.println("a: " + a);
-        } catch (EvaluationException e) {
-            if (e instanceof UnknownVariableException)
-                error = Error.UNKNOWN_VARIABLE;
-            else
-                error = Error.EVALUATE_FUNCTION;
+        if (Method.BRACKETED.equals(method))
+            return bracketedStep();
+
+        if (Method.HALLEY.equals(method))
+            return householderStep(2);
+
+        if (Method.HOUSEHOLDER.equals(method))
+            return householderStep(householderOrder);
+
+        if (Method.SECANT.equals(method))
+            return secantStep();
+
+        if (Method.STEFFENSEN.equals(method))
+            return steffensenStep();
+
+        return newtonStep();
+    }
 
+    // the function and its derivative are evaluated together at the new x and carried to the next step, so each step
+    // needs one evaluation (the derivative of the last step is not used)
+    private boolean newtonStep () {
+        if (polynomial == null && !DerivativeMode.AUTOMATIC.equals(derivativeMode) && compiledFunctionAndDerivative == null) {
+            error = functionDerivative == null ? Error.EVALUATE_FUNCTION_DERIVATIVE : Error.UNKNOWN_VARIABLE;
             return true;
         }
 
+        // after a reset or another method the values at the current x are not known yet
+        if (Double.isNaN(currentDerivative))
+            evaluateAt(currentValueX);
+
+        double a = currentValueY;
+        double b = currentDerivative;
+
         if (!Double.isFinite(a)) {
             error = Error.EVALUATE_FUNCTION;
             return true;
@@ -143,43 +731,258 @@ public class NewtonsMethod {
             return true;
 
 
-        try {
-            b = functionDerivative.evaluate(variables);
-            //System.out.println("b: " + b + " -> " + functionDerivative);
-        } catch (EvaluationException e) {
-            if (e instanceof UnknownVariableException)
-                error = Error.UNKNOWN_VARIABLE;
-            else
-                error = Error.EVALUATE_FUNCTION_DERIVATIVE;
+        if (!Double.isFinite(b)) {
+            error = Error.EVALUATE_FUNCTION_DERIVATIVE;
+            return true;
+        }
 
+        if (b == 0) {
+            error = Error.FUNCTION_DERIVATIVE_ZERO;
             return true;
         }
 
-        if (!Double.isFinite(b)) {
-            error = Error.EVALUATE_FUNCTION_DERIVATIVE;
+
+        evaluateAt(currentValueX - a/b);
+
+        if (!Double.isFinite(currentValueY)) {
+            error = Error.EVALUATE_FUNCTION;
             return true;
         }
 
-        if (b == 0) {
+
+        if (Math.abs(currentValueY) <= minimumPrecision)
+            return true;
+
+        if (maximumIterationCount > 0 && iterationCount >= maximumIterationCount) {
+            error = Error.MAX_ITERATIONS_REACHED;
+            return true;
+        }
+
+
+        return false;
+    }
+
+    // newton's method if the derivative is available and not much larger than the function, otherwise the secant method
+    // (which needs one evaluation per step and converges with order 1.6). with DerivativeMode.AUTOMATIC the derivative
+    // is always available
+    private Method selectMethod () {
+        if (polynomial != null || DerivativeMode.AUTOMATIC.equals(derivativeMode))
+            return Method.NEWTON;
+
+        if (functionDerivative == null) {
+            Expression derivative;
+            try {
+                derivative = FunctionDerivative.compute(function, variableName);
+            } catch (UnsupportedOperationException e) {
+                return Method.SECANT;
+            }
+
+            // the simplification is cut short for huge derivatives, which are then rejected below anyway
+            int functionNodeCount = ExpressionSimplifier.countNodes(function);
+            derivative = ExpressionSimplifier.simplify(derivative, 0, DERIVATIVE_SIMPLIFICATION_BUDGET * functionNodeCount, null);
+
+            if (ExpressionSimplifier.countNodes(derivative) > MAXIMUM_DERIVATIVE_SIZE_RATIO * functionNodeCount)
+                return Method.SECANT;
+
+            setFunctionDerivative(derivative);
+        } else if (ExpressionSimplifier.countNodes(functionDerivative) > MAXIMUM_DERIVATIVE_SIZE_RATIO * ExpressionSimplifier.countNodes(function)) {
+            return Method.SECANT;
+        }
+
+        return compiledFunctionAndDerivative != null ? Method.NEWTON : Method.SECANT;
+    }
+
+    // x - f(x) * (x - x') / (f(x) - f(x')) with the previous point x'. the first step starts with a second point close to
+    // the start value
+    private boolean secantStep () {
+        if (iterationCount == 1) {
+            if (evaluateFirstPoint())
+                return true;
+
+            previousX = currentValueX;
+            previousY = currentValueY;
+
+            evaluateFunctionAt(currentValueX + getSecantOffset(currentValueX));
+            if (!Double.isFinite(currentValueY)) {
+                error = Error.EVALUATE_FUNCTION;
+                return true;
+            }
+        }
+
+        double x = currentValueX;
+        double y = currentValueY;
+
+        if (y == previousY) {
             error = Error.FUNCTION_DERIVATIVE_ZERO;
             return true;
         }
 
+        double next = x - y * (x - previousX) / (y - previousY);
 
-        currentValueX = currentValueX - a/b;
-        variables[0].setValue(new Scalar(currentValueX));
+        previousX = x;
+        previousY = y;
 
-        try {
-            currentValueY = function.evaluate(variables);
-        } catch (EvaluationException e) {
-            if (e instanceof UnknownVariableException)
-                error = Error.UNKNOWN_VARIABLE;
-            else
+        return finishDerivativeFreeStep(next);
+    }
+
+    // x - f(x) h / (f(x + h) - f(x)) with h = f(x), converges quadratically with two evaluations per step. far from the
+    // root f(x) is no usable shift (e.g. x^3 at x = 8), so it is limited like the offset of the secant method, which makes
+    // the step a finite difference newton step
+    private boolean steffensenStep () {
+        if (iterationCount == 1 && evaluateFirstPoint())
+            return true;
+
+        double x = currentValueX;
+        double y = currentValueY;
+
+        double h = y;
+        double maximumShift = getSecantOffset(x);
+        if (Math.abs(h) > maximumShift)
+            h = Math.copySign(maximumShift, y);
+
+        evaluateFunctionAt(x + h);
+        double shiftedY = currentValueY;
+
+        if (!Double.isFinite(shiftedY)) {
+            currentValueX = x;
+            currentValueY = y;
+
+            error = Error.EVALUATE_FUNCTION;
+            return true;
+        }
+
+        if (shiftedY == y) {
+            currentValueX = x;
+            currentValueY = y;
+
+            error = Error.FUNCTION_DERIVATIVE_ZERO;
+            return true;
+        }
+
+        return finishDerivativeFreeStep(x - y*h / (shiftedY - y));
+    }
+
+    // evaluates the start value, returns true if the method is already finished
+    private boolean evaluateFirstPoint () {
+        evaluateFunctionAt(currentValueX);
+
+        if (!Double.isFinite(currentValueY)) {
+            error = Error.EVALUATE_FUNCTION;
+            return true;
+        }
+
+        return currentValueY == 0;
+    }
+
+    private boolean finishDerivativeFreeStep (double next) {
+        evaluateFunctionAt(next);
+        if (!Double.isFinite(currentValueY)) {
+            error = Error.EVALUATE_FUNCTION;
+            return true;
+        }
+
+
+        if (Math.abs(currentValueY) <= minimumPrecision)
+            return true;
+
+        if (maximumIterationCount > 0 && iterationCount >= maximumIterationCount) {
+            error = Error.MAX_ITERATIONS_REACHED;
+            return true;
+        }
+
+
+        return false;
+    }
+
+    private static double getSecantOffset (double x) {
+        return 1e-4 * Math.max(1, Math.abs(x));
+    }
+
+    private void evaluateFunctionAt (double x) {
+        currentValueX = x;
+        currentValueY = evaluateFunction(x);
+        currentDerivative = Double.NaN;
+        evaluationCount++;
+    }
+
+    // NaN if the function contains other variables
+    private double evaluateFunction (double x) {
+        if (polynomial != null)
+            return polynomial.evaluate(x);
+
+        if (generatedFunction != null)
+            return generatedFunction.applyAsDouble(x);
+
+        if (compiledFunction == null)
+            return Double.NaN;
+
+        context.setValue(0, x);
+        return compiledFunction.evaluate(context);
+    }
+
+    private static boolean defersDerivative (Method method) {
+        return Method.SECANT.equals(method) || Method.STEFFENSEN.equals(method) || Method.AUTO.equals(method);
+    }
+
+    // householder's method of the given order: x + d * (1/f)^(d-1) / (1/f)^(d). the derivatives of 1/f are computed from
+    // the derivatives of f, scaled by f^(k+1), so they neither need a division nor overflow close to a root. each step
+    // evaluates the function and its derivatives once, the function value at the new x is carried to the next step
+    private boolean householderStep (int order) {
+        if (higherDerivativeOrder != order)
+            computeHigherDerivatives(order);
+
+        if (compiledHigherDerivatives == null) {
+            error = Error.EVALUATE_FUNCTION_DERIVATIVE;
+            return true;
+        }
+
+        if (iterationCount == 1) {
+            evaluateDerivatives(currentValueX);
+
+            if (!Double.isFinite(currentValueY)) {
                 error = Error.EVALUATE_FUNCTION;
+                return true;
+            }
+
+            if (currentValueY == 0)
+                return true;
+        }
+
+        double f = derivatives[0];
+        for (int i=1; i<=order; i++) {
+            if (!Double.isFinite(derivatives[i])) {
+                error = Error.EVALUATE_FUNCTION_DERIVATIVE;
+                return true;
+            }
+        }
+
+        // q(n) = f^(n+1) * (1/f)^(n) = -sum(k<n, binomial(n, k) * f^(n-1-k) * q(k) * f^(n-k))
+        functionPowers[0] = 1;
+        for (int i=1; i<order; i++)
+            functionPowers[i] = functionPowers[i-1] * f;
+
+        scaledReciprocalDerivatives[0] = 1;
+        for (int n=1; n<=order; n++) {
+            double sum = 0;
+            for (int k=0; k<n; k++)
+                sum += binomials[n][k] * functionPowers[n-1-k] * scaledReciprocalDerivatives[k] * derivatives[n-k];
 
+            scaledReciprocalDerivatives[n] = -sum;
+        }
+
+        double denominator = scaledReciprocalDerivatives[order];
+        if (denominator == 0) {
+            error = Error.FUNCTION_DERIVATIVE_ZERO;
+            return true;
+        }
+
+        if (!Double.isFinite(denominator)) {
+            error = Error.EVALUATE_FUNCTION_DERIVATIVE;
             return true;
         }
 
+
+        evaluateDerivatives(currentValueX + order * f * scaledReciprocalDerivatives[order-1] / denominator);
         if (!Double.isFinite(currentValueY)) {
             error = Error.EVALUATE_FUNCTION;
             return true;
@@ -198,6 +1001,187 @@ public class NewtonsMethod {
         return false;
     }
 
+    private void evaluateDerivatives (double x) {
+        currentValueX = x;
+        context.setValue(0, x);
+
+        compiledHigherDerivatives.evaluate(context, derivatives);
+        currentValueY = derivatives[0];
+        currentDerivative = derivatives[1];
+        evaluationCount++;
+    }
+
+    // newton's method safeguarded by a bracket (like rtsafe and brent's method): a newton step is only taken if it stays
+    // within the bracket and at least halves the previous step, otherwise inverse quadratic interpolation or bisection is
+    // used. the bracket shrinks in every step, so the method always converges. each step evaluates the function and
+    // its derivative once
+    private boolean bracketedStep () {
+        if (iterationCount == 1 && initializeBracket())
+            return true;
+
+        double x = currentValueX;
+        double y = currentValueY;
+
+        double lower = Math.min(negativeX, positiveX);
+        double upper = Math.max(negativeX, positiveX);
+
+        // a derivative of 0 or NaN results in a step which is not accepted
+        double next = x - y/currentDerivative;
+        if (!isAcceptableStep(next, x, lower, upper)) {
+            next = interpolate(x, y);
+
+            if (!isAcceptableStep(next, x, lower, upper))
+                next = lower + (upper - lower) / 2;
+        }
+
+        previousX = x;
+        previousY = y;
+        previousStep = next - x;
+
+        evaluateAt(next);
+        if (!Double.isFinite(currentValueY)) {
+            error = Error.EVALUATE_FUNCTION;
+            return true;
+        }
+
+        if (currentValueY < 0) {
+            negativeX = next;
+            negativeY = currentValueY;
+        } else {
+            positiveX = next;
+            positiveY = currentValueY;
+        }
+
+
+        if (Math.abs(currentValueY) <= minimumPrecision)
+            return true;
+
+        // the sign change is enclosed as tightly as possible without reaching the precision, e.g. at a pole
+        if (Math.abs(positiveX - negativeX) <= 2 * Math.ulp(next)) {
+            error = Error.BRACKET_CONVERGED;
+            return true;
+        }
+
+        if (maximumIterationCount > 0 && iterationCount >= maximumIterationCount) {
+            error = Error.MAX_ITERATIONS_REACHED;
+            return true;
+        }
+
+
+        return false;
+    }
+
+    // evaluates both ends of the bracket and the start value, returns true if the method is already finished
+    private boolean initializeBracket () {
+        double lower = bracketLower;
+        double upper = bracketUpper;
+
+        evaluateAt(lower);
+        double lowerY = currentValueY;
+
+        evaluateAt(upper);
+        double upperY = currentValueY;
+
+        if (!Double.isFinite(lowerY) || !Double.isFinite(upperY)) {
+            error = Error.EVALUATE_FUNCTION;
+            return true;
+        }
+
+        // currentValueX/Y already belong to the upper end
+        if (Math.abs(upperY) <= minimumPrecision)
+            return true;
+
+        if (Math.abs(lowerY) <= minimumPrecision) {
+            currentValueX = lower;
+            currentValueY = lowerY;
+            return true;
+        }
+
+        if ((lowerY < 0) == (upperY < 0)) {
+            error = Error.NO_SIGN_CHANGE;
+            return true;
+        }
+
+        negativeX = lowerY < 0 ? lower : upper;
+        negativeY = lowerY < 0 ? lowerY : upperY;
+        positiveX = lowerY < 0 ? upper : lower;
+        positiveY = lowerY < 0 ? upperY : lowerY;
+
+        previousX = Double.NaN;
+        previousY = Double.NaN;
+        previousStep = upper - lower;
+
+
+        double x = startValue > lower && startValue < upper ? startValue : lower + (upper - lower) / 2;
+
+        evaluateAt(x);
+        if (!Double.isFinite(currentValueY)) {
+            error = Error.EVALUATE_FUNCTION;
+            return true;
+        }
+
+        if (currentValueY < 0) {
+            negativeX = x;
+            negativeY = currentValueY;
+        } else {
+            positiveX = x;
+            positiveY = currentValueY;
+        }
+
+        return Math.abs(currentValueY) <= minimumPrecision;
+    }
+
+    private boolean isAcceptableStep (double next, double x, double lower, double upper) {
+        return next > lower && next < upper && Math.abs(next - x) <= Math.abs(previousStep) / 2;
+    }
+
+    // inverse quadratic interpolation through the previous point, the current point and the other end of the bracket, or
+    // the secant between the last two if the previous point cannot be used
+    private double interpolate (double x, double y) {
+        double otherX = y < 0 ? positiveX : negativeX;
+        double otherY = y < 0 ? positiveY : negativeY;
+
+        double x0 = previousX, y0 = previousY;
+        if (!Double.isNaN(x0) && y0 != y && y0 != otherY && y != otherY) {
+            return x0 * y * otherY / ((y0 - y) * (y0 - otherY)) +
+                    x * y0 * otherY / ((y - y0) * (y - otherY)) +
+                    otherX * y0 * y / ((otherY - y0) * (otherY - y));
+        }
+
+        return x - y * (otherX - x) / (otherY - y);
+    }
+
+    // sets currentValueX/Y and currentDerivative (NaN if the derivative is not available)
+    private void evaluateAt (double x) {
+        currentValueX = x;
+        context.setValue(0, x);
+
+        if (polynomial != null) {
+            polynomial.evaluate(x, dual);
+            currentValueY = dual.getValue();
+            currentDerivative = dual.getDerivative();
+        } else if (DerivativeMode.AUTOMATIC.equals(derivativeMode)) {
+            compiledFunction.evaluateDual(context, 0, dual);
+            currentValueY = dual.getValue();
+            currentDerivative = dual.getDerivative();
+        } else if (generatedFunctionDerivative != null && generatedFunction != null) {
+            currentValueY = generatedFunction.applyAsDouble(x);
+            currentDerivative = generatedFunctionDerivative.applyAsDouble(x);
+        } else if (compiledFunctionAndDerivative != null) {
+            compiledFunctionAndDerivative.evaluate(context, functionAndDerivative);
+            currentValueY = functionAndDerivative[0];
+            currentDerivative = functionAndDerivative[1];
+        } else if (generatedFunction != null) {
+            currentValueY = generatedFunction.applyAsDouble(x);
+            currentDerivative = Double.NaN;
+        } else {
+            currentValueY = compiledFunction.evaluate(context);
+            currentDerivative = Double.NaN;
+        }
+
+        evaluationCount++;
+    }
+
     public void run () throws UnknownVariableException {
         while (true) {
             boolean stop = step();
@@ -212,8 +1196,17 @@ public class NewtonsMethod {
     }
 
 
+    public enum DerivativeMode {
+        SYMBOLIC, AUTOMATIC
+    }
+
+    public enum Method {
+        NEWTON, BRACKETED, HALLEY, HOUSEHOLDER, SECANT, STEFFENSEN, AUTO
+    }
+
     public enum Error {
-        SUCCESS, FUNCTION_DERIVATIVE_ZERO, EVALUATE_FUNCTION, EVALUATE_FUNCTION_DERIVATIVE, UNKNOWN_VARIABLE, MAX_ITERATIONS_REACHED
+        SUCCESS, FUNCTION_DERIVATIVE_ZERO, EVALUATE_FUNCTION, EVALUATE_FUNCTION_DERIVATIVE, UNKNOWN_VARIABLE, MAX_ITERATIONS_REACHED, NO_SIGN_CHANGE,
+        STEP_SIZE_CONVERGED, STAGNATION, CYCLE_DETECTED, BRACKET_CONVERGED
     }
 
 }
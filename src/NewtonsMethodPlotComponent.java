@@ -3,6 +3,8 @@ import math.exception.EvaluationException;
 import org.jfree.chart.ChartFactory;
 import org.jfree.chart.ChartPanel;
 import org.jfree.chart.JFreeChart;
+import org.jfree.chart.renderer.xy.XYItemRenderer;
+import org.jfree.chart.renderer.xy.XYLineAndShapeRenderer;
 import org.jfree.data.xy.DefaultXYDataset;
 
 import javax.swing.*;
@@ -16,8 +18,7 @@ public class NewtonsMethodPlotComponent extends JComponent {
     private static final int ANIMATION_DURATION = 5 * 1000;
 
     private final Expression functionDerivative;
-    private final double[] xValues;
-    private final double[] yValues;
+    private final IterationTrace.View iterations;
 
     private double xMin = Double.POSITIVE_INFINITY;
     private double xMax = Double.NEGATIVE_INFINITY;
@@ -27,21 +28,22 @@ public class NewtonsMethodPlotComponent extends JComponent {
     private double yMax = Double.NEGATIVE_INFINITY;
 
     private DefaultXYDataset dataset = new DefaultXYDataset();
+    private JFreeChart chart;
 
 
     private boolean stopped = false;
     private JLabel lCurrentStepInfo;
 
 
-    public NewtonsMethodPlotComponent (Expression function, Expression functionDerivative, double[] xValues, double[] yValues, JLabel lCurrentStepInfo) {
+    public NewtonsMethodPlotComponent (Expression function, Expression functionDerivative, IterationTrace.View iterations, JLabel lCurrentStepInfo) {
         this.functionDerivative = functionDerivative;
-        this.xValues = xValues;
-        this.yValues = yValues;
+        this.iterations = iterations;
 
         this.lCurrentStepInfo = lCurrentStepInfo;
 
 
-        for (double x : xValues) {
+        for (int i=0; i<iterations.getSize(); i++) {
+            double x = iterations.getX(i);
             if (x < xMin)
                 xMin = x;
 
@@ -58,7 +60,8 @@ public class NewtonsMethodPlotComponent extends JComponent {
         }
 
 
-        for (double y : yValues) {
+        for (int i=0; i<iterations.getSize(); i++) {
+            double y = iterations.getY(i);
             if (y < yMin)
                 yMin = y;
 
@@ -82,7 +85,7 @@ public class NewtonsMethodPlotComponent extends JComponent {
         }
 
 
-        JFreeChart chart = ChartFactory.createXYLineChart(null, "x", "y", dataset);
+        chart = ChartFactory.createXYLineChart(null, "x", "y", dataset);
 
         setLayout(new BorderLayout());
         add(new ChartPanel(chart), BorderLayout.CENTER);
@@ -90,6 +93,32 @@ public class NewtonsMethodPlotComponent extends JComponent {
     }
 
 
+    // the visible range of x values, empty (NaN) if all iterations have the same x
+    public double getXMin () {
+        return Double.isNaN(xDiff) ? Double.NaN : xMin;
+    }
+
+    public double getXMax () {
+        return Double.isNaN(xDiff) ? Double.NaN : xMax;
+    }
+
+    // marks the roots on the x axis, e.g. all roots of the visible range found by IntervalRootFinder
+    public void plotRoots (double[] roots) {
+        double[] yValues = new double[roots.length];
+
+        dataset.removeSeries("Nullstellen");
+        dataset.addSeries("Nullstellen", new double[][]{roots.clone(), yValues});
+
+        // the tangent and the vertical line are replaced at the end of the dataset, so the index of this series stays
+        int series = dataset.indexOf("Nullstellen");
+        XYItemRenderer renderer = chart.getXYPlot().getRenderer();
+        if (renderer instanceof XYLineAndShapeRenderer) {
+            ((XYLineAndShapeRenderer) renderer).setSeriesLinesVisible(series, false);
+            ((XYLineAndShapeRenderer) renderer).setSeriesShapesVisible(series, true);
+        }
+    }
+
+
     private void plotFunction (Comparable seriesKey, Expression function, String variableName) throws EvaluationException {
         plotFunction(seriesKey, function, variableName, Double.NaN, Double.NaN);
     }
@@ -108,7 +137,7 @@ public class NewtonsMethodPlotComponent extends JComponent {
             return;
 
 
-        VariableDefinition xVariable = new VariableDefinition(variableName, 0);
+        CompiledExpression compiledFunction = ExpressionCompiler.compile(function, variableName);
 
         double diff = xMax - xMin;
         int numXPoints = (int) (diff/this.xDiff * NUM_X_POINTS + 0.5);
@@ -118,8 +147,7 @@ public class NewtonsMethodPlotComponent extends JComponent {
         double step = diff / numXPoints;
         for (int i=0; i<numXPoints; i++) {
             double x = xMin + i*step;
-            xVariable.setValue(new Scalar(x));
-            double y = function.evaluate(xVariable);
+            double y = compiledFunction.evaluate(x);
 
             xValues[i] = x;
             yValues[i] = Math.min(Math.max(y, yMin), yMax);
@@ -155,22 +183,22 @@ public class NewtonsMethodPlotComponent extends JComponent {
 
         @Override
         protected Void doInBackground () {
-            if (xValues.length == 0)
+            if (iterations.getSize() == 0)
                 return null;
 
 
-            double stepDuration = 1e6 * ANIMATION_DURATION / xValues.length;
+            double stepDuration = 1e6 * ANIMATION_DURATION / iterations.getSize();
 
-            VariableDefinition xVariable = new VariableDefinition("x", 0);
+            EvaluationContext context = new EvaluationContext("x");
             double x, y, m, xMin, xMax;
 
 
-            plotObjects = new PlotObject[xValues.length][];
+            plotObjects = new PlotObject[iterations.getSize()][];
             for (int i=0; i<plotObjects.length; i++) {
-                x = xValues[i];
-                y = yValues[i];
+                x = iterations.getX(i);
+                y = iterations.getY(i);
 
-                xVariable.setValue(new Scalar(x));
+                context.setValue(0, x);
 
 
                 try {
@@ -193,7 +221,7 @@ public class NewtonsMethodPlotComponent extends JComponent {
                     x = a + (c-b)/m
                     */
 
-                    m = functionDerivative.evaluate(xVariable);
+                    m = functionDerivative.evaluate(context);
                     Expression tangent = new AdditionList(
                             new AdditionList.Addend(new MultiplicationList(
                                     new Scalar(m),
@@ -220,7 +248,7 @@ public class NewtonsMethodPlotComponent extends JComponent {
 
                     PlotObject[] objs = new PlotObject[Double.isFinite(x_0) ? 3 : 2];
 
-                    objs[0] = new PlotInfo(i, x, y);
+                    objs[0] = new PlotInfo(iterations.getIteration(i), x, y);
                     objs[1] = new PlotFunctionObject("Tangente", tangent, "x", xMin, xMax);
 
                     if (Double.isFinite(x_0))
@@ -1,9 +1,22 @@
+import math.BigDecimalBackend;
+import math.CompiledExpression;
+import math.Complex;
+import math.DoubleMultiOperator;
+import math.EvaluationContext;
 import math.Expression;
+import math.ExpressionCodeGenerator;
+import math.ExpressionCompiler;
 import math.ExpressionSimplifier;
 import math.FunctionDerivative;
+import math.GradientTape;
+import math.PreparedFunction;
 import math.VariableDefinition;
 import math.exception.EvaluationException;
 import math.exception.ParseException;
+import math.exception.UnknownVariableException;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
 
 
 public class Test {
@@ -34,6 +47,39 @@ public class Test {
         //test("(2x + 1)^sin(x/2)");
         //test("abs(sin(x^3)-0.2)");
         testEval("cos(x) - e^x", 0.1);
+        testSimplification("(0*x)^0", 2);
+        testSimplification("sec((0*x)^0)+1", 2);
+        testSimplification("0^x", 2);
+        testSimplification("0^(-2)", 2);
+        testPolishing("(1 - cos(x)) * 10^20 - 1", 1, 1e-9, Math.sqrt(2) * 1e-10);
+        testPolishing("x^3 - 2x + 2", 0, 1e-12, Double.NaN);
+        testRoots("sin(x)", -10, 10, -3*Math.PI, -2*Math.PI, -Math.PI, 0, Math.PI, 2*Math.PI, 3*Math.PI);
+        testRoots("x^2 - 2", -3, 3, -Math.sqrt(2), Math.sqrt(2));
+        testBatch("x^3 - 5x^2 - 4x + 2", 3000);
+        testBatch("x^3 - 5x^2 - 4x + 2", 100);
+        testBatch("x^3 - 5x^2 - 4x + 2", 0);
+        testBasins();
+        testEnclosures("sin(x)", -10, 10, true, -3*Math.PI, -2*Math.PI, -Math.PI, 0, Math.PI, 2*Math.PI, 3*Math.PI);
+        testEnclosures("x^2 - 2", 0, 2, true, Math.sqrt(2));
+        testEnclosures("1 - cos(x) - 10^-20", -1e-6, 1e-6, false, 0);
+        testEnclosures("x^2 * (x - 1)^2", -0.5, 1.5, false, 0, 1);
+        testCodeGeneration("sin(x)*e^(-x/5) - 0.1*cos(3x)", -3, 0.5, 4);
+        testCodeGeneration("sec(x) + csch(x) - ln(abs(x)) + round(x)^2 - sqrt(x)", -2.5, 0.7, 3);
+        testCodeGeneration("x^2*y - sin(x*y) + y/x", -1, 0.5, 2);
+        testComplexEvaluation("sin(x)*e^(-x/5) - 0.1*cos(3x) + x^3 - 2x", -3, -0.5, 0, 0.7, 4);
+        testComplexEvaluation("tan(x) + sech(x) + coth(x) - csc(x) + sinh(x)/cosh(x) + cot(x)*sec(x)", -2.5, -0.3, 0.7, 3);
+        testComplexEvaluation("ln(x^2 + 1) + sqrt(x) + x^2.5 + abs(x) + round(x) - ceil(x)*floor(x) + 2^x + x^-3", -1.5, 0.5, 2.5);
+        testGradient("x^2*y - sin(x*y) + y/x + z*ln(y)*e^z", 0.7, 1.3, -0.4);
+        testGradient("(x + y + z)^3 * sec(x - z) - sqrt(x*y*z) + 2^(x*z)", 0.5, 1.5, 2);
+        testSystem(new String[] {"x^2 + y^2 - 4", "e^x + y - 1"}, new String[] {"x", "y"}, new double[] {1, -1}, new double[] {1.0041687384747, -1.7296372870259});
+        testSystem(new String[] {"x^2 - y - 1", "x - y^2 + 1"}, new String[] {"x", "y"}, new double[] {1.5, 1.5}, new double[] {1.6180339887499, 1.6180339887499});
+        testSystem(new String[] {"a^3 + a+b+c+d+f+g+h+k+m+n - 11", "b^3 + a+b+c+d+f+g+h+k+m+n - 11", "c^3 + a+b+c+d+f+g+h+k+m+n - 11",
+                "d^3 + a+b+c+d+f+g+h+k+m+n - 11", "f^3 + a+b+c+d+f+g+h+k+m+n - 11", "g^3 + a+b+c+d+f+g+h+k+m+n - 11",
+                "h^3 + a+b+c+d+f+g+h+k+m+n - 11", "k^3 + a+b+c+d+f+g+h+k+m+n - 11", "m^3 + a+b+c+d+f+g+h+k+m+n - 11",
+                "n^3 + a+b+c+d+f+g+h+k+m+n - 11"}, new String[] {"a", "b", "c", "d", "f", "g", "h", "k", "m", "n"},
+                new double[] {2, 2, 2, 2, 2, 2, 2, 2, 2, 2}, new double[] {1, 1, 1, 1, 1, 1, 1, 1, 1, 1});
+        testAllocations("cos(x) - x", 0.5, 0, 1);
+        testAllocations("x^3 - 5x^2 - 4x + 2", 8, 5, 6);
 
 
         /*
@@ -113,6 +159,386 @@ public class Test {
         }
     }
 
+    // the simplified expression has to evaluate to the same value as the parsed one, e.g. 0^0 is 1 like in Math.pow
+    private static void testSimplification (String text, double xValue) {
+        try {
+            Expression expression = Expression.parse(text);
+            Expression simplified = ExpressionSimplifier.simplify(expression);
+
+            double yValue = expression.evaluate(new VariableDefinition("x", xValue));
+            double simplifiedYValue = simplified.evaluate(new VariableDefinition("x", xValue));
+
+            System.out.println(text + " -> " + simplified + " = " + simplifiedYValue);
+            if (!(yValue == simplifiedYValue || Double.isNaN(yValue) && Double.isNaN(simplifiedYValue)))
+                throw new AssertionError(text + " is " + yValue + ", but its simplified form is " + simplifiedYValue);
+        } catch (ParseException | EvaluationException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // 1 - cos(x) cancels to 0 in double near the root, so the iteration only reaches it when it is polished in
+    // BigDecimal. a NaN root means that the iteration fails without being stalled (e.g. a cycle) and must not be polished
+    private static void testPolishing (String text, double startValue, double minimumPrecision, double root) {
+        try {
+            PreparedFunction preparedFunction = PreparedFunction.prepare(text, "x");
+
+            NewtonsMethod newtonsMethod = new NewtonsMethod(preparedFunction, startValue, minimumPrecision, 100);
+            newtonsMethod.run();
+            NewtonsMethod.Error error = newtonsMethod.getError();
+
+            newtonsMethod.setPolishingBackends(new BigDecimalBackend(50));
+            newtonsMethod.reset();
+            newtonsMethod.run();
+
+            System.out.println(text + ": " + error + " in double, " + newtonsMethod.getError() + " at " + newtonsMethod.getCurrentValueX() + " after " + newtonsMethod.getPolishingIterationCount() + " polishing iterations");
+            if (Double.isNaN(root)) {
+                if (newtonsMethod.getPolishingIterationCount() > 0)
+                    throw new AssertionError(text + " is polished after " + error);
+            } else if (NewtonsMethod.Error.SUCCESS.equals(error) || !NewtonsMethod.Error.SUCCESS.equals(newtonsMethod.getError()) ||
+                    !(Math.abs(newtonsMethod.getCurrentValueX() - root) <= 1e-15 * root)) {
+                throw new AssertionError(text + " is not polished to " + root);
+            }
+        } catch (ParseException | UnknownVariableException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // every root has to be found exactly once, with and without the interval evaluation skipping ranges
+    private static void testRoots (String text, double lower, double upper, double ...roots) {
+        try {
+            PreparedFunction preparedFunction = PreparedFunction.prepare(text, "x");
+
+            for (boolean pruning : new boolean[] {true, false}) {
+                IntervalRootFinder intervalRootFinder = new IntervalRootFinder(preparedFunction);
+                intervalRootFinder.setPruning(pruning);
+                double[] found = intervalRootFinder.find(lower, upper).getRoots();
+
+                System.out.println(text + (pruning ? ", pruning" : "") + ": " + Arrays.toString(found));
+                if (found.length != roots.length)
+                    throw new AssertionError(text + " has " + found.length + " roots instead of " + roots.length);
+
+                for (int i=0; i<roots.length; i++) {
+                    if (!(Math.abs(found[i] - roots[i]) <= 1e-8))
+                        throw new AssertionError(text + " has the root " + found[i] + " instead of " + roots[i]);
+                }
+            }
+        } catch (ParseException | UnknownVariableException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // the generated classes have to evaluate to the same values as the compiled programs (with y = x/2 + 1 if the
+    // function also contains y). if the function only contains x, so do its generated derivative and newton's method
+    private static void testCodeGeneration (String text, double ...xValues) {
+        try {
+            Expression function = ExpressionSimplifier.simplify(Expression.parse(text));
+            CompiledExpression compiledFunction = ExpressionCompiler.compile(function, "x", "y");
+            DoubleMultiOperator generatedFunction = ExpressionCodeGenerator.generate(function, "x", "y");
+
+            for (double xValue : xValues) {
+                double[] values = {xValue, xValue/2 + 1};
+                checkCodeGeneration(text, xValue, compiledFunction.evaluate(values), generatedFunction.applyAsDouble(values));
+            }
+
+            System.out.println(text + ": generated code matches the compiled programs");
+
+            PreparedFunction preparedFunction = PreparedFunction.prepare(text, "x");
+            if (preparedFunction.getCompiledFunction() == null)
+                return;
+
+            EvaluationContext context = new EvaluationContext("x");
+            CompiledExpression compiledFunctionAndDerivative = preparedFunction.getCompiledFunctionAndDerivative();
+            double[] functionAndDerivative = new double[2];
+
+            for (double xValue : xValues) {
+                context.setValue(0, xValue);
+                checkCodeGeneration(text, xValue, preparedFunction.getCompiledFunction().evaluate(context), preparedFunction.getGeneratedFunction().applyAsDouble(xValue));
+
+                if (compiledFunctionAndDerivative != null) {
+                    compiledFunctionAndDerivative.evaluate(context, functionAndDerivative);
+                    checkCodeGeneration(text + "'", xValue, functionAndDerivative[1], preparedFunction.getGeneratedFunctionDerivative().applyAsDouble(xValue));
+                }
+
+                NewtonsMethod newtonsMethod = new NewtonsMethod(preparedFunction, xValue, 1e-12, 100);
+                newtonsMethod.run();
+                NewtonsMethod generatedNewtonsMethod = new NewtonsMethod(preparedFunction, xValue, 1e-12, 100);
+                generatedNewtonsMethod.setCodeGeneration(true);
+                generatedNewtonsMethod.run();
+
+                if (newtonsMethod.getCurrentValueX() != generatedNewtonsMethod.getCurrentValueX() || newtonsMethod.getError() != generatedNewtonsMethod.getError())
+                    throw new AssertionError(text + " from " + xValue + " ends at " + generatedNewtonsMethod.getCurrentValueX() + " with generated code instead of " + newtonsMethod.getCurrentValueX());
+            }
+        } catch (ParseException | UnknownVariableException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void checkCodeGeneration (String text, double xValue, double compiledYValue, double generatedYValue) {
+        if (Double.doubleToLongBits(compiledYValue) != Double.doubleToLongBits(generatedYValue))
+            throw new AssertionError(text + " is " + generatedYValue + " at " + xValue + " with generated code instead of " + compiledYValue);
+    }
+
+    // on the real axis the complex evaluation (of the expression and of the compiled program) has to agree with the real
+    // one wherever that is defined, e.g. not for sqrt(x) or ln(x) with x < 0
+    private static void testComplexEvaluation (String text, double ...xValues) {
+        try {
+            Expression function = Expression.parse(text);
+            CompiledExpression compiledFunction = ExpressionCompiler.compile(function, "x");
+            EvaluationContext context = new EvaluationContext("x");
+            Complex compiledYValue = new Complex();
+
+            for (double xValue : xValues) {
+                double yValue = function.evaluate(new VariableDefinition("x", xValue));
+                if (!Double.isFinite(yValue))
+                    continue;
+
+                context.setValue(0, xValue, 0);
+                compiledFunction.evaluateComplex(context, compiledYValue);
+
+                for (Complex complexYValue : new Complex[] {function.evaluateComplex("x", xValue, 0), compiledYValue}) {
+                    if (!(Math.abs(complexYValue.getReal() - yValue) <= 1e-12 * Math.max(1, Math.abs(yValue)) && Math.abs(complexYValue.getImaginary()) <= 1e-12 * Math.max(1, Math.abs(yValue))))
+                        throw new AssertionError(text + " is " + complexYValue + " at " + xValue + " instead of " + yValue);
+                }
+            }
+
+            System.out.println(text + ": complex evaluation matches the real one");
+        } catch (ParseException | EvaluationException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // the gradient of the tape has to match the symbolic partial derivative for every variable
+    private static void testGradient (String text, double xValue, double yValue, double zValue) {
+        try {
+            Expression function = Expression.parse(text);
+            EvaluationContext context = new EvaluationContext("x", "y", "z");
+            context.setValue(0, xValue);
+            context.setValue(1, yValue);
+            context.setValue(2, zValue);
+
+            double[] gradient = new double[3];
+            new GradientTape().gradient(function, context, gradient);
+
+            for (int i=0; i<gradient.length; i++) {
+                String variableName = context.getVariableName(i);
+                double partialDerivative = FunctionDerivative.compute(function, variableName).evaluate(context);
+
+                if (!(Math.abs(gradient[i] - partialDerivative) <= 1e-12 * Math.max(1, Math.abs(partialDerivative))))
+                    throw new AssertionError(text + " has the partial derivative " + gradient[i] + " for " + variableName + " instead of " + partialDerivative);
+            }
+
+            System.out.println(text + ": gradient " + Arrays.toString(gradient));
+        } catch (ParseException | EvaluationException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // every derivative mode and method has to converge to the solution
+    private static void testSystem (String[] texts, String[] variableNames, double[] startValues, double[] solution) {
+        try {
+            Expression[] functions = new Expression[texts.length];
+            for (int i=0; i<texts.length; i++)
+                functions[i] = Expression.parse(texts[i]);
+
+            for (NewtonsMethod.DerivativeMode derivativeMode : NewtonsMethod.DerivativeMode.values()) {
+                for (NewtonSystemSolver.Method method : NewtonSystemSolver.Method.values()) {
+                    NewtonSystemSolver solver = new NewtonSystemSolver(functions, variableNames, startValues, 1e-12, 100, derivativeMode, method);
+                    solver.run();
+
+                    System.out.println(texts[0] + ", ..., " + derivativeMode + ", " + method + ": " + solver.getError() + " after " + solver.getIterationCount() + " iterations");
+                    if (!NewtonSystemSolver.Error.SUCCESS.equals(solver.getError()))
+                        throw new AssertionError(method + " does not converge with " + derivativeMode);
+
+                    for (int i=0; i<solution.length; i++) {
+                        if (!(Math.abs(solver.getCurrentValue(i) - solution[i]) <= 1e-9 * Math.max(1, Math.abs(solution[i]))))
+                            throw new AssertionError(method + " ends at " + Arrays.toString(solver.getCurrentValues()) + " with " + derivativeMode);
+                    }
+                }
+            }
+        } catch (ParseException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // every start value of the batch has to end like a sequential run of newton's method from it, with and without the
+    // generated classes. the start values are split into several tasks, a single one or none
+    private static void testBatch (String text, int startValueCount) {
+        try {
+            PreparedFunction preparedFunction = PreparedFunction.prepare(text, "x");
+
+            double[] startValues = new double[startValueCount];
+            for (int i=0; i<startValueCount; i++)
+                startValues[i] = -10 + 20.0 * i / startValueCount;
+
+            for (boolean codeGeneration : new boolean[] {false, true}) {
+                BatchNewtonSolver batchNewtonSolver = new BatchNewtonSolver(preparedFunction, 1e-12, 100);
+                batchNewtonSolver.setCodeGeneration(codeGeneration);
+                BatchNewtonSolver.Result result = batchNewtonSolver.solve(startValues);
+
+                if (result.getSize() != startValueCount)
+                    throw new AssertionError(text + " has " + result.getSize() + " results instead of " + startValueCount);
+
+                for (int i=0; i<startValueCount; i++) {
+                    NewtonsMethod newtonsMethod = new NewtonsMethod(preparedFunction, startValues[i], 1e-12, 100);
+                    newtonsMethod.run();
+
+                    if (Double.doubleToLongBits(result.getX()[i]) != Double.doubleToLongBits(newtonsMethod.getCurrentValueX()) ||
+                            result.getIterationCounts()[i] != newtonsMethod.getIterationCount() || result.getError(i) != newtonsMethod.getError())
+                        throw new AssertionError(text + " from " + startValues[i] + " ends at " + result.getX()[i] + " (" + result.getError(i) + ") in the batch instead of " + newtonsMethod.getCurrentValueX() + " (" + newtonsMethod.getError() + ")");
+                }
+
+                System.out.println(text + ", " + startValueCount + " start values" + (codeGeneration ? ", generated code" : "") + ": " + result.getErrorCount(NewtonsMethod.Error.SUCCESS) + " successful");
+            }
+        } catch (ParseException | UnknownVariableException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // the basins of x^3 - 1 are the ones of the cube roots of unity, with the same root indices in every render. a
+    // parameter gives every row its own roots, and start values which cycle (0, 1, 0, ... for x^3 - 2x + 2) stop early
+    private static void testBasins () {
+        try {
+            BasinRenderer renderer = new BasinRenderer(PreparedFunction.prepare("x^3 - 1", "x"), BasinRenderer.Mode.COMPLEX, null);
+            renderer.setArea(-2, 2, -2, 2);
+            BasinRenderer.Basins basins = renderer.render();
+
+            double[] realParts = basins.getRootValues(0);
+            double[] imaginaryParts = basins.getImaginaryRootValues(0);
+            if (realParts.length != 3)
+                throw new AssertionError("x^3 - 1 has " + realParts.length + " roots instead of 3");
+
+            for (int i=0; i<realParts.length; i++) {
+                if (!(Math.abs(Math.pow(Math.hypot(realParts[i], imaginaryParts[i]), 3) - 1) <= 1e-9 && Math.abs(Math.atan2(imaginaryParts[i], realParts[i]) * 3 / (2*Math.PI) - Math.rint(Math.atan2(imaginaryParts[i], realParts[i]) * 3 / (2*Math.PI))) <= 1e-9))
+                    throw new AssertionError(realParts[i] + " + " + imaginaryParts[i] + "i is not a cube root of unity");
+            }
+
+            // away from the boundaries, i.e. if all neighbours converge to the same root, the cell has to converge as well (not
+            // necessarily to the same root, the boundaries are fractal)
+            int noRootCount = 0;
+            for (int y=1; y<basins.getHeight()-1; y++) {
+                for (int x=1; x<basins.getWidth()-1; x++) {
+                    if (basins.getRoot(x, y) != BasinRenderer.NO_ROOT)
+                        continue;
+
+                    noRootCount++;
+                    short root = basins.getRoot(x-1, y);
+                    if (root != BasinRenderer.NO_ROOT && root == basins.getRoot(x+1, y) && root == basins.getRoot(x, y-1) && root == basins.getRoot(x, y+1))
+                        throw new AssertionError("x^3 - 1 has no root at the cell " + x + ", " + y + " within a basin");
+                }
+            }
+
+            System.out.println("x^3 - 1: roots " + Arrays.toString(realParts) + " + i " + Arrays.toString(imaginaryParts) + ", " + noRootCount + " cells without a root");
+            BasinRenderer.Basins secondBasins = renderer.render();
+            if (!Arrays.equals(basins.getRoots(), secondBasins.getRoots()) || !Arrays.equals(realParts, secondBasins.getRootValues(0)) || !Arrays.equals(imaginaryParts, secondBasins.getImaginaryRootValues(0)))
+                throw new AssertionError("x^3 - 1 has different roots or root indices in two renders");
+
+
+            renderer = new BasinRenderer(PreparedFunction.prepare("x^3 - a*x + 1", "x"), "a");
+            renderer.setArea(-3, 3, 0, 4);
+            renderer.setSize(256, 64);
+            basins = renderer.render();
+
+            // three real roots for a > (27/4)^(1/3) = 1.89
+            int lowRootCount = basins.getRootValues(0).length;
+            int highRootCount = basins.getRootValues(basins.getHeight() - 1).length;
+            System.out.println("x^3 - a*x + 1: " + lowRootCount + " roots for a = 0, " + highRootCount + " for a = 4");
+            if (lowRootCount != 1 || highRootCount != 3)
+                throw new AssertionError("x^3 - a*x + 1 has " + lowRootCount + " and " + highRootCount + " roots instead of 1 and 3");
+
+
+            renderer = new BasinRenderer(PreparedFunction.prepare("x^3 - 2x + 2", "x"), null);
+            renderer.setArea(-0.1, 0.1, 0, 1);
+            renderer.setSize(16, 4);
+            basins = renderer.render();
+
+            for (int y=0; y<basins.getHeight(); y++) {
+                for (int x=0; x<basins.getWidth(); x++) {
+                    if (basins.getRoot(x, y) != BasinRenderer.NO_ROOT || basins.getIterationCount(x, y) >= renderer.getMaximumIterationCount() || basins.getIterationCount(x, y) != basins.getIterationCount(x, 0))
+                        throw new AssertionError("x^3 - 2x + 2 does not stop at the cycle from the cell " + x + ", " + y + " after " + basins.getIterationCount(x, y) + " iterations");
+                }
+            }
+
+            System.out.println("x^3 - 2x + 2: cycle detected after " + basins.getIterationCount(0, 0) + " iterations");
+        } catch (ParseException | UnknownVariableException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // every root has to lie in its own enclosure with both operators. the boxes around a multiple root are merged into
+    // one enclosure, which cannot be proven to be unique
+    private static void testEnclosures (String text, double lower, double upper, boolean unique, double ...roots) {
+        try {
+            PreparedFunction preparedFunction = PreparedFunction.prepare(text, "x");
+
+            for (IntervalNewtonSolver.Operator operator : IntervalNewtonSolver.Operator.values()) {
+                IntervalNewtonSolver solver = new IntervalNewtonSolver(preparedFunction);
+                solver.setOperator(operator);
+                IntervalNewtonSolver.Enclosures enclosures = solver.solve(lower, upper);
+
+                System.out.println(text + ", " + operator + ": " + enclosures.getSize() + " enclosures of " + enclosures.getBoxCount() + " boxes");
+                if (enclosures.getSize() != roots.length)
+                    throw new AssertionError(text + " has " + enclosures.getSize() + " enclosures instead of " + roots.length);
+
+                for (int i=0; i<roots.length; i++) {
+                    if (!(enclosures.getLowerBounds()[i] <= roots[i] && roots[i] <= enclosures.getUpperBounds()[i]) || enclosures.isUnique(i) != unique)
+                        throw new AssertionError(text + " has no " + (unique ? "unique " : "") + "enclosure of " + roots[i]);
+                }
+            }
+        } catch (ParseException | UnknownVariableException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // newton's method may not allocate anything per step once the evaluators are set up (the first run of each method
+    // allocates e.g. the higher derivatives or the dual buffers, so it is excluded), and every method has to converge
+    // from the start value. needs a jvm which supports
+    // com.sun.management.ThreadMXBean
+    private static void testAllocations (String text, double startValue, double bracketLower, double bracketUpper) {
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        try {
+            PreparedFunction preparedFunction = PreparedFunction.prepare(text, "x");
+
+            for (NewtonsMethod.DerivativeMode derivativeMode : NewtonsMethod.DerivativeMode.values()) {
+                for (NewtonsMethod.Method method : NewtonsMethod.Method.values()) {
+                    NewtonsMethod newtonsMethod = new NewtonsMethod(preparedFunction, startValue, 1e-12, 100);
+                    newtonsMethod.setDerivativeMode(derivativeMode);
+                    newtonsMethod.setMethod(method);
+                    newtonsMethod.setBracket(bracketLower, bracketUpper);
+
+                    // warm-up, so the measured runs use compiled code
+                    int stepCount = 0;
+                    for (int i=0; i<20000; i++) {
+                        newtonsMethod.reset();
+                        while (!newtonsMethod.step())
+                            stepCount++;
+                    }
+
+                    // the measurement itself may allocate, which is subtracted
+                    long before = threadBean.getThreadAllocatedBytes(threadId);
+                    long overhead = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+                    before = threadBean.getThreadAllocatedBytes(threadId);
+                    for (int i=0; i<1000; i++) {
+                        newtonsMethod.reset();
+                        while (!newtonsMethod.step());
+                    }
+                    long allocated = threadBean.getThreadAllocatedBytes(threadId) - before - 2*overhead;
+
+                    System.out.println(text + ", " + derivativeMode + ", " + method + ": " + allocated + " bytes allocated, " + newtonsMethod.getError() + " after " + stepCount/20000 + " steps");
+                    if (allocated > 0)
+                        throw new AssertionError(method + " allocates in step()");
+
+                    if (!NewtonsMethod.Error.SUCCESS.equals(newtonsMethod.getError()))
+                        throw new AssertionError(method + " does not converge from " + startValue);
+                }
+            }
+        } catch (ParseException e) {
+            e.printStackTrace();
+        }
+    }
+
     private static void test (String text) {
         try {
             Expression expression = Expression.parse(text);
@@ -24,6 +24,8 @@ public class Addition extends Expression {
     }
 
     public void setAddend0 (Expression addend0) {
+        checkMutable();
+
         if (addend0 == null)
             throw new NullPointerException("addend may not be null");
 
@@ -31,6 +33,8 @@ public class Addition extends Expression {
     }
 
     public void setAddend1 (Expression addend1) {
+        checkMutable();
+
         if (addend1 == null)
             throw new NullPointerException("addend may not be null");
 
@@ -43,6 +47,44 @@ public class Addition extends Expression {
         return addend0.evaluate(variables) + addend1.evaluate(variables);
     }
 
+    @Override
+    public double evaluate (EvaluationContext context) throws EvaluationException {
+        return addend0.evaluate(context) + addend1.evaluate(context);
+    }
+
+    @Override
+    public void evaluateDual (EvaluationContext context, int variableSlot, Dual result) throws EvaluationException {
+        addend0.evaluateDual(context, variableSlot, result);
+        double a = result.getValue();
+        double da = result.getDerivative();
+
+        addend1.evaluateDual(context, variableSlot, result);
+        double b = result.getValue();
+        double db = result.getDerivative();
+
+        result.set(a + b, da + db);
+    }
+
+    @Override
+    public void evaluateComplex (EvaluationContext context, Complex result) throws EvaluationException {
+        addend0.evaluateComplex(context, result);
+        double a = result.getReal();
+        double b = result.getImaginary();
+
+        addend1.evaluateComplex(context, result);
+        result.set(a + result.getReal(), b + result.getImaginary());
+    }
+
+    @Override
+    public void evaluateInterval (EvaluationContext context, Interval result) throws EvaluationException {
+        addend0.evaluateInterval(context, result);
+        double a = result.getLower();
+        double b = result.getUpper();
+
+        addend1.evaluateInterval(context, result);
+        result.add(a, b);
+    }
+
     @Override
     public String toString () {
         return "(" + addend0.toString() + " + " + addend1.toString() + ")";
@@ -25,8 +25,18 @@ public class AdditionList extends Expression {
         return addends.toArray(new Addend[0]);
     }
 
+    public int getAddendCount () {
+        return addends.size();
+    }
+
+    public Addend getAddend (int i) {
+        return addends.get(i);
+    }
+
 
     public void setAddends (Addend ...addends) {
+        checkMutable();
+
         if (addends == null)
             throw new NullPointerException("addends may not be null");
 
@@ -40,6 +50,8 @@ public class AdditionList extends Expression {
     }
 
     public void setAddends (Expression[] addends, boolean[] subtract) {
+        checkMutable();
+
         if (addends == null)
             throw new NullPointerException("addends may not be null");
 
@@ -56,6 +68,8 @@ public class AdditionList extends Expression {
     }
 
     public void addAddend (Addend addend) {
+        checkMutable();
+
         if (addend == null)
             throw new NullPointerException("addend may not be null");
 
@@ -63,6 +77,8 @@ public class AdditionList extends Expression {
     }
 
     public void addAddend (Expression addend, boolean subtract) {
+        checkMutable();
+
         if (addend == null)
             throw new NullPointerException("addend may not be null");
 
@@ -70,6 +86,8 @@ public class AdditionList extends Expression {
     }
 
     public void removeAddend (int i) {
+        checkMutable();
+
         this.addends.remove(i);
     }
 
@@ -86,6 +104,9 @@ public class AdditionList extends Expression {
         AdditionList additionList0 = this;
         AdditionList additionList1 = (AdditionList) obj;
 
+        if (additionList0.isDistinctFrom(additionList1))
+            return false;
+
         if (additionList0.addends.size() != additionList1.addends.size())
             return false;
 
@@ -103,12 +124,6 @@ public class AdditionList extends Expression {
         return true;
     }
 
-    @Override
-    public int hashCode () {
-        return 0;
-    }
-
-
     @Override
     public double evaluate (VariableDefinition... variables) throws EvaluationException {
         double res = 0;
@@ -123,6 +138,86 @@ public class AdditionList extends Expression {
         return res;
     }
 
+    @Override
+    public double evaluate (EvaluationContext context) throws EvaluationException {
+        double res = 0;
+        for (int i=0; i<this.addends.size(); i++) {
+            Addend addend = this.addends.get(i);
+
+            double val = addend.expression.evaluate(context);
+            if (!addend.subtract)
+                res += val;
+            else
+                res -= val;
+        }
+
+        return res;
+    }
+
+    @Override
+    public void evaluateDual (EvaluationContext context, int variableSlot, Dual result) throws EvaluationException {
+        double res = 0;
+        double derivative = 0;
+        for (int i=0; i<this.addends.size(); i++) {
+            Addend addend = this.addends.get(i);
+
+            addend.expression.evaluateDual(context, variableSlot, result);
+            if (!addend.subtract) {
+                res += result.getValue();
+                derivative += result.getDerivative();
+            } else {
+                res -= result.getValue();
+                derivative -= result.getDerivative();
+            }
+        }
+
+        result.set(res, derivative);
+    }
+
+    @Override
+    public void evaluateComplex (EvaluationContext context, Complex result) throws EvaluationException {
+        double real = 0;
+        double imaginary = 0;
+        for (int i=0; i<this.addends.size(); i++) {
+            Addend addend = this.addends.get(i);
+
+            addend.expression.evaluateComplex(context, result);
+            if (!addend.subtract) {
+                real += result.getReal();
+                imaginary += result.getImaginary();
+            } else {
+                real -= result.getReal();
+                imaginary -= result.getImaginary();
+            }
+        }
+
+        result.set(real, imaginary);
+    }
+
+    @Override
+    public void evaluateInterval (EvaluationContext context, Interval result) throws EvaluationException {
+        if (this.addends.isEmpty()) {
+            result.set(0, 0);
+            return;
+        }
+
+        double lower = 0;
+        double upper = 0;
+        for (int i=0; i<this.addends.size(); i++) {
+            Addend addend = this.addends.get(i);
+
+            addend.expression.evaluateInterval(context, result);
+            if (addend.subtract)
+                result.negate();
+
+            if (i > 0)
+                result.add(lower, upper);
+
+            lower = result.getLower();
+            upper = result.getUpper();
+        }
+    }
+
     @Override
     public String toString () {
         StringBuilder str = new StringBuilder("(");
@@ -0,0 +1,91 @@
+package math;
+
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+
+// arbitrary precision with the given number of significant decimal digits. the operations round to a few more digits,
+// so the functions, which are composed of many of them, reach the precision as well
+public class BigDecimalBackend extends NumericBackend<BigDecimal> {
+
+    private static final int GUARD_DIGITS = 10;
+
+    // the precision is also tracked as double
+    public static final int MAXIMUM_DIGITS = 300;
+
+
+    private final int digits;
+    private final MathContext mathContext;
+
+
+    public BigDecimalBackend (int digits) {
+        if (digits <= 0 || digits > MAXIMUM_DIGITS)
+            throw new IllegalArgumentException("digits must be within [1, " + MAXIMUM_DIGITS + "]");
+
+        this.digits = digits;
+        this.mathContext = new MathContext(digits + GUARD_DIGITS, RoundingMode.HALF_EVEN);
+    }
+
+
+    public int getDigits () {
+        return digits;
+    }
+
+    // infinity and NaN have no BigDecimal
+    @Override
+    public BigDecimal valueOf (double value) {
+        if (!Double.isFinite(value))
+            throw new ArithmeticException("value is not finite");
+
+        return new BigDecimal(value);
+    }
+
+    @Override
+    public double toDouble (BigDecimal value) {
+        return value.doubleValue();
+    }
+
+
+    @Override
+    public BigDecimal add (BigDecimal a, BigDecimal b) {
+        return a.add(b, mathContext);
+    }
+
+    @Override
+    public BigDecimal subtract (BigDecimal a, BigDecimal b) {
+        return a.subtract(b, mathContext);
+    }
+
+    @Override
+    public BigDecimal multiply (BigDecimal a, BigDecimal b) {
+        return a.multiply(b, mathContext);
+    }
+
+    @Override
+    public BigDecimal divide (BigDecimal a, BigDecimal b) {
+        return a.divide(b, mathContext);
+    }
+
+    @Override
+    public BigDecimal negate (BigDecimal a) {
+        return a.negate();
+    }
+
+    @Override
+    public BigDecimal floor (BigDecimal a) {
+        return a.setScale(0, RoundingMode.FLOOR);
+    }
+
+    @Override
+    public int signum (BigDecimal a) {
+        return a.signum();
+    }
+
+    @Override
+    public double getEpsilon () {
+        return Math.pow(10, -digits);
+    }
+
+}
@@ -0,0 +1,512 @@
+package math;
+
+
+public class CompiledExpression {
+
+    static final int VARIABLE = 0;
+    static final int NEGATION = 1;
+    static final int ADDITION = 2;
+    static final int SUBTRACTION = 3;
+    static final int MULTIPLICATION = 4;
+    static final int DIVISION = 5;
+    static final int EXPONENTIATION = 6;
+    static final int FUNCTION = 7;  // FUNCTION + Function.F.ordinal()
+
+    static final int INSTRUCTION_SIZE = 4;
+
+    private static final Function.F[] FUNCTIONS = Function.F.values();
+
+
+    private final String[] variableNames;
+
+    // each instruction consists of: opcode, destination register, source register/variable slot, source register
+    private final int[] code;
+    private final double[] registers;
+    private final int[] resultRegisters;
+    private final int resultRegister;
+
+    // derivatives of the registers for dual evaluation, allocated on first use
+    private double[] tangents;
+
+    // imaginary parts of the registers for complex evaluation, allocated on first use
+    private double[] imaginaryRegisters;
+    private Complex complex;
+
+    // bounds of the registers for interval evaluation, allocated on first use
+    private double[] lowerRegisters, upperRegisters;
+    private Interval interval;
+
+    private EvaluationContext verifiedContext;
+
+
+    CompiledExpression (String[] variableNames, int[] code, double[] registers, int[] resultRegisters) {
+        this.variableNames = variableNames;
+        this.code = code;
+        this.registers = registers;
+        this.resultRegisters = resultRegisters;
+        this.resultRegister = resultRegisters[0];
+    }
+
+
+    // the copy shares the code, but has its own registers, so it can be used by another thread
+    public CompiledExpression copy () {
+        return new CompiledExpression(variableNames, code, registers.clone(), resultRegisters);
+    }
+
+
+    public String[] getVariableNames () {
+        return variableNames.clone();
+    }
+
+    public int getVariableCount () {
+        return variableNames.length;
+    }
+
+    public int getInstructionCount () {
+        return code.length / INSTRUCTION_SIZE;
+    }
+
+    public int getRegisterCount () {
+        return registers.length;
+    }
+
+    public int getResultCount () {
+        return resultRegisters.length;
+    }
+
+
+    public double evaluate (double value) {
+        if (variableNames.length != 1)
+            throw new IllegalArgumentException("expected " + variableNames.length + " variable values");
+
+        return run(value, null);
+    }
+
+    public double evaluate (double[] values) {
+        if (values == null)
+            throw new NullPointerException("values may not be null");
+
+        if (values.length < variableNames.length)
+            throw new IllegalArgumentException("expected " + variableNames.length + " variable values");
+
+        return run(Double.NaN, values);
+    }
+
+    public double evaluate (EvaluationContext context) {
+        if (context != verifiedContext) {
+            verifyContext(context);
+            verifiedContext = context;
+        }
+
+        return run(Double.NaN, context.getValues());
+    }
+
+    // evaluates all compiled expressions at once and returns the value of the first one
+    public double evaluate (EvaluationContext context, double[] results) {
+        if (results == null)
+            throw new NullPointerException("results may not be null");
+
+        if (results.length < resultRegisters.length)
+            throw new IllegalArgumentException("expected space for " + resultRegisters.length + " results");
+
+        double result = evaluate(context);
+        for (int i=0; i<resultRegisters.length; i++)
+            results[i] = registers[resultRegisters[i]];
+
+        return result;
+    }
+
+    public void evaluateDual (EvaluationContext context, int variableSlot, Dual result) {
+        if (context != verifiedContext) {
+            verifyContext(context);
+            verifiedContext = context;
+        }
+
+        if (tangents == null)
+            tangents = new double[registers.length];
+
+        runDual(context.getValues(), variableSlot);
+        result.set(registers[resultRegister], tangents[resultRegister]);
+    }
+
+    // evaluates all compiled expressions and their derivatives with respect to the variable in the given slot at once
+    public void evaluateDual (EvaluationContext context, int variableSlot, double[] values, double[] derivatives) {
+        if (values == null || derivatives == null)
+            throw new NullPointerException("results may not be null");
+
+        if (values.length < resultRegisters.length || derivatives.length < resultRegisters.length)
+            throw new IllegalArgumentException("expected space for " + resultRegisters.length + " results");
+
+        if (context != verifiedContext) {
+            verifyContext(context);
+            verifiedContext = context;
+        }
+
+        if (tangents == null)
+            tangents = new double[registers.length];
+
+        runDual(context.getValues(), variableSlot);
+        for (int i=0; i<resultRegisters.length; i++) {
+            values[i] = registers[resultRegisters[i]];
+            derivatives[i] = tangents[resultRegisters[i]];
+        }
+    }
+
+    public void evaluateComplex (EvaluationContext context, Complex result) {
+        runComplex(context);
+        result.set(registers[resultRegister], imaginaryRegisters[resultRegister]);
+    }
+
+    // evaluates all compiled expressions at once
+    public void evaluateComplex (EvaluationContext context, double[] realResults, double[] imaginaryResults) {
+        if (realResults == null || imaginaryResults == null)
+            throw new NullPointerException("results may not be null");
+
+        if (realResults.length < resultRegisters.length || imaginaryResults.length < resultRegisters.length)
+            throw new IllegalArgumentException("expected space for " + resultRegisters.length + " results");
+
+        runComplex(context);
+        for (int i=0; i<resultRegisters.length; i++) {
+            realResults[i] = registers[resultRegisters[i]];
+            imaginaryResults[i] = imaginaryRegisters[resultRegisters[i]];
+        }
+    }
+
+    private void runComplex (EvaluationContext context) {
+        if (context != verifiedContext) {
+            verifyContext(context);
+            verifiedContext = context;
+        }
+
+        if (imaginaryRegisters == null) {
+            imaginaryRegisters = new double[registers.length];
+            complex = new Complex();
+        }
+
+        runComplex(context.getValues(), context.getImaginaryValues());
+    }
+
+    public void evaluateInterval (EvaluationContext context, Interval result) {
+        if (context != verifiedContext) {
+            verifyContext(context);
+            verifiedContext = context;
+        }
+
+        // the constant registers are never written, so they keep their value as both bounds
+        if (lowerRegisters == null) {
+            lowerRegisters = registers.clone();
+            upperRegisters = registers.clone();
+            interval = new Interval();
+        }
+
+        runInterval(context.getLowerValues(), context.getUpperValues());
+        result.set(lowerRegisters[resultRegister], upperRegisters[resultRegister]);
+    }
+
+    private void verifyContext (EvaluationContext context) {
+        if (context == null)
+            throw new NullPointerException("context may not be null");
+
+        for (int i=0; i<variableNames.length; i++) {
+            if (i >= context.getVariableCount() || !variableNames[i].equals(context.getVariableName(i)))
+                throw new IllegalArgumentException("variable '" + variableNames[i] + "' is not bound to slot " + i);
+        }
+    }
+
+
+    // the registers are reused for every evaluation, so a compiled expression must not be shared between threads
+    private double run (double value, double[] values) {
+        final int[] code = this.code;
+        final double[] r = this.registers;
+
+        for (int pc=0; pc<code.length; pc+=INSTRUCTION_SIZE) {
+            int dst = code[pc+1];
+            int src0 = code[pc+2];
+            int src1 = code[pc+3];
+
+            switch (code[pc]) {
+                case VARIABLE:
+                    r[dst] = values != null ? values[src0] : value;
+                    break;
+
+                case NEGATION:
+                    r[dst] = -r[src0];
+                    break;
+
+                case ADDITION:
+                    r[dst] = r[src0] + r[src1];
+                    break;
+
+                case SUBTRACTION:
+                    r[dst] = r[src0] - r[src1];
+                    break;
+
+                case MULTIPLICATION:
+                    r[dst] = r[src0] * r[src1];
+                    break;
+
+                case DIVISION:
+                    r[dst] = r[src0] / r[src1];
+                    break;
+
+                case EXPONENTIATION:
+                    r[dst] = Math.pow(r[src0], r[src1]);
+                    break;
+
+                default:
+                    r[dst] = function(FUNCTIONS[code[pc] - FUNCTION], r[src0]);
+                    break;
+            }
+        }
+
+        return r[resultRegister];
+    }
+
+    private void runDual (double[] values, int variableSlot) {
+        final int[] code = this.code;
+        final double[] r = this.registers;
+        final double[] t = this.tangents;
+
+        for (int pc=0; pc<code.length; pc+=INSTRUCTION_SIZE) {
+            int dst = code[pc+1];
+            int src0 = code[pc+2];
+            int src1 = code[pc+3];
+
+            switch (code[pc]) {
+                case VARIABLE:
+                    r[dst] = values[src0];
+                    t[dst] = src0 == variableSlot ? 1 : 0;
+                    break;
+
+                case NEGATION:
+                    r[dst] = -r[src0];
+                    t[dst] = -t[src0];
+                    break;
+
+                case ADDITION:
+                    r[dst] = r[src0] + r[src1];
+                    t[dst] = t[src0] + t[src1];
+                    break;
+
+                case SUBTRACTION:
+                    r[dst] = r[src0] - r[src1];
+                    t[dst] = t[src0] - t[src1];
+                    break;
+
+                case MULTIPLICATION:
+                    r[dst] = r[src0] * r[src1];
+                    t[dst] = t[src0]*r[src1] + r[src0]*t[src1];
+                    break;
+
+                case DIVISION:
+                    r[dst] = r[src0] / r[src1];
+                    t[dst] = (t[src0]*r[src1] - r[src0]*t[src1]) / (r[src1]*r[src1]);
+                    break;
+
+                case EXPONENTIATION: {
+                    double a = r[src0], b = r[src1];
+                    double value = Math.pow(a, b);
+
+                    double derivative = 0;
+                    if (t[src0] != 0)
+                        derivative += b * Math.pow(a, b-1) * t[src0];
+
+                    if (t[src1] != 0)
+                        derivative += value * Math.log(a) * t[src1];
+
+                    r[dst] = value;
+                    t[dst] = derivative;
+                    break;
+                }
+
+                default: {
+                    Function.F function = FUNCTIONS[code[pc] - FUNCTION];
+                    double value = function(function, r[src0]);
+
+                    r[dst] = value;
+                    t[dst] = t[src0] != 0 ? Function.derivative(function, r[src0], value) * t[src0] : 0;
+                    break;
+                }
+            }
+        }
+    }
+
+    private void runComplex (double[] values, double[] imaginaryValues) {
+        final int[] code = this.code;
+        final double[] r = this.registers;
+        final double[] i = this.imaginaryRegisters;
+        final Complex c = this.complex;
+
+        for (int pc=0; pc<code.length; pc+=INSTRUCTION_SIZE) {
+            int dst = code[pc+1];
+            int src0 = code[pc+2];
+            int src1 = code[pc+3];
+
+            switch (code[pc]) {
+                case VARIABLE:
+                    r[dst] = values[src0];
+                    i[dst] = imaginaryValues[src0];
+                    continue;
+
+                case NEGATION:
+                    r[dst] = -r[src0];
+                    i[dst] = -i[src0];
+                    continue;
+
+                case ADDITION:
+                    r[dst] = r[src0] + r[src1];
+                    i[dst] = i[src0] + i[src1];
+                    continue;
+
+                case SUBTRACTION:
+                    r[dst] = r[src0] - r[src1];
+                    i[dst] = i[src0] - i[src1];
+                    continue;
+
+                case MULTIPLICATION:
+                    c.set(r[src0], i[src0]);
+                    c.multiply(r[src1], i[src1]);
+                    break;
+
+                case DIVISION:
+                    c.set(r[src0], i[src0]);
+                    c.divide(r[src1], i[src1]);
+                    break;
+
+                case EXPONENTIATION:
+                    c.set(r[src0], i[src0]);
+                    c.pow(r[src1], i[src1]);
+                    break;
+
+                default:
+                    c.set(r[src0], i[src0]);
+                    c.function(FUNCTIONS[code[pc] - FUNCTION]);
+                    break;
+            }
+
+            r[dst] = c.getReal();
+            i[dst] = c.getImaginary();
+        }
+    }
+
+    private void runInterval (double[] lowerValues, double[] upperValues) {
+        final int[] code = this.code;
+        final double[] l = this.lowerRegisters;
+        final double[] u = this.upperRegisters;
+        final Interval interval = this.interval;
+
+        for (int pc=0; pc<code.length; pc+=INSTRUCTION_SIZE) {
+            int dst = code[pc+1];
+            int src0 = code[pc+2];
+            int src1 = code[pc+3];
+
+            switch (code[pc]) {
+                case VARIABLE:
+                    l[dst] = lowerValues[src0];
+                    u[dst] = upperValues[src0];
+                    continue;
+
+                case NEGATION:
+                    l[dst] = -u[src0];
+                    u[dst] = -l[src0];
+                    continue;
+
+                case ADDITION:
+                    interval.set(l[src0], u[src0]);
+                    interval.add(l[src1], u[src1]);
+                    break;
+
+                case SUBTRACTION:
+                    interval.set(l[src0], u[src0]);
+                    interval.subtract(l[src1], u[src1]);
+                    break;
+
+                case MULTIPLICATION:
+                    interval.set(l[src0], u[src0]);
+                    interval.multiply(l[src1], u[src1]);
+                    break;
+
+                case DIVISION:
+                    interval.set(l[src0], u[src0]);
+                    interval.divide(l[src1], u[src1]);
+                    break;
+
+                case EXPONENTIATION:
+                    interval.set(l[src0], u[src0]);
+                    interval.pow(l[src1], u[src1]);
+                    break;
+
+                default:
+                    interval.set(l[src0], u[src0]);
+                    interval.function(FUNCTIONS[code[pc] - FUNCTION]);
+                    break;
+            }
+
+            l[dst] = interval.getLower();
+            u[dst] = interval.getUpper();
+        }
+    }
+
+    static double function (Function.F function, double param) {
+        switch (function) {
+            case sin:
+                return Math.sin(param);
+
+            case cos:
+                return Math.cos(param);
+
+            case tan:
+                return Math.tan(param);
+
+            case sinh:
+                return Math.sinh(param);
+
+            case cosh:
+                return Math.cosh(param);
+
+            case tanh:
+                return Math.tanh(param);
+
+            case sech:
+                return 1/Math.cosh(param);
+
+            case csch:
+                return 1/Math.sinh(param);
+
+            case cot:
+                return 1/Math.tan(param);
+
+            case coth:
+                return 1/Math.tanh(param);
+
+            case csc:
+                return 1/Math.sin(param);
+
+            case sec:
+                return 1/Math.cos(param);
+
+            case ln:
+                return Math.log(param);
+
+            case abs:
+                return Math.abs(param);
+
+            case sqrt:
+                return Math.sqrt(param);
+
+            case round:
+                return Math.round(param);
+
+            case ceil:
+                return Math.ceil(param);
+
+            case floor:
+                return Math.floor(param);
+
+
+            default:
+                throw new UnknownError();
+        }
+    }
+
+}
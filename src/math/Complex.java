@@ -0,0 +1,286 @@
+package math;
+
+
+// mutable complex number, used as accumulator by the complex evaluation, so no object has to be created per node. all
+// operations modify this number and use the principal branch
+public class Complex {
+
+    // tan(x+iy) is ±i within double precision beyond this |y| (and the formula below would overflow)
+    private static final double TAN_LIMIT = 20;
+
+    // integer exponents of complex bases up to this magnitude are computed by repeated squaring, which is more accurate
+    // than e^(n * ln(a))
+    private static final int MAXIMUM_INTEGER_EXPONENT = 1024;
+
+
+    private double real;
+    private double imaginary;
+
+
+    public Complex () {
+        this(0, 0);
+    }
+
+    public Complex (double real, double imaginary) {
+        set(real, imaginary);
+    }
+
+
+    public double getReal () {
+        return real;
+    }
+
+    public double getImaginary () {
+        return imaginary;
+    }
+
+    public double getAbsolute () {
+        return Math.hypot(real, imaginary);
+    }
+
+    public boolean isFinite () {
+        return Double.isFinite(real) && Double.isFinite(imaginary);
+    }
+
+    public void set (double real, double imaginary) {
+        this.real = real;
+        this.imaginary = imaginary;
+    }
+
+
+    public void multiply (double real, double imaginary) {
+        // the real case is handled separately, so infinite values do not turn into NaN because of 0*inf
+        if (this.imaginary == 0 && imaginary == 0) {
+            this.real *= real;
+            return;
+        }
+
+        set(this.real*real - this.imaginary*imaginary, this.real*imaginary + this.imaginary*real);
+    }
+
+    // smith's algorithm, which avoids overflows of c^2 + d^2
+    public void divide (double real, double imaginary) {
+        if (this.imaginary == 0 && imaginary == 0) {
+            this.real /= real;
+            return;
+        }
+
+        double a = this.real, b = this.imaginary;
+
+        if (Math.abs(real) >= Math.abs(imaginary)) {
+            double ratio = imaginary / real;
+            double denominator = real + imaginary*ratio;
+            set((a + b*ratio) / denominator, (b - a*ratio) / denominator);
+        } else {
+            double ratio = real / imaginary;
+            double denominator = real*ratio + imaginary;
+            set((a*ratio + b) / denominator, (b*ratio - a) / denominator);
+        }
+    }
+
+    public void reciprocal () {
+        double a = real, b = imaginary;
+        set(1, 0);
+        divide(a, b);
+    }
+
+    public void pow (double real, double imaginary) {
+        double a = this.real, b = this.imaginary;
+
+        // real results wherever Math.pow has one, so complex and real evaluation agree on the real line
+        if (b == 0 && imaginary == 0 && (a >= 0 || real == Math.rint(real))) {
+            set(Math.pow(a, real), 0);
+            return;
+        }
+
+        if (imaginary == 0 && real == Math.rint(real) && Math.abs(real) <= MAXIMUM_INTEGER_EXPONENT) {
+            integerPow((int) real);
+            return;
+        }
+
+        if (a == 0 && b == 0) {
+            // 0^z is 0 for Re(z) > 0 and undefined otherwise
+            set(real > 0 ? 0 : Double.NaN, 0);
+            return;
+        }
+
+        // a^z = e^(z * ln(a))
+        log();
+        multiply(real, imaginary);
+        exp();
+    }
+
+    private void integerPow (int exponent) {
+        double a = real, b = imaginary;
+        double resultReal = 1, resultImaginary = 0;
+
+        for (int n=Math.abs(exponent); n>0; n>>=1) {
+            if ((n & 1) != 0) {
+                double r = resultReal*a - resultImaginary*b;
+                resultImaginary = resultReal*b + resultImaginary*a;
+                resultReal = r;
+            }
+
+            double r = a*a - b*b;
+            b = 2*a*b;
+            a = r;
+        }
+
+        set(resultReal, resultImaginary);
+
+        if (exponent < 0)
+            reciprocal();
+    }
+
+    public void exp () {
+        double factor = Math.exp(real);
+        if (imaginary == 0)
+            set(factor, 0);
+        else
+            set(factor * Math.cos(imaginary), factor * Math.sin(imaginary));
+    }
+
+    // -0 is treated like 0, so both evaluators agree on the negative real axis, even if they produce differently signed
+    // zeros
+    public void log () {
+        set(Math.log(getAbsolute()), Math.atan2(imaginary + 0.0, real));
+    }
+
+    public void sqrt () {
+        double a = real, b = imaginary;
+        if (a == 0 && b == 0) {
+            set(0, b);
+            return;
+        }
+
+        // numerically stable form of the principal root
+        double t = Math.sqrt((Math.abs(a) + Math.hypot(a, b)) / 2);
+        if (a >= 0)
+            set(t, b / (2*t));
+        else
+            set(Math.abs(b) / (2*t), b < 0 ? -t : t);
+    }
+
+
+    public void function (Function.F function) {
+        double a = real, b = imaginary;
+
+        switch (function) {
+            case sin:
+                set(Math.sin(a) * Math.cosh(b), Math.cos(a) * Math.sinh(b));
+                break;
+
+            case cos:
+                set(Math.cos(a) * Math.cosh(b), -Math.sin(a) * Math.sinh(b));
+                break;
+
+            case tan:
+                tan(a, b);
+                break;
+
+            case sinh:
+                set(Math.sinh(a) * Math.cos(b), Math.cosh(a) * Math.sin(b));
+                break;
+
+            case cosh:
+                set(Math.cosh(a) * Math.cos(b), Math.sinh(a) * Math.sin(b));
+                break;
+
+            case tanh:
+                if (b == 0) {
+                    set(Math.tanh(a), 0);
+                    break;
+                }
+
+                // tanh(z) = -i * tan(iz)
+                tan(-b, a);
+                set(imaginary, -real);
+                break;
+
+            case sech:
+                function(Function.F.cosh);
+                reciprocal();
+                break;
+
+            case csch:
+                function(Function.F.sinh);
+                reciprocal();
+                break;
+
+            case cot:
+                tan(a, b);
+                reciprocal();
+                break;
+
+            case coth:
+                function(Function.F.tanh);
+                reciprocal();
+                break;
+
+            case csc:
+                function(Function.F.sin);
+                reciprocal();
+                break;
+
+            case sec:
+                function(Function.F.cos);
+                reciprocal();
+                break;
+
+            case ln:
+                log();
+                break;
+
+            case abs:
+                set(getAbsolute(), 0);
+                break;
+
+            case sqrt:
+                sqrt();
+                break;
+
+            // component-wise, which gives the nearest gaussian integer for round
+            case round:
+                set(Math.round(a), Math.round(b));
+                break;
+
+            case ceil:
+                set(Math.ceil(a), Math.ceil(b));
+                break;
+
+            case floor:
+                set(Math.floor(a), Math.floor(b));
+                break;
+
+
+            default:
+                throw new UnknownError();
+        }
+    }
+
+    // tan(a+ib) = (sin(2a) + i*sinh(2b)) / (cos(2a) + cosh(2b))
+    private void tan (double a, double b) {
+        if (b == 0) {
+            set(Math.tan(a), 0);
+            return;
+        }
+
+        if (Math.abs(b) > TAN_LIMIT) {
+            set(0, Math.signum(b));
+            return;
+        }
+
+        double denominator = Math.cos(2*a) + Math.cosh(2*b);
+        set(Math.sin(2*a) / denominator, Math.sinh(2*b) / denominator);
+    }
+
+
+    @Override
+    public String toString () {
+        if (imaginary < 0 || (imaginary == 0 && 1/imaginary < 0))
+            return "(" + real + " - " + (-imaginary) + "i)";
+
+        return "(" + real + " + " + imaginary + "i)";
+    }
+
+}
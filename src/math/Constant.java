@@ -23,6 +23,8 @@ public class Constant extends Expression {
     }
 
     public void setConstant (C constant) {
+        checkMutable();
+
         if (constant == null)
             throw new NullPointerException("constant may not be null");
 
@@ -50,6 +52,26 @@ public class Constant extends Expression {
         return getValue();
     }
 
+    @Override
+    public double evaluate (EvaluationContext context) {
+        return getValue();
+    }
+
+    @Override
+    public void evaluateDual (EvaluationContext context, int variableSlot, Dual result) {
+        result.set(getValue(), 0);
+    }
+
+    @Override
+    public void evaluateComplex (EvaluationContext context, Complex result) {
+        result.set(getValue(), 0);
+    }
+
+    @Override
+    public void evaluateInterval (EvaluationContext context, Interval result) {
+        result.set(getValue(), getValue());
+    }
+
     @Override
     public String toString () {
         return constant.name();
@@ -27,6 +27,8 @@ public class Division extends Expression {
     }
 
     public void setDividend (Expression dividend) {
+        checkMutable();
+
         if (dividend == null)
             throw new NullPointerException("dividend may not be null");
 
@@ -34,6 +36,8 @@ public class Division extends Expression {
     }
 
     public void setDivisor (Expression divisor) {
+        checkMutable();
+
         if (divisor == null)
             throw new NullPointerException("divisor may not be null");
 
@@ -46,6 +50,52 @@ public class Division extends Expression {
         return dividend.evaluate(variables) / divisor.evaluate(variables);
     }
 
+    @Override
+    public double evaluate (EvaluationContext context) throws EvaluationException {
+        return dividend.evaluate(context) / divisor.evaluate(context);
+    }
+
+    @Override
+    public void evaluateDual (EvaluationContext context, int variableSlot, Dual result) throws EvaluationException {
+        dividend.evaluateDual(context, variableSlot, result);
+        double a = result.getValue();
+        double da = result.getDerivative();
+
+        divisor.evaluateDual(context, variableSlot, result);
+        double b = result.getValue();
+        double db = result.getDerivative();
+
+        result.set(a / b, (da*b - a*db) / (b*b));
+    }
+
+    @Override
+    public void evaluateComplex (EvaluationContext context, Complex result) throws EvaluationException {
+        dividend.evaluateComplex(context, result);
+        double a = result.getReal();
+        double b = result.getImaginary();
+
+        divisor.evaluateComplex(context, result);
+        double c = result.getReal();
+        double d = result.getImaginary();
+
+        result.set(a, b);
+        result.divide(c, d);
+    }
+
+    @Override
+    public void evaluateInterval (EvaluationContext context, Interval result) throws EvaluationException {
+        dividend.evaluateInterval(context, result);
+        double a = result.getLower();
+        double b = result.getUpper();
+
+        divisor.evaluateInterval(context, result);
+        double c = result.getLower();
+        double d = result.getUpper();
+
+        result.set(a, b);
+        result.divide(c, d);
+    }
+
     @Override
     public String toString () {
         return "(" + dividend.toString() + " / " + divisor.toString() + ")";
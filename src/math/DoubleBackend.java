@@ -0,0 +1,129 @@
+package math;
+
+
+// plain double arithmetic with the functions of Math, like the other evaluators
+public class DoubleBackend extends NumericBackend<Double> {
+
+    @Override
+    public Double valueOf (double value) {
+        return value;
+    }
+
+    @Override
+    public double toDouble (Double value) {
+        return value;
+    }
+
+
+    @Override
+    public Double add (Double a, Double b) {
+        return a + b;
+    }
+
+    @Override
+    public Double subtract (Double a, Double b) {
+        return a - b;
+    }
+
+    @Override
+    public Double multiply (Double a, Double b) {
+        return a * b;
+    }
+
+    @Override
+    public Double divide (Double a, Double b) {
+        return a / b;
+    }
+
+    @Override
+    public Double negate (Double a) {
+        return -a;
+    }
+
+    @Override
+    public Double floor (Double a) {
+        return Math.floor(a);
+    }
+
+    @Override
+    public int signum (Double a) {
+        return (int) Math.signum(a);
+    }
+
+    @Override
+    public double getEpsilon () {
+        return Math.ulp(1.0) / 2;
+    }
+
+    @Override
+    public boolean isFinite (Double value) {
+        return Double.isFinite(value);
+    }
+
+
+    @Override
+    public Double constant (Constant.C constant) {
+        return new Constant(constant).getValue();
+    }
+
+    @Override
+    public Double function (Function.F function, Double param) {
+        return CompiledExpression.function(function, param);
+    }
+
+    @Override
+    public Double pow (Double base, Double exponent) {
+        return Math.pow(base, exponent);
+    }
+
+    @Override
+    public Double sqrt (Double value) {
+        return Math.sqrt(value);
+    }
+
+    @Override
+    public Double exp (Double value) {
+        return Math.exp(value);
+    }
+
+    @Override
+    public Double log (Double value) {
+        return Math.log(value);
+    }
+
+    @Override
+    public Double sin (Double value) {
+        return Math.sin(value);
+    }
+
+    @Override
+    public Double cos (Double value) {
+        return Math.cos(value);
+    }
+
+    @Override
+    public Double sinh (Double value) {
+        return Math.sinh(value);
+    }
+
+    @Override
+    public Double cosh (Double value) {
+        return Math.cosh(value);
+    }
+
+    @Override
+    public Double tanh (Double value) {
+        return Math.tanh(value);
+    }
+
+    @Override
+    public Double getPi () {
+        return Math.PI;
+    }
+
+    @Override
+    public Double getLn2 () {
+        return Math.log(2);
+    }
+
+}
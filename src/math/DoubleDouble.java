@@ -0,0 +1,162 @@
+package math;
+
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+
+// immutable unevaluated sum high + low of two doubles with |low| <= ulp(high)/2, which gives about 32 significant
+// digits. the operations use the exact sums and products of dekker and knuth, so only their final result is rounded
+public class DoubleDouble {
+
+    // 2^27 + 1, splits a double into two halves of 26 bits, whose products are exact
+    private static final double SPLITTER = 134217729;
+
+    // larger values are scaled down before they are split, so their halves do not overflow
+    private static final double SPLIT_THRESHOLD = Math.scalb(1.0, 996);
+
+    private static final MathContext DECIMAL_CONTEXT = new MathContext(32);
+
+
+    private final double high;
+    private final double low;
+
+
+    public DoubleDouble (double value) {
+        this(value, 0);
+    }
+
+    public DoubleDouble (double high, double low) {
+        // renormalized, infinite and NaN values have no low part
+        double sum = high + low;
+        if (Double.isFinite(sum)) {
+            this.high = sum;
+            this.low = low - (sum - high);
+        } else {
+            this.high = sum;
+            this.low = 0;
+        }
+    }
+
+
+    public double getHigh () {
+        return high;
+    }
+
+    public double getLow () {
+        return low;
+    }
+
+    public double doubleValue () {
+        return high;
+    }
+
+    public boolean isFinite () {
+        return Double.isFinite(high);
+    }
+
+    public int signum () {
+        return high != 0 ? (int) Math.signum(high) : (int) Math.signum(low);
+    }
+
+
+    public DoubleDouble add (DoubleDouble value) {
+        double s = high + value.high;
+        double sError = twoSumError(high, value.high, s);
+        double t = low + value.low;
+        double tError = twoSumError(low, value.low, t);
+
+        sError += t;
+        double u = s + sError;
+        sError -= u - s;
+        sError += tError;
+
+        return new DoubleDouble(u, sError);
+    }
+
+    public DoubleDouble subtract (DoubleDouble value) {
+        return add(value.negate());
+    }
+
+    public DoubleDouble negate () {
+        return new DoubleDouble(-high, -low);
+    }
+
+    public DoubleDouble multiply (DoubleDouble value) {
+        double p = high * value.high;
+        double pError = twoProductError(high, value.high, p);
+        pError += high * value.low + low * value.high;
+
+        return new DoubleDouble(p, pError);
+    }
+
+    // long division, each quotient digit corrects the remainder of the previous one
+    public DoubleDouble divide (DoubleDouble value) {
+        double q0 = high / value.high;
+        if (!Double.isFinite(q0) || !value.isFinite())
+            return new DoubleDouble(q0);
+
+        DoubleDouble remainder = subtract(value.multiply(q0));
+        double q1 = remainder.high / value.high;
+        remainder = remainder.subtract(value.multiply(q1));
+        double q2 = remainder.high / value.high;
+
+        return new DoubleDouble(q0, q1).add(new DoubleDouble(q2));
+    }
+
+    private DoubleDouble multiply (double value) {
+        double p = high * value;
+        double pError = twoProductError(high, value, p);
+        pError += low * value;
+
+        return new DoubleDouble(p, pError);
+    }
+
+    public DoubleDouble floor () {
+        double floor = Math.floor(high);
+        if (floor != high)
+            return new DoubleDouble(floor);
+
+        // high is an integer, so the fractional part is in low
+        return new DoubleDouble(high, Math.floor(low));
+    }
+
+
+    // error of the rounded sum s = a + b
+    private static double twoSumError (double a, double b, double s) {
+        double bVirtual = s - a;
+        return (a - (s - bVirtual)) + (b - bVirtual);
+    }
+
+    // error of the rounded product p = a * b. large operands are scaled down first, their halves could overflow
+    private static double twoProductError (double a, double b, double p) {
+        if (!Double.isFinite(p))
+            return 0;
+
+        if (Math.abs(a) > SPLIT_THRESHOLD)
+            return twoProductError(a * 0x1p-28, b, p * 0x1p-28) * 0x1p28;
+
+        if (Math.abs(b) > SPLIT_THRESHOLD)
+            return twoProductError(a, b * 0x1p-28, p * 0x1p-28) * 0x1p28;
+
+        double t = SPLITTER * a;
+        double aHigh = t - (t - a);
+        double aLow = a - aHigh;
+
+        t = SPLITTER * b;
+        double bHigh = t - (t - b);
+        double bLow = b - bHigh;
+
+        return ((aHigh*bHigh - p) + aHigh*bLow + aLow*bHigh) + aLow*bLow;
+    }
+
+
+    @Override
+    public String toString () {
+        if (!isFinite())
+            return Double.toString(high);
+
+        return new BigDecimal(high).add(new BigDecimal(low)).round(DECIMAL_CONTEXT).toString();
+    }
+
+}
@@ -0,0 +1,63 @@
+package math;
+
+
+// double-double arithmetic, about twice the precision of double at a fraction of the cost of BigDecimal
+public class DoubleDoubleBackend extends NumericBackend<DoubleDouble> {
+
+    @Override
+    public DoubleDouble valueOf (double value) {
+        return new DoubleDouble(value);
+    }
+
+    @Override
+    public double toDouble (DoubleDouble value) {
+        return value.doubleValue();
+    }
+
+
+    @Override
+    public DoubleDouble add (DoubleDouble a, DoubleDouble b) {
+        return a.add(b);
+    }
+
+    @Override
+    public DoubleDouble subtract (DoubleDouble a, DoubleDouble b) {
+        return a.subtract(b);
+    }
+
+    @Override
+    public DoubleDouble multiply (DoubleDouble a, DoubleDouble b) {
+        return a.multiply(b);
+    }
+
+    @Override
+    public DoubleDouble divide (DoubleDouble a, DoubleDouble b) {
+        return a.divide(b);
+    }
+
+    @Override
+    public DoubleDouble negate (DoubleDouble a) {
+        return a.negate();
+    }
+
+    @Override
+    public DoubleDouble floor (DoubleDouble a) {
+        return a.floor();
+    }
+
+    @Override
+    public int signum (DoubleDouble a) {
+        return a.signum();
+    }
+
+    @Override
+    public double getEpsilon () {
+        return Math.scalb(1.0, -104);
+    }
+
+    @Override
+    public boolean isFinite (DoubleDouble value) {
+        return value.isFinite();
+    }
+
+}
@@ -0,0 +1,8 @@
+package math;
+
+
+public interface DoubleMultiOperator {
+
+    double applyAsDouble (double[] values);
+
+}
@@ -0,0 +1,38 @@
+package math;
+
+
+public class Dual {
+
+    private double value;
+    private double derivative;
+
+
+    public Dual () {
+        this(0, 0);
+    }
+
+    public Dual (double value, double derivative) {
+        set(value, derivative);
+    }
+
+
+    public double getValue () {
+        return value;
+    }
+
+    public double getDerivative () {
+        return derivative;
+    }
+
+    public void set (double value, double derivative) {
+        this.value = value;
+        this.derivative = derivative;
+    }
+
+
+    @Override
+    public String toString () {
+        return "(" + value + ", " + derivative + ")";
+    }
+
+}
@@ -0,0 +1,160 @@
+package math;
+
+
+import math.exception.UnknownVariableException;
+
+
+public class EvaluationContext {
+
+    private final String[] variableNames;
+    private final double[] values;
+    private final double[] imaginaryValues;  // only used by the complex evaluation
+    private final double[] lowerValues, upperValues;  // only used by the interval evaluation
+
+
+    public EvaluationContext (String ...variableNames) {
+        if (variableNames == null)
+            throw new NullPointerException("variableNames may not be null");
+
+        for (String variableName : variableNames) {
+            if (variableName == null)
+                throw new NullPointerException("variable name may not be null");
+
+            if (!VariableDefinition.checkName(variableName))
+                throw new IllegalArgumentException("variable name contains illegal characters");
+        }
+
+        this.variableNames = variableNames.clone();
+        this.values = new double[variableNames.length];
+        this.imaginaryValues = new double[variableNames.length];
+        this.lowerValues = new double[variableNames.length];
+        this.upperValues = new double[variableNames.length];
+    }
+
+
+    public int getVariableCount () {
+        return variableNames.length;
+    }
+
+    public String[] getVariableNames () {
+        return variableNames.clone();
+    }
+
+    public String getVariableName (int slot) {
+        return variableNames[slot];
+    }
+
+    public int getSlot (String variableName) {
+        for (int i=0; i<variableNames.length; i++) {
+            if (variableNames[i].equals(variableName))
+                return i;
+        }
+
+        return -1;
+    }
+
+
+    public double getValue (int slot) {
+        return values[slot];
+    }
+
+    public double getImaginaryValue (int slot) {
+        return imaginaryValues[slot];
+    }
+
+    public double getLowerValue (int slot) {
+        return lowerValues[slot];
+    }
+
+    public double getUpperValue (int slot) {
+        return upperValues[slot];
+    }
+
+    // only sets the real part, the imaginary part is kept
+    public void setValue (int slot, double value) {
+        values[slot] = value;
+    }
+
+    public void setValue (int slot, double real, double imaginary) {
+        values[slot] = real;
+        imaginaryValues[slot] = imaginary;
+    }
+
+    // the interval of the variable for the interval evaluation, independent of its value
+    public void setInterval (int slot, double lower, double upper) {
+        if (!(lower <= upper))
+            throw new IllegalArgumentException("lower bound may not be greater than the upper bound");
+
+        lowerValues[slot] = lower;
+        upperValues[slot] = upper;
+    }
+
+    public void setValue (String variableName, double value) throws UnknownVariableException {
+        int slot = getSlot(variableName);
+        if (slot == -1)
+            throw new UnknownVariableException(variableName);
+
+        values[slot] = value;
+    }
+
+    // backing array, indexed by slot
+    double[] getValues () {
+        return values;
+    }
+
+    double[] getImaginaryValues () {
+        return imaginaryValues;
+    }
+
+    double[] getLowerValues () {
+        return lowerValues;
+    }
+
+    double[] getUpperValues () {
+        return upperValues;
+    }
+
+
+    // resolves the slot of every variable of the expression once, instead of on every evaluation. interned (frozen)
+    // variables may be shared by trees with different contexts, so they do not store the slot and only the check for
+    // unknown variables applies to them. frozen trees, e.g. the ones of a PreparedFunction, are evaluated fastest through
+    // their compiled programs, which resolve the slots when they are compiled
+    public void bind (Expression expression) throws UnknownVariableException {
+        if (expression == null)
+            throw new NullPointerException("expression may not be null");
+
+        if (expression instanceof Variable) {
+            Variable variable = (Variable) expression;
+
+            int slot = getSlot(variable.getName());
+            if (slot == -1)
+                throw new UnknownVariableException(variable.getName());
+
+            variable.setSlot(slot);
+        } else if (expression instanceof Addition) {
+            bind(((Addition) expression).getAddend0());
+            bind(((Addition) expression).getAddend1());
+        } else if (expression instanceof Subtraction) {
+            bind(((Subtraction) expression).getMinuend());
+            bind(((Subtraction) expression).getSubtrahend());
+        } else if (expression instanceof Multiplication) {
+            bind(((Multiplication) expression).getMultiplicand0());
+            bind(((Multiplication) expression).getMultiplicand1());
+        } else if (expression instanceof Division) {
+            bind(((Division) expression).getDividend());
+            bind(((Division) expression).getDivisor());
+        } else if (expression instanceof Exponentiation) {
+            bind(((Exponentiation) expression).getBase());
+            bind(((Exponentiation) expression).getExponent());
+        } else if (expression instanceof Function) {
+            bind(((Function) expression).getParameter());
+        } else if (expression instanceof AdditionList) {
+            for (AdditionList.Addend addend : ((AdditionList) expression).getAddends())
+                bind(addend.expression);
+        } else if (expression instanceof MultiplicationList) {
+            for (Expression multiplicand : ((MultiplicationList) expression).getMultiplicands())
+                bind(multiplicand);
+        }
+    }
+
+}
@@ -24,6 +24,8 @@ public class Exponentiation extends Expression {
     }
 
     public void setBase (Expression base) {
+        checkMutable();
+
         if (base == null)
             throw new NullPointerException("base may not be null");
 
@@ -31,6 +33,8 @@ public class Exponentiation extends Expression {
     }
 
     public void setExponent (Expression exponent) {
+        checkMutable();
+
         if (exponent == null)
             throw new NullPointerException("exponent may not be null");
 
@@ -43,6 +47,62 @@ public class Exponentiation extends Expression {
         return Math.pow(base.evaluate(variables), exponent.evaluate(variables));
     }
 
+    @Override
+    public double evaluate (EvaluationContext context) throws EvaluationException {
+        return Math.pow(base.evaluate(context), exponent.evaluate(context));
+    }
+
+    @Override
+    public void evaluateDual (EvaluationContext context, int variableSlot, Dual result) throws EvaluationException {
+        base.evaluateDual(context, variableSlot, result);
+        double a = result.getValue();
+        double da = result.getDerivative();
+
+        exponent.evaluateDual(context, variableSlot, result);
+        double b = result.getValue();
+        double db = result.getDerivative();
+
+        double value = Math.pow(a, b);
+
+        // (a^b)' = b * a^(b-1) * a' + a^b * ln(a) * b'
+        double derivative = 0;
+        if (da != 0)
+            derivative += b * Math.pow(a, b-1) * da;
+
+        if (db != 0)
+            derivative += value * Math.log(a) * db;
+
+        result.set(value, derivative);
+    }
+
+    @Override
+    public void evaluateComplex (EvaluationContext context, Complex result) throws EvaluationException {
+        base.evaluateComplex(context, result);
+        double a = result.getReal();
+        double b = result.getImaginary();
+
+        exponent.evaluateComplex(context, result);
+        double c = result.getReal();
+        double d = result.getImaginary();
+
+        result.set(a, b);
+        result.pow(c, d);
+    }
+
+    @Override
+    public void evaluateInterval (EvaluationContext context, Interval result) throws EvaluationException {
+        base.evaluateInterval(context, result);
+        double a = result.getLower();
+        double b = result.getUpper();
+
+        exponent.evaluateInterval(context, result);
+        double c = result.getLower();
+        double d = result.getUpper();
+
+        result.set(a, b);
+        result.pow(c, d);
+    }
+
     @Override
     public String toString () {
         return "(" + base.toString() + "^" + exponent.toString() + ")";
@@ -2,14 +2,57 @@ package math;
 
 import math.exception.EvaluationException;
 import math.exception.ParseException;
+import math.exception.UnknownVariableException;
 
 
 public abstract class Expression {
 
+    // set once the expression has been interned, the expression may not be changed afterwards
+    private ExpressionInterner interner;
+    private int hash;
+
+    // the simplified form of an interned expression, only set by the simplifier which owns the interner
+    private Expression simplified;
+
+
     public static Expression parse (String text) throws ParseException {
         return ExpressionParser.parse(text);
     }
 
+    public Dual evaluateDual (String variableName, double value) throws EvaluationException {
+        EvaluationContext context = new EvaluationContext(variableName);
+        context.setValue(0, value);
+
+        Dual result = new Dual();
+        evaluateDual(context, 0, result);
+
+        return result;
+    }
+
+    public Complex evaluateComplex (String variableName, double real, double imaginary) throws EvaluationException {
+        EvaluationContext context = new EvaluationContext(variableName);
+        context.setValue(0, real, imaginary);
+
+        Complex result = new Complex();
+        evaluateComplex(context, result);
+
+        return result;
+    }
+
+    public Interval evaluateInterval (String variableName, double lower, double upper) throws EvaluationException {
+        EvaluationContext context = new EvaluationContext(variableName);
+        context.setInterval(0, lower, upper);
+
+        Interval result = new Interval();
+        evaluateInterval(context, result);
+
+        return result;
+    }
+
+    public CompiledExpression compile (String ...variableNames) throws UnknownVariableException {
+        return ExpressionCompiler.compile(ExpressionSimplifier.simplify(this), variableNames);
+    }
+
 
     @Override
     public boolean equals (Object obj) {
@@ -23,6 +66,9 @@ public abstract class Expression {
         Expression expression0 = this;
         Expression expression1 = (Expression) obj;
 
+        if (expression0.isDistinctFrom(expression1))
+            return false;
+
         if (expression0 instanceof Addition) {
             if (!(expression1 instanceof Addition))
                 return false;
@@ -100,11 +146,104 @@ public abstract class Expression {
 
     @Override
     public int hashCode () {
-        return 0;  // not implemented
+        if (interner != null)
+            return hash;
+
+        return computeHashCode();
+    }
+
+    private int computeHashCode () {
+        if (this instanceof Addition) {
+            return 31 * (31 + ((Addition) this).getAddend0().hashCode()) + ((Addition) this).getAddend1().hashCode();
+        } else if (this instanceof Subtraction) {
+            return 31 * (37 + ((Subtraction) this).getMinuend().hashCode()) + ((Subtraction) this).getSubtrahend().hashCode();
+        } else if (this instanceof Multiplication) {
+            return 31 * (41 + ((Multiplication) this).getMultiplicand0().hashCode()) + ((Multiplication) this).getMultiplicand1().hashCode();
+        } else if (this instanceof Division) {
+            return 31 * (43 + ((Division) this).getDividend().hashCode()) + ((Division) this).getDivisor().hashCode();
+        } else if (this instanceof Exponentiation) {
+            return 31 * (47 + ((Exponentiation) this).getBase().hashCode()) + ((Exponentiation) this).getExponent().hashCode();
+        } else if (this instanceof Function) {
+            return 31 * (53 + ((Function) this).getFunction().ordinal()) + ((Function) this).getParameter().hashCode();
+        } else if (this instanceof Scalar) {
+            double value = ((Scalar) this).getValue();
+
+            // 0.0 and -0.0 are equal. the bits are mixed, because small integers differ only in their upper bits, which
+            // would make most of them collide
+            long bits = value == 0 ? 0 : Double.doubleToLongBits(value) * 0x9E3779B97F4A7C15L;
+            return 59 + (int) (bits ^ (bits >>> 32));
+        } else if (this instanceof Constant) {
+            return 61 + ((Constant) this).getConstant().ordinal();
+        } else if (this instanceof Variable) {
+            return 67 + ((Variable) this).getName().hashCode();
+        } else if (this instanceof AdditionList) {
+            AdditionList additionList = (AdditionList) this;
+
+            int hash = 71;
+            for (int i=0; i<additionList.getAddendCount(); i++) {
+                AdditionList.Addend addend = additionList.getAddend(i);
+                hash = 31 * (31*hash + (addend.subtract ? 1 : 0)) + addend.expression.hashCode();
+            }
+
+            return hash;
+        } else if (this instanceof MultiplicationList) {
+            MultiplicationList multiplicationList = (MultiplicationList) this;
+
+            int hash = 73;
+            for (int i=0; i<multiplicationList.getMultiplicandCount(); i++)
+                hash = 31*hash + multiplicationList.getMultiplicand(i).hashCode();
+
+            return hash;
+        } else {
+            throw new UnknownError();
+        }
+    }
+
+
+    ExpressionInterner getInterner () {
+        return interner;
+    }
+
+    void freeze (ExpressionInterner interner) {
+        this.hash = computeHashCode();
+        this.interner = interner;
+    }
+
+    boolean isFrozen () {
+        return interner != null;
+    }
+
+    void checkMutable () {
+        if (interner != null)
+            throw new IllegalStateException("expression is immutable");
+    }
+
+    Expression getSimplified () {
+        return simplified;
+    }
+
+    void setSimplified (Expression simplified) {
+        this.simplified = simplified;
+    }
+
+    // fast inequality check, only works for interned expressions
+    boolean isDistinctFrom (Expression expression) {
+        if (interner == null || expression.interner == null)
+            return false;
+
+        // an interner never creates two equal expressions
+        if (interner == expression.interner)
+            return this != expression;
+
+        return hash != expression.hash;
     }
 
 
     public abstract double evaluate(VariableDefinition ...variables) throws EvaluationException;
+    public abstract double evaluate(EvaluationContext context) throws EvaluationException;
+    public abstract void evaluateDual(EvaluationContext context, int variableSlot, Dual result) throws EvaluationException;
+    public abstract void evaluateComplex(EvaluationContext context, Complex result) throws EvaluationException;
+    public abstract void evaluateInterval(EvaluationContext context, Interval result) throws EvaluationException;
     public abstract String toString();
 
 }
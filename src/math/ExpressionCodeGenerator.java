@@ -0,0 +1,509 @@
+package math;
+
+
+import math.exception.UnknownVariableException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleUnaryOperator;
+
+
+public class ExpressionCodeGenerator {
+
+    private static final String PACKAGE_NAME = "math.generated";
+    private static final AtomicLong CLASS_COUNTER = new AtomicLong();
+
+    private static final int MAX_CODE_LENGTH = 65535;
+
+    // opcodes
+    private static final int ICONST_0 = 0x03;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int DCONST_0 = 0x0e;
+    private static final int DCONST_1 = 0x0f;
+    private static final int LDC2_W = 0x14;
+    private static final int DLOAD_1 = 0x27;
+    private static final int ALOAD_0 = 0x2a;
+    private static final int ALOAD_1 = 0x2b;
+    private static final int DALOAD = 0x31;
+    private static final int DADD = 0x63;
+    private static final int DSUB = 0x67;
+    private static final int DMUL = 0x6b;
+    private static final int DDIV = 0x6f;
+    private static final int DNEG = 0x77;
+    private static final int L2D = 0x8a;
+    private static final int DRETURN = 0xaf;
+    private static final int RETURN = 0xb1;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int INVOKESTATIC = 0xb8;
+
+
+    private final String[] variableNames;
+    private final boolean unary;
+
+    private final ConstantPool constantPool;
+
+    private ByteArrayOutputStream code;
+    private int stackSize;
+    private int maxStackSize;
+
+
+    private ExpressionCodeGenerator (String[] variableNames, boolean unary, ConstantPool constantPool) {
+        this.variableNames = variableNames;
+        this.unary = unary;
+        this.constantPool = constantPool;
+    }
+
+
+    public static DoubleUnaryOperator generateUnary (Expression expression, String variableName) throws UnknownVariableException {
+        if (variableName == null)
+            throw new NullPointerException("variable name may not be null");
+
+        return (DoubleUnaryOperator) generate(expression, variableName);
+    }
+
+    public static DoubleMultiOperator generate (Expression expression, String ...variableNames) throws UnknownVariableException {
+        if (expression == null)
+            throw new NullPointerException("expression may not be null");
+
+        if (variableNames == null)
+            throw new NullPointerException("variableNames may not be null");
+
+        for (String variableName : variableNames) {
+            if (variableName == null)
+                throw new NullPointerException("variable name may not be null");
+        }
+
+
+        String className = PACKAGE_NAME + ".GeneratedExpression" + CLASS_COUNTER.incrementAndGet();
+        byte[] classFile = generateClassFile(expression, variableNames.clone(), className.replace('.', '/'));
+
+        try {
+            Class<?> clazz = new GeneratedClassLoader(ExpressionCodeGenerator.class.getClassLoader()).define(className, classFile);
+            return (DoubleMultiOperator) clazz.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("could not instantiate generated class", e);
+        }
+    }
+
+
+    private static byte[] generateClassFile (Expression expression, String[] variableNames, String internalClassName) throws UnknownVariableException {
+        boolean unary = variableNames.length == 1;
+
+        ConstantPool constantPool = new ConstantPool();
+
+        // the multi-variable method is always generated, the unary one only if there is exactly one variable
+        ExpressionCodeGenerator multiGenerator = new ExpressionCodeGenerator(variableNames, false, constantPool);
+        byte[] multiCode = multiGenerator.generateMethodCode(expression);
+
+        ExpressionCodeGenerator unaryGenerator = null;
+        byte[] unaryCode = null;
+        if (unary) {
+            unaryGenerator = new ExpressionCodeGenerator(variableNames, true, constantPool);
+            unaryCode = unaryGenerator.generateMethodCode(expression);
+        }
+
+
+        int thisClass = constantPool.classRef(internalClassName);
+        int superClass = constantPool.classRef("java/lang/Object");
+        int multiInterface = constantPool.classRef(DoubleMultiOperator.class.getName().replace('.', '/'));
+        int unaryInterface = unary ? constantPool.classRef("java/util/function/DoubleUnaryOperator") : 0;
+
+        int objectInit = constantPool.methodRef("java/lang/Object", "<init>", "()V");
+        int codeName = constantPool.utf8("Code");
+        int initName = constantPool.utf8("<init>");
+        int initDescriptor = constantPool.utf8("()V");
+        int applyName = constantPool.utf8("applyAsDouble");
+        int multiDescriptor = constantPool.utf8("([D)D");
+        int unaryDescriptor = unary ? constantPool.utf8("(D)D") : 0;
+
+        byte[] initCode = new byte[]{
+                (byte) ALOAD_0,
+                (byte) INVOKESPECIAL, (byte) (objectInit >> 8), (byte) objectInit,
+                (byte) RETURN
+        };
+
+
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);   // minor version
+            out.writeShort(52);  // major version (Java 8)
+
+            out.writeShort(constantPool.count);
+            out.write(constantPool.entries.toByteArray());
+
+            out.writeShort(0x0001 | 0x0010 | 0x0020);  // public final super
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+
+            out.writeShort(unary ? 2 : 1);
+            out.writeShort(multiInterface);
+            if (unary)
+                out.writeShort(unaryInterface);
+
+            out.writeShort(0);  // fields
+
+            out.writeShort(unary ? 3 : 2);
+            writeMethod(out, initName, initDescriptor, codeName, initCode, 1, 1);
+            writeMethod(out, applyName, multiDescriptor, codeName, multiCode, multiGenerator.maxStackSize, 2);
+            if (unary)
+                writeMethod(out, applyName, unaryDescriptor, codeName, unaryCode, unaryGenerator.maxStackSize, 3);
+
+            out.writeShort(0);  // attributes
+
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UnknownError();
+        }
+    }
+
+    private static void writeMethod (DataOutputStream out, int name, int descriptor, int codeName, byte[] code, int maxStackSize, int maxLocals) throws IOException {
+        out.writeShort(0x0001);  // public
+        out.writeShort(name);
+        out.writeShort(descriptor);
+
+        out.writeShort(1);
+        out.writeShort(codeName);
+        out.writeInt(12 + code.length);
+        out.writeShort(maxStackSize);
+        out.writeShort(maxLocals);
+        out.writeInt(code.length);
+        out.write(code);
+        out.writeShort(0);  // exception table
+        out.writeShort(0);  // attributes
+    }
+
+
+    private byte[] generateMethodCode (Expression expression) throws UnknownVariableException {
+        code = new ByteArrayOutputStream();
+        stackSize = 0;
+        maxStackSize = 0;
+
+        generate(expression);
+        code.write(DRETURN);
+
+        if (code.size() > MAX_CODE_LENGTH)
+            throw new UnsupportedOperationException("expression is too large for bytecode generation");
+
+        return code.toByteArray();
+    }
+
+    private void generate (Expression expression) throws UnknownVariableException {
+        if (expression instanceof Scalar) {
+            pushConstant(((Scalar) expression).getValue());
+        } else if (expression instanceof Constant) {
+            pushConstant(((Constant) expression).getValue());
+        } else if (expression instanceof Variable) {
+            variable((Variable) expression);
+        } else if (expression instanceof Addition) {
+            generate(((Addition) expression).getAddend0());
+            generate(((Addition) expression).getAddend1());
+            binaryOperation(DADD);
+        } else if (expression instanceof Subtraction) {
+            generate(((Subtraction) expression).getMinuend());
+            generate(((Subtraction) expression).getSubtrahend());
+            binaryOperation(DSUB);
+        } else if (expression instanceof Multiplication) {
+            generate(((Multiplication) expression).getMultiplicand0());
+            generate(((Multiplication) expression).getMultiplicand1());
+            binaryOperation(DMUL);
+        } else if (expression instanceof Division) {
+            generate(((Division) expression).getDividend());
+            generate(((Division) expression).getDivisor());
+            binaryOperation(DDIV);
+        } else if (expression instanceof Exponentiation) {
+            generate(((Exponentiation) expression).getBase());
+            generate(((Exponentiation) expression).getExponent());
+            invokeMath("pow", "(DD)D");
+            stackSize -= 2;
+        } else if (expression instanceof Function) {
+            function((Function) expression);
+        } else if (expression instanceof AdditionList) {
+            AdditionList.Addend[] addends = ((AdditionList) expression).getAddends();
+            if (addends.length == 0) {
+                push(DCONST_0);
+                return;
+            }
+
+            generate(addends[0].expression);
+            if (addends[0].subtract)
+                code.write(DNEG);
+
+            for (int i=1; i<addends.length; i++) {
+                generate(addends[i].expression);
+                binaryOperation(addends[i].subtract ? DSUB : DADD);
+            }
+        } else if (expression instanceof MultiplicationList) {
+            Expression[] multiplicands = ((MultiplicationList) expression).getMultiplicands();
+            if (multiplicands.length == 0) {
+                push(DCONST_1);
+                return;
+            }
+
+            generate(multiplicands[0]);
+            for (int i=1; i<multiplicands.length; i++) {
+                generate(multiplicands[i]);
+                binaryOperation(DMUL);
+            }
+        } else {
+            throw new UnknownError("unknown expression: " + expression.getClass().getName());
+        }
+    }
+
+    private void variable (Variable variable) throws UnknownVariableException {
+        int slot = -1;
+        for (int i=0; i<variableNames.length; i++) {
+            if (variableNames[i].equals(variable.getName())) {
+                slot = i;
+                break;
+            }
+        }
+
+        if (slot == -1)
+            throw new UnknownVariableException(variable.getName());
+
+
+        if (unary) {
+            push(DLOAD_1);
+            return;
+        }
+
+        code.write(ALOAD_1);
+        if (slot <= 5) {
+            code.write(ICONST_0 + slot);
+        } else if (slot <= Byte.MAX_VALUE) {
+            code.write(BIPUSH);
+            code.write(slot);
+        } else {
+            code.write(SIPUSH);
+            code.write(slot >> 8);
+            code.write(slot);
+        }
+        code.write(DALOAD);
+
+        // array reference and index are on the stack for a moment
+        maxStackSize = Math.max(maxStackSize, stackSize + 2);
+        stackSize += 2;
+        maxStackSize = Math.max(maxStackSize, stackSize);
+    }
+
+    private void function (Function function) throws UnknownVariableException {
+        Expression parameter = function.getParameter();
+
+        switch (function.getFunction()) {
+            case sin:
+            case cos:
+            case tan:
+            case sinh:
+            case cosh:
+            case tanh:
+            case abs:
+            case sqrt:
+            case ceil:
+            case floor:
+                generate(parameter);
+                invokeMath(function.getFunction().name(), "(D)D");
+                break;
+
+            case ln:
+                generate(parameter);
+                invokeMath("log", "(D)D");
+                break;
+
+            case round:
+                generate(parameter);
+                invokeMath("round", "(D)J");
+                code.write(L2D);
+                break;
+
+            case sech:
+                reciprocal(parameter, "cosh");
+                break;
+
+            case csch:
+                reciprocal(parameter, "sinh");
+                break;
+
+            case cot:
+                reciprocal(parameter, "tan");
+                break;
+
+            case coth:
+                reciprocal(parameter, "tanh");
+                break;
+
+            case csc:
+                reciprocal(parameter, "sin");
+                break;
+
+            case sec:
+                reciprocal(parameter, "cos");
+                break;
+
+
+            default:
+                throw new UnknownError();
+        }
+    }
+
+    private void reciprocal (Expression parameter, String mathFunction) throws UnknownVariableException {
+        push(DCONST_1);
+        generate(parameter);
+        invokeMath(mathFunction, "(D)D");
+        binaryOperation(DDIV);
+    }
+
+
+    private void pushConstant (double value) {
+        if (Double.doubleToRawLongBits(value) == 0L) {
+            push(DCONST_0);
+        } else if (value == 1) {
+            push(DCONST_1);
+        } else {
+            int index = constantPool.doubleConstant(value);
+
+            code.write(LDC2_W);
+            code.write(index >> 8);
+            code.write(index);
+
+            stackSize += 2;
+            maxStackSize = Math.max(maxStackSize, stackSize);
+        }
+    }
+
+    private void push (int opcode) {
+        code.write(opcode);
+
+        stackSize += 2;
+        maxStackSize = Math.max(maxStackSize, stackSize);
+    }
+
+    private void binaryOperation (int opcode) {
+        code.write(opcode);
+        stackSize -= 2;
+    }
+
+    private void invokeMath (String name, String descriptor) {
+        int index = constantPool.methodRef("java/lang/Math", name, descriptor);
+
+        code.write(INVOKESTATIC);
+        code.write(index >> 8);
+        code.write(index);
+    }
+
+
+    private static class ConstantPool {
+
+        ByteArrayOutputStream entries = new ByteArrayOutputStream();
+        Map<String, Integer> indices = new HashMap<>();
+        int count = 1;
+
+
+        int utf8 (String value) {
+            Integer index = indices.get("U" + value);
+            if (index != null)
+                return index;
+
+            try {
+                DataOutputStream out = new DataOutputStream(entries);
+                out.writeByte(1);
+                out.writeUTF(value);
+            } catch (IOException e) {
+                throw new UnknownError();
+            }
+
+            return add("U" + value, 1);
+        }
+
+        int classRef (String internalName) {
+            Integer index = indices.get("C" + internalName);
+            if (index != null)
+                return index;
+
+            int name = utf8(internalName);
+            entries.write(7);
+            writeShort(name);
+
+            return add("C" + internalName, 1);
+        }
+
+        int methodRef (String owner, String name, String descriptor) {
+            String key = "M" + owner + "." + name + descriptor;
+            Integer index = indices.get(key);
+            if (index != null)
+                return index;
+
+            int ownerClass = classRef(owner);
+            int nameIndex = utf8(name);
+            int descriptorIndex = utf8(descriptor);
+
+            entries.write(12);
+            writeShort(nameIndex);
+            writeShort(descriptorIndex);
+            int nameAndType = add("N" + name + descriptor, 1);
+
+            entries.write(10);
+            writeShort(ownerClass);
+            writeShort(nameAndType);
+
+            return add(key, 1);
+        }
+
+        int doubleConstant (double value) {
+            long bits = Double.doubleToRawLongBits(value);
+
+            String key = "D" + bits;
+            Integer index = indices.get(key);
+            if (index != null)
+                return index;
+
+            entries.write(6);
+            writeShort((int) (bits >> 48));
+            writeShort((int) (bits >> 32));
+            writeShort((int) (bits >> 16));
+            writeShort((int) bits);
+
+            // double constants take up two entries in the constant pool
+            return add(key, 2);
+        }
+
+
+        private void writeShort (int value) {
+            entries.write(value >> 8);
+            entries.write(value);
+        }
+
+        private int add (String key, int size) {
+            int index = count;
+            indices.put(key, index);
+            count += size;
+
+            if (count > 0xffff)
+                throw new UnsupportedOperationException("expression is too large for bytecode generation");
+
+            return index;
+        }
+
+    }
+
+    private static class GeneratedClassLoader extends ClassLoader {
+
+        GeneratedClassLoader (ClassLoader parent) {
+            super(parent);
+        }
+
+
+        Class<?> define (String name, byte[] classFile) {
+            return defineClass(name, classFile, 0, classFile.length);
+        }
+
+    }
+
+}
@@ -0,0 +1,179 @@
+package math;
+
+
+import math.exception.UnknownVariableException;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+
+public class ExpressionCompiler {
+
+    private final String[] variableNames;
+
+    private int[] code = new int[16 * CompiledExpression.INSTRUCTION_SIZE];
+    private int codeLength = 0;
+
+    private double[] registers = new double[16];
+    private int registerCount = 0;
+
+    // common subexpression elimination: every distinct (interned) subexpression is lowered only once
+    private final ExpressionInterner interner = new ExpressionInterner();
+    private final Map<Expression, Integer> loweredExpressions = new HashMap<>();
+
+
+    private ExpressionCompiler (String[] variableNames) {
+        this.variableNames = variableNames;
+    }
+
+
+    public static CompiledExpression compile (Expression expression, String ...variableNames) throws UnknownVariableException {
+        if (expression == null)
+            throw new NullPointerException("expression may not be null");
+
+        return compile(new Expression[] {expression}, variableNames);
+    }
+
+    // compiles all expressions into one program, subexpressions which they have in common are evaluated only once
+    public static CompiledExpression compile (Expression[] expressions, String ...variableNames) throws UnknownVariableException {
+        if (expressions == null)
+            throw new NullPointerException("expressions may not be null");
+
+        if (expressions.length == 0)
+            throw new IllegalArgumentException("at least one expression is required");
+
+        for (Expression expression : expressions) {
+            if (expression == null)
+                throw new NullPointerException("expression may not be null");
+        }
+
+        if (variableNames == null)
+            throw new NullPointerException("variableNames may not be null");
+
+        for (String variableName : variableNames) {
+            if (variableName == null)
+                throw new NullPointerException("variable name may not be null");
+        }
+
+
+        ExpressionCompiler compiler = new ExpressionCompiler(variableNames.clone());
+
+        int[] resultRegisters = new int[expressions.length];
+        for (int i=0; i<expressions.length; i++)
+            resultRegisters[i] = compiler.lower(compiler.interner.intern(expressions[i]));
+
+        return new CompiledExpression(
+                compiler.variableNames,
+                Arrays.copyOf(compiler.code, compiler.codeLength),
+                Arrays.copyOf(compiler.registers, compiler.registerCount),
+                resultRegisters
+        );
+    }
+
+
+    private int lower (Expression expression) throws UnknownVariableException {
+        Integer register = loweredExpressions.get(expression);
+        if (register != null)
+            return register;
+
+        int result = lowerExpression(expression);
+        loweredExpressions.put(expression, result);
+
+        return result;
+    }
+
+    private int lowerExpression (Expression expression) throws UnknownVariableException {
+        if (expression instanceof Scalar) {
+            return constant(((Scalar) expression).getValue());
+        } else if (expression instanceof Constant) {
+            return constant(((Constant) expression).getValue());
+        } else if (expression instanceof Variable) {
+            return variable((Variable) expression);
+        } else if (expression instanceof Addition) {
+            return emit(CompiledExpression.ADDITION, lower(((Addition) expression).getAddend0()), lower(((Addition) expression).getAddend1()));
+        } else if (expression instanceof Subtraction) {
+            return emit(CompiledExpression.SUBTRACTION, lower(((Subtraction) expression).getMinuend()), lower(((Subtraction) expression).getSubtrahend()));
+        } else if (expression instanceof Multiplication) {
+            return emit(CompiledExpression.MULTIPLICATION, lower(((Multiplication) expression).getMultiplicand0()), lower(((Multiplication) expression).getMultiplicand1()));
+        } else if (expression instanceof Division) {
+            return emit(CompiledExpression.DIVISION, lower(((Division) expression).getDividend()), lower(((Division) expression).getDivisor()));
+        } else if (expression instanceof Exponentiation) {
+            return emit(CompiledExpression.EXPONENTIATION, lower(((Exponentiation) expression).getBase()), lower(((Exponentiation) expression).getExponent()));
+        } else if (expression instanceof Function) {
+            return emit(CompiledExpression.FUNCTION + ((Function) expression).getFunction().ordinal(), lower(((Function) expression).getParameter()), 0);
+        } else if (expression instanceof AdditionList) {
+            return additionList((AdditionList) expression);
+        } else if (expression instanceof MultiplicationList) {
+            return multiplicationList((MultiplicationList) expression);
+        }
+
+        throw new UnknownError("unknown expression: " + expression.getClass().getName());
+    }
+
+    private int variable (Variable variable) throws UnknownVariableException {
+        for (int i=0; i<variableNames.length; i++) {
+            if (variableNames[i].equals(variable.getName()))
+                return emit(CompiledExpression.VARIABLE, i, 0);
+        }
+
+        throw new UnknownVariableException(variable.getName());
+    }
+
+    private int additionList (AdditionList additionList) throws UnknownVariableException {
+        AdditionList.Addend[] addends = additionList.getAddends();
+        if (addends.length == 0)
+            return constant(0);
+
+        int result = lower(addends[0].expression);
+        if (addends[0].subtract)
+            result = emit(CompiledExpression.NEGATION, result, 0);
+
+        for (int i=1; i<addends.length; i++)
+            result = emit(addends[i].subtract ? CompiledExpression.SUBTRACTION : CompiledExpression.ADDITION, result, lower(addends[i].expression));
+
+        return result;
+    }
+
+    private int multiplicationList (MultiplicationList multiplicationList) throws UnknownVariableException {
+        Expression[] multiplicands = multiplicationList.getMultiplicands();
+        if (multiplicands.length == 0)
+            return constant(1);
+
+        int result = lower(multiplicands[0]);
+        for (int i=1; i<multiplicands.length; i++)
+            result = emit(CompiledExpression.MULTIPLICATION, result, lower(multiplicands[i]));
+
+        return result;
+    }
+
+
+    private int constant (double value) {
+        int register = allocateRegister();
+        registers[register] = value;
+
+        return register;
+    }
+
+    private int emit (int opcode, int src0, int src1) {
+        int dst = allocateRegister();
+
+        if (codeLength + CompiledExpression.INSTRUCTION_SIZE > code.length)
+            code = Arrays.copyOf(code, code.length * 2);
+
+        code[codeLength++] = opcode;
+        code[codeLength++] = dst;
+        code[codeLength++] = src0;
+        code[codeLength++] = src1;
+
+        return dst;
+    }
+
+    private int allocateRegister () {
+        if (registerCount == registers.length)
+            registers = Arrays.copyOf(registers, registers.length * 2);
+
+        return registerCount++;
+    }
+
+}
@@ -0,0 +1,189 @@
+package math;
+
+
+import java.util.HashMap;
+import java.util.Map;
+
+
+public class ExpressionInterner {
+
+    private final Map<Expression, Expression> expressions;
+
+
+    public ExpressionInterner () {
+        this(16);
+    }
+
+    // the number of expressions is only a hint to avoid growing the map while interning
+    public ExpressionInterner (int expectedSize) {
+        if (expectedSize < 0)
+            throw new IllegalArgumentException("expected size may not be negative");
+
+        expressions = new HashMap<>(Math.max(16, expectedSize + expectedSize/3));
+    }
+
+
+    public int size () {
+        return expressions.size();
+    }
+
+    public boolean isInterned (Expression expression) {
+        return expression.getInterner() == this;
+    }
+
+
+    // returns the shared, immutable instance which is structurally equal to the given expression
+    public Expression intern (Expression expression) {
+        if (expression == null)
+            throw new NullPointerException("expression may not be null");
+
+        if (expression.getInterner() == this)
+            return expression;
+
+
+        // scalars, constants and variables have no children, so they can be looked up as they are and are only copied if
+        // they are not interned yet
+        boolean leaf = expression instanceof Scalar || expression instanceof Constant || expression instanceof Variable;
+        Expression candidate = leaf ? expression : copy(expression);
+
+        Expression interned = expressions.get(candidate);
+        if (interned != null)
+            return interned;
+
+        if (leaf)
+            candidate = copy(expression);
+
+        candidate.freeze(this);
+        expressions.put(candidate, candidate);
+
+        return candidate;
+    }
+
+
+    // like intern, but new expressions are frozen themselves instead of being copied. the expression may not be
+    // referenced anywhere else, e.g. because it has just been built by the simplifier around interned subexpressions
+    Expression internNew (Expression expression) {
+        if (expression == null)
+            throw new NullPointerException("expression may not be null");
+
+        if (expression.getInterner() == this)
+            return expression;
+
+        // a child which equals an interned expression has to be replaced, which means copying the expression
+        if (!internChildrenInPlace(expression))
+            return intern(expression);
+
+
+        // frozen after being added, so that equals still compares it to the interned expressions
+        Expression interned = expressions.putIfAbsent(expression, expression);
+        if (interned != null)
+            return interned;
+
+        expression.freeze(this);
+
+        return expression;
+    }
+
+
+    // returns whether the children have been interned without being replaced
+    private boolean internChildrenInPlace (Expression expression) {
+        if (expression instanceof Addition) {
+            return isInternedInPlace(((Addition) expression).getAddend0()) & isInternedInPlace(((Addition) expression).getAddend1());
+        } else if (expression instanceof Subtraction) {
+            return isInternedInPlace(((Subtraction) expression).getMinuend()) & isInternedInPlace(((Subtraction) expression).getSubtrahend());
+        } else if (expression instanceof Multiplication) {
+            return isInternedInPlace(((Multiplication) expression).getMultiplicand0()) & isInternedInPlace(((Multiplication) expression).getMultiplicand1());
+        } else if (expression instanceof Division) {
+            return isInternedInPlace(((Division) expression).getDividend()) & isInternedInPlace(((Division) expression).getDivisor());
+        } else if (expression instanceof Exponentiation) {
+            return isInternedInPlace(((Exponentiation) expression).getBase()) & isInternedInPlace(((Exponentiation) expression).getExponent());
+        } else if (expression instanceof Function) {
+            return isInternedInPlace(((Function) expression).getParameter());
+        } else if (expression instanceof AdditionList) {
+            AdditionList additionList = (AdditionList) expression;
+
+            boolean inPlace = true;
+            for (int i=0; i<additionList.getAddendCount(); i++)
+                inPlace &= isInternedInPlace(additionList.getAddend(i).expression);
+
+            return inPlace;
+        } else if (expression instanceof MultiplicationList) {
+            MultiplicationList multiplicationList = (MultiplicationList) expression;
+
+            boolean inPlace = true;
+            for (int i=0; i<multiplicationList.getMultiplicandCount(); i++)
+                inPlace &= isInternedInPlace(multiplicationList.getMultiplicand(i));
+
+            return inPlace;
+        }
+
+        // scalars, constants and variables
+        return true;
+    }
+
+    private boolean isInternedInPlace (Expression expression) {
+        return internNew(expression) == expression;
+    }
+
+    // shallow copy of the expression with interned children
+    private Expression copy (Expression expression) {
+        if (expression instanceof Addition) {
+            return new Addition(
+                    intern(((Addition) expression).getAddend0()),
+                    intern(((Addition) expression).getAddend1())
+            );
+        } else if (expression instanceof Subtraction) {
+            return new Subtraction(
+                    intern(((Subtraction) expression).getMinuend()),
+                    intern(((Subtraction) expression).getSubtrahend())
+            );
+        } else if (expression instanceof Multiplication) {
+            return new Multiplication(
+                    intern(((Multiplication) expression).getMultiplicand0()),
+                    intern(((Multiplication) expression).getMultiplicand1())
+            );
+        } else if (expression instanceof Division) {
+            return new Division(
+                    intern(((Division) expression).getDividend()),
+                    intern(((Division) expression).getDivisor())
+            );
+        } else if (expression instanceof Exponentiation) {
+            return new Exponentiation(
+                    intern(((Exponentiation) expression).getBase()),
+                    intern(((Exponentiation) expression).getExponent())
+            );
+        } else if (expression instanceof Function) {
+            return new Function(
+                    ((Function) expression).getFunction(),
+                    intern(((Function) expression).getParameter())
+            );
+        } else if (expression instanceof Scalar) {
+            return new Scalar(((Scalar) expression).getValue());
+        } else if (expression instanceof Constant) {
+            return new Constant(((Constant) expression).getConstant());
+        } else if (expression instanceof Variable) {
+            return new Variable(((Variable) expression).getName());
+        } else if (expression instanceof AdditionList) {
+            AdditionList additionList = (AdditionList) expression;
+
+            AdditionList copy = new AdditionList();
+            for (int i=0; i<additionList.getAddendCount(); i++) {
+                AdditionList.Addend addend = additionList.getAddend(i);
+                copy.addAddend(intern(addend.expression), addend.subtract);
+            }
+
+            return copy;
+        } else if (expression instanceof MultiplicationList) {
+            MultiplicationList multiplicationList = (MultiplicationList) expression;
+
+            MultiplicationList copy = new MultiplicationList();
+            for (int i=0; i<multiplicationList.getMultiplicandCount(); i++)
+                copy.addMultiplicand(intern(multiplicationList.getMultiplicand(i)));
+
+            return copy;
+        }
+
+        throw new UnknownError("unknown expression: " + expression.getClass().getName());
+    }
+
+}
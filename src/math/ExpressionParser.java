@@ -3,618 +3,384 @@ package math;
 
 import math.exception.ParseException;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.HashMap;
+import java.util.Map;
 
 
 public class ExpressionParser {
 
-    private static final Pattern NUMBER_START_PATTERN = Pattern.compile("^([0-9]+(\\.[0-9]*)?|\\.[0-9]+).*$");
-    private static final char[] ALL_OPERATORS = new char[]{'+', '-', '*', '/', '^'};
+    /*
 
+    grammar (whitespaces are ignored everywhere, even within numbers and names):
 
-    public static Expression parse (String text) throws ParseException {
-        // remove all whitespaces
-        text = text.replaceAll("\\s", "");
-
-        /*
-
-        - parseBrackets:        parse brackets and create list with the text splitted by brackets
-        - parseAllOperators:    split text elements of the list by operators
-        - parseExpressions:     parse all expressions within each brackets
-        - simplifyLists         simplify concatenated additions/subtractions and multiplications
+        sum             := product (('+' | '-') product)*
+        product         := explicitProduct explicitProduct*          (multiplication without operator)
+        explicitProduct := power (('*' | '/') power)*
+        power           := operand ('^' operand)*                    (left-associative)
+        operand         := ['-'] atom                                (sign only at the beginning of a sum or after '^')
+        atom            := number | name | function '(' sum ')' | '(' sum ')'
 
-         */
+    a number which is directly followed by a name or another number (e.g. 2x, 3sin(x), 2.5.5) is multiplied with it as
+    if there was a '*' between them
 
-        List<ParseItem> items = parseBrackets(text);
-        items = parseAllOperators(items);
-        //printList(items, 0);
-        Expression expression = parseExpressions(items);
-        expression = ExpressionSimplifier.simplifyLists(expression);
+    the lists are built directly (as ExpressionSimplifier.simplifyLists would do it), so long chains of additions or
+    multiplications do not result in deep trees
 
-        return expression;
-    }
+     */
 
+    private static final int NUMBER = 0;
+    private static final int NAME = 1;
+    private static final int ADDITION = 2;
+    private static final int SUBTRACTION = 3;
+    private static final int MULTIPLICATION = 4;
+    private static final int DIVISION = 5;
+    private static final int EXPONENTIATION = 6;
+    private static final int OPENING_BRACKET = 7;
+    private static final int CLOSING_BRACKET = 8;
+    private static final int END = 9;
 
+    private static final Map<String, Function.F> FUNCTIONS = new HashMap<>();
+    private static final Map<String, Constant.C> CONSTANTS = new HashMap<>();
 
+    static {
+        for (Function.F function : Function.F.values())
+            FUNCTIONS.put(function.name(), function);
 
-    private static List<ParseItem> parseAllOperators (List<ParseItem> list) throws ParseException {
-        List<ParseItem> newList = new ArrayList<>();
-        for (ParseItem item : list) {
-            if (item instanceof RawItem) {
-                //System.out.println(">" + ((RawItem) item).raw);
-                newList.addAll(parseOperators(((RawItem) item).raw));
-            } else if (item instanceof BracketsItem) {
-                //System.out.println("#bracket start");
-                newList.add(new BracketsItem(parseAllOperators(((BracketsItem) item).list)));
-                //newList.addAll(parseAllOperators(((BracketsItem) item).list));  // only for testing/debugging !!!
-                //System.out.println("#bracket end: " + ((BracketsItem) newList.get(newList.size()-1)).list.size());
-            } else {
-                throw new UnknownError();
-            }
-        }
-
-        return newList;
+        for (Constant.C constant : Constant.C.values())
+            CONSTANTS.put(constant.name(), constant);
     }
 
-    // method for debugging purposes
-    private static void printList (List<ParseItem> list, int depth) {
-        System.out.println("printList: " + list.size() + ", " + depth);
-        for (ParseItem item : list) {
-            if (item instanceof RawItem) {
-                for (int i=0; i<depth; i++)
-                    System.out.print('\t');
-
-                //System.out.print(":");
-                System.out.println(((RawItem) item).raw.trim());
-            } else if (item instanceof OperatorItem) {
-                for (int i=0; i<depth; i++)
-                    System.out.print('\t');
-
-                System.out.println("operator: " + ((OperatorItem) item).operator.name());
-            } else if (item instanceof ExpressionItem) {
-                for (int i=0; i<depth; i++)
-                    System.out.print('\t');
-
-                System.out.println("expression: " + ((ExpressionItem) item).expression);
-            } else if (item instanceof BracketsItem) {
-                printList(((BracketsItem) item).list, depth+1);
-            } else {
-                System.out.println("???");
-            }
-        }
-    }
 
+    // the text without whitespaces, positions contains the index within the original text of each character
+    private final char[] chars;
+    private final int[] positions;
+    private final int length;
 
-    private static void addSubstring (List<ParseItem> list, String str, int beginIndex) {
-        addSubstring(list, str, beginIndex, -1);
-    }
-
-    private static void addSubstring (List<ParseItem> list, String str, int beginIndex, int endIndex) {
-        if (endIndex == -1)
-            endIndex = str.length();
+    // current token: [tokenBegin, tokenEnd) within chars
+    private int tokenType = -1;
+    private int tokenBegin = 0;
+    private int tokenEnd = 0;
+    private double tokenValue;
 
-        String substr = str.substring(beginIndex, endIndex);
-        if (substr.length() > 0)
-            list.add(new RawItem(substr));
-    }
 
+    private ExpressionParser (String text) {
+        chars = new char[text.length()];
+        positions = new int[text.length() + 1];
 
-    private static Expression parseExpression (ParseItem item) throws ParseException {
-        List<ParseItem> tmp = new ArrayList<>();
-        tmp.add(item);
-        return parseExpressions(tmp);
-    }
-
-    private static Expression parseExpressions (List<ParseItem> list) throws ParseException {
-        if (list.size() == 0)
-            throw new ParseException("unknown error", -1);
-
-
-        /*
-
-        steps in this function:
-        - parse brackets recursively (results in a almost flat list (maximum depth = 1))
-        - parse scalars
-        - parse functions
-        - remove all brackets (results in a flat list)
-        - parse constants, variables
-        - parse unary use of sign operator
-        - check operators
-        - parse exponentiation
-        - parse multiplication/division
-        - merge expressions without operator between them (multiplication)
-        - parse addition/subtraction
-
-         */
-
-
-
-        // parse brackets recursively
-        for (ParseItem item : list) {
-            if (!(item instanceof BracketsItem))
+        int length = 0;
+        for (int i=0; i<text.length(); i++) {
+            char c = text.charAt(i);
+            if (isWhitespace(c))
                 continue;
 
-
-            BracketsItem bracketsItem = (BracketsItem) item;
-
-            List<ParseItem> newList = new ArrayList<>();
-            newList.add(new ExpressionItem(parseExpressions(bracketsItem.list)));
-
-            bracketsItem.list = newList;
+            chars[length] = c;
+            positions[length] = i;
+            length++;
         }
 
-        // parse scalars
-        for (int i=0; i<list.size(); i++) {
-            ParseItem item = list.get(i);
-            if (!(item instanceof RawItem))
-                continue;
-
-
-            String raw = ((RawItem) item).raw;
-            //System.out.println(": item: " + raw);
-
-            Matcher m = NUMBER_START_PATTERN.matcher(raw);
-            if (m.matches()) {
-                String scalar = m.group(1);
-                String tmp = raw.substring(scalar.length());
-
-                list.add(i, new ExpressionItem(new Scalar(Double.parseDouble(scalar))));
-                if (tmp.length() > 0) {
-                    list.add(i+1, new OperatorItem(Operator.MULTIPLICATION));
-                    list.add(i+2, new RawItem(tmp));
-                    list.remove(i+3);
-                } else {
-                    list.remove(i+1);
-                }
+        positions[length] = text.length();
+        this.length = length;
+    }
 
-            }
-        }
 
-        //System.out.println("-----------------------------------------------------------");
-        //printList(list, 0);
-        //System.out.println("-----------------------------------------------------------");
+    public static Expression parse (String text) throws ParseException {
+        if (text == null)
+            throw new NullPointerException("text may not be null");
 
 
-        // parse functions
-        for (int i=0; i<list.size(); i++) {
-            ParseItem item = list.get(i);
-            if (!(item instanceof RawItem))
-                continue;
+        ExpressionParser parser = new ExpressionParser(text);
+        parser.next();
 
-            if (i == list.size()-1)
-                continue;
+        Expression expression = parser.parseSum();
+        if (parser.tokenType == CLOSING_BRACKET)
+            throw parser.error("unexpected closing bracket");
 
-            ParseItem nextItem = list.get(i+1);
-            if (!(nextItem instanceof BracketsItem))
-                continue;
+        if (parser.tokenType != END)
+            throw parser.error("invalid syntax");
 
-            String name = ((RawItem) item).raw;
-            for (Function.F function : Function.F.values()) {
-                if  (name.equals(function.name())) {
-                    Expression parameter = parseExpressions(((BracketsItem) nextItem).list);
+        return expression;
+    }
 
-                    list.add(i, new ExpressionItem(new Function(function, parameter)));
-                    list.remove(i+1);
-                    list.remove(i+1);
 
-                    break;
-                }
-            }
-        }
+    private Expression parseSum () throws ParseException {
+        // only the first operand of a sum may have a sign
+        Expression first = parseProduct(true);
+        if (tokenType != ADDITION && tokenType != SUBTRACTION)
+            return first;
 
+        AdditionList additionList = new AdditionList();
+        addAddend(additionList, first, false);
 
-        // remove all brackets
-        for (int i=0; i<list.size(); i++) {
-            ParseItem item = list.get(i);
-            if (!(item instanceof BracketsItem))
-                continue;
+        while (tokenType == ADDITION || tokenType == SUBTRACTION) {
+            boolean subtract = tokenType == SUBTRACTION;
+            next();
 
-            List<ParseItem> tmp = ((BracketsItem) item).list;
-            list.addAll(i, tmp);
-            list.remove(i+tmp.size());
-            i--;
+            addAddend(additionList, parseProduct(false), subtract);
         }
 
+        return additionList;
+    }
 
-        // parse constants, variables
-        for (int i=0; i<list.size(); i++) {
-            ParseItem item = list.get(i);
-            if (!(item instanceof RawItem))
-                continue;
-
-
-            Expression replacement = null;
-
-            String raw = ((RawItem) item).raw;
-            //System.out.println(": item: " + raw);
-            for (Constant.C constant : Constant.C.values()) {
-                if (raw.equals(constant.name()))
-                    replacement = new Constant(constant);
-            }
-
-            if (replacement == null && VariableDefinition.checkName(raw))
-                replacement = new Variable(raw);
-
-
-            if (replacement != null) {
-                list.add(i, new ExpressionItem(replacement));
-                list.remove(i+1);
-            }
-        }
-
+    private Expression parseProduct (boolean sign) throws ParseException {
+        Expression first = parseExplicitProduct(sign);
+        if (!isAtomStart())
+            return first;
 
-        // parse unary use of sign operator
-        for (int i=0; i<list.size(); i++) {
-            ParseItem item = list.get(i);
-            if (!(item instanceof OperatorItem))
-                continue;
+        MultiplicationList multiplicationList = new MultiplicationList();
+        addMultiplicand(multiplicationList, first);
 
-            if (!Operator.SUBTRACTION.equals(((OperatorItem) item).operator))
-                continue;
+        while (isAtomStart())
+            addMultiplicand(multiplicationList, parseExplicitProduct(false));
 
-            ParseItem replacementItem = null;
-            if (i == 0) {
-                if (list.size() > 1) {
-                    ParseItem nextItem = list.get(i+1);
-                    if (nextItem instanceof OperatorItem)
-                        continue;
-
-                    replacementItem = nextItem;
-                }
-            } else if (i < list.size()-1) {
-                ParseItem prevItem = list.get(i-1);
-                if (prevItem instanceof OperatorItem) {
-                    Operator operator = ((OperatorItem) prevItem).operator;
-                    if (Operator.EXPONENTIATION.equals(operator))
-                        replacementItem = list.get(i+1);
-                }
-            }
+        return multiplicationList;
+    }
 
-            if (replacementItem != null) {
-                Expression replacementExpression = parseExpression(replacementItem);
+    private Expression parseExplicitProduct (boolean sign) throws ParseException {
+        Expression first = parsePower(sign);
+        if (tokenType != MULTIPLICATION && tokenType != DIVISION)
+            return first;
 
-                list.add(i, new ExpressionItem(new Multiplication(new Scalar(-1), replacementExpression)));
-                list.remove(i+1);
-                list.remove(i+1);
-            }
-        }
+        // the multiplicands since the last division, they are the dividend of the next one
+        MultiplicationList multiplicationList = new MultiplicationList();
+        addMultiplicand(multiplicationList, first);
 
+        while (tokenType == MULTIPLICATION || tokenType == DIVISION) {
+            boolean division = tokenType == DIVISION;
+            next();
 
-        // check operators
-        for (int i=0; i<list.size(); i++) {
-            ParseItem item = list.get(i);
-            if (!(item instanceof OperatorItem))
-                continue;
+            Expression operand = parsePower(false);
+            if (division) {
+                Expression dividend = toExpression(multiplicationList);
 
-            if (i == 0) {
-                if (list.size() == 1)
-                    throw new ParseException("invalid syntax", -1);
-            } else if (i == list.size()-1) {
-                throw new ParseException("invalid syntax", -1);
+                multiplicationList = new MultiplicationList();
+                multiplicationList.addMultiplicand(new Division(dividend, operand));
             } else {
-                ParseItem prevItem = list.get(i-1);
-                if (prevItem instanceof OperatorItem)
-                    throw new ParseException("invalid syntax", -1);
+                addMultiplicand(multiplicationList, operand);
             }
         }
 
+        return toExpression(multiplicationList);
+    }
 
-        // parse exponentiation
-        for (int i=0; i<list.size(); i++) {
-            ParseItem item = list.get(i);
-            if (!(item instanceof OperatorItem))
-                continue;
-
-            if (!Operator.EXPONENTIATION.equals(((OperatorItem) item).operator))
-                continue;
-
-            if (i == 0 || i == list.size()-1)
-                throw new ParseException("expected exponent", -1);
-
-            ParseItem baseItem = list.get(i-1);
-            ParseItem exponentItem = list.get(i+1);
-
-            Expression base = parseExpression(baseItem);
-            Expression exponent = parseExpression(exponentItem);
-            list.add(i, new ExpressionItem(new Exponentiation(base, exponent)));
+    private Expression parsePower (boolean sign) throws ParseException {
+        Expression base = parseOperand(sign);
 
-            list.remove(i+1);
-            list.remove(i+1);
-            list.remove(i-1);
-            i--;
+        while (tokenType == EXPONENTIATION) {
+            next();
+            base = new Exponentiation(base, parseOperand(true));
         }
 
+        return base;
+    }
 
-        // parse multiplication/division
-        for (int i=0; i<list.size(); i++) {
-            ParseItem item = list.get(i);
-            if (!(item instanceof OperatorItem))
-                continue;
-
-
-            Expression expression;
-
-            Operator operator = ((OperatorItem) item).operator;
-            if (Operator.MULTIPLICATION.equals(operator)) {
-                if (i == 0 || i == list.size()-1)
-                    throw new ParseException("expected multiplicand", -1);
+    private Expression parseOperand (boolean sign) throws ParseException {
+        if (!sign || tokenType != SUBTRACTION)
+            return parseAtom();
 
-                ParseItem multiplicand0Item = list.get(i-1);
-                ParseItem multiplicand1Item = list.get(i+1);
+        next();
 
-                Expression multiplicand0 = parseExpression(multiplicand0Item);
-                Expression multiplicand1 = parseExpression(multiplicand1Item);
+        MultiplicationList multiplicationList = new MultiplicationList();
+        multiplicationList.addMultiplicand(new Scalar(-1));
+        addMultiplicand(multiplicationList, parseAtom());
 
-                expression = new Multiplication(multiplicand0, multiplicand1);
-            } else if (Operator.DIVISION.equals(operator)) {
-                if (i == 0 || i == list.size()-1)
-                    throw new ParseException("expected dividend or divisor", -1);
+        return multiplicationList;
+    }
 
-                ParseItem dividendItem = list.get(i-1);
-                ParseItem divisorItem = list.get(i+1);
+    private Expression parseAtom () throws ParseException {
+        if (tokenType == NUMBER) {
+            Expression scalar = new Scalar(tokenValue);
+            next();
 
-                Expression dividend = parseExpression(dividendItem);
-                Expression divisor = parseExpression(divisorItem);
+            return scalar;
+        } else if (tokenType == NAME) {
+            String name = new String(chars, tokenBegin, tokenEnd-tokenBegin);
 
-                expression = new Division(dividend, divisor);
-            } else {
-                continue;
+            Function.F function = FUNCTIONS.get(name);
+            if (function != null && tokenEnd < length && chars[tokenEnd] == '(') {
+                next();
+                return new Function(function, parseBrackets());
             }
 
-            list.add(i, new ExpressionItem(expression));
+            next();
 
-            list.remove(i+1);
-            list.remove(i+1);
-            list.remove(i-1);
-            i--;
-        }
-
-
-        // merge expressions without operator between them (multiplication)
-        for (int i=0; i<(list.size()-1); i++) {
-            ParseItem item = list.get(i);
-            if (!(item instanceof ExpressionItem))
-                continue;
+            Constant.C constant = CONSTANTS.get(name);
+            if (constant != null)
+                return new Constant(constant);
 
-            ParseItem nextItem = list.get(i+1);
-            if (!(nextItem instanceof ExpressionItem))
-                continue;
-
-            list.add(i, new ExpressionItem(new Multiplication(((ExpressionItem) item).expression, ((ExpressionItem) nextItem).expression)));
-            list.remove(i+1);
-            list.remove(i+1);
-            i--;
+            return new Variable(name);
+        } else if (tokenType == OPENING_BRACKET) {
+            return parseBrackets();
+        } else if (tokenType == END) {
+            throw error("unexpected end of expression");
+        } else {
+            throw error("expected number, name or opening bracket");
         }
+    }
 
+    private Expression parseBrackets () throws ParseException {
+        int openingBracket = tokenBegin;
+        next();
 
-        // parse addition/subtraction
-        for (int i=0; i<list.size(); i++) {
-            ParseItem item = list.get(i);
-            if (!(item instanceof OperatorItem))
-                continue;
-
-
-            Operator operator = ((OperatorItem) item).operator;
-            if (Operator.ADDITION.equals(operator)) {
-                if (i == 0 || i == list.size()-1)
-                    throw new ParseException("expected addend", -1);
+        Expression expression = parseSum();
+        if (tokenType == END)
+            throw new ParseException("missing closing bracket", positions[openingBracket]);
 
-                ParseItem addend0Item = list.get(i-1);
-                ParseItem addend1Item = list.get(i+1);
+        if (tokenType != CLOSING_BRACKET)
+            throw error("expected closing bracket");
 
-                Expression addend0 = parseExpression(addend0Item);
-                Expression addend1 = parseExpression(addend1Item);
-                list.add(i, new ExpressionItem(new Addition(addend0, addend1)));
+        next();
 
-                list.remove(i+1);
-                list.remove(i+1);
-                list.remove(i-1);
-                i--;
-            } else if (Operator.SUBTRACTION.equals(operator)) {
-                if (i == list.size()-1)
-                    throw new ParseException("expected subtrahend", -1);
+        return expression;
+    }
 
-                ParseItem minuendItem = i != 0 ? list.get(i-1) : null;
-                ParseItem subtrahendItem = list.get(i+1);
 
-                Expression minuend = minuendItem != null ? parseExpression(minuendItem) : new Scalar(0);
-                Expression subtrahend = parseExpression(subtrahendItem);
-                list.add(i, new ExpressionItem(new Subtraction(minuend, subtrahend)));
+    private boolean isAtomStart () {
+        return tokenType == NUMBER || tokenType == NAME || tokenType == OPENING_BRACKET;
+    }
 
-                list.remove(i+1);
-                list.remove(i+1);
-                if (i != 0) {
-                    list.remove(i - 1);
-                    i--;
-                }
-            }
+    private static void addAddend (AdditionList additionList, Expression expression, boolean subtract) {
+        if (expression instanceof AdditionList) {
+            for (AdditionList.Addend addend : ((AdditionList) expression).getAddends())
+                additionList.addAddend(new AdditionList.Addend(addend.expression, subtract != addend.subtract));
+        } else {
+            additionList.addAddend(new AdditionList.Addend(expression, subtract));
         }
+    }
 
-
-
-        /*
-        System.out.println("list.size(): " + list.size());
-        printList(list, 0);
-        /*
-        for (int i=0; i<list.size(); i++) {
-            System.out.println("lst + " + i + ": " + list.get(i));
+    private static void addMultiplicand (MultiplicationList multiplicationList, Expression expression) {
+        if (expression instanceof MultiplicationList) {
+            for (Expression multiplicand : ((MultiplicationList) expression).getMultiplicands())
+                multiplicationList.addMultiplicand(multiplicand);
+        } else {
+            multiplicationList.addMultiplicand(expression);
         }
-        */
-        // */
-
-        if (list.size() != 1)
-            throw new ParseException("invalid syntax", -1);
-
-
-        ParseItem item = list.get(0);
-        //System.out.println("item: " + item);
-        if (!(item instanceof ExpressionItem))
-            throw new ParseException("invalid syntax", -1);
-
-        return ((ExpressionItem) item).expression;
     }
 
+    private static Expression toExpression (MultiplicationList multiplicationList) {
+        if (multiplicationList.getMultiplicandCount() == 1)
+            return multiplicationList.getMultiplicand(0);
 
-    private static List<ParseItem> parseOperators (String text) throws ParseException {
-        List<ParseItem> parsed = new ArrayList<>();
-
-        int pos = 0;
-        while (pos < text.length()) {
-            int nextOperatorPos = -1;
-            for (char operator : ALL_OPERATORS) {
-                int tmp = text.indexOf(operator, pos);
-                if (tmp == -1)
-                    continue;
-
-                if (nextOperatorPos == -1 || tmp < nextOperatorPos)
-                    nextOperatorPos = tmp;
-            }
-
-            if (nextOperatorPos == -1)
-                break;
-
-
-            addSubstring(parsed, text, pos, nextOperatorPos);
+        return multiplicationList;
+    }
 
-            char operator = text.charAt(nextOperatorPos);
-            if (operator == '+')
-                parsed.add(new OperatorItem(Operator.ADDITION));
-            else if (operator == '-')
-                parsed.add(new OperatorItem(Operator.SUBTRACTION));
-            else if (operator == '*')
-                parsed.add(new OperatorItem(Operator.MULTIPLICATION));
-            else if (operator == '/')
-                parsed.add(new OperatorItem(Operator.DIVISION));
-            else if (operator == '^')
-                parsed.add(new OperatorItem(Operator.EXPONENTIATION));
-            else
-                throw new UnknownError();
 
-            pos = nextOperatorPos+1;
+    // the text as the parser sees it
+    static String removeWhitespaces (String text) {
+        StringBuilder str = new StringBuilder(text.length());
+        for (int i=0; i<text.length(); i++) {
+            char c = text.charAt(i);
+            if (!isWhitespace(c))
+                str.append(c);
         }
 
-        addSubstring(parsed, text, pos);
-
-
-        return parsed;
+        return str.toString();
     }
 
-    private static List<ParseItem> parseBrackets (String text) throws ParseException {
-        List<ParseItem> parsed = new ArrayList<>();
-
-        int pos = 0;
-
-        while (pos < text.length()) {
-            int openingBracketPos = text.indexOf('(', pos);
-            int closingBracketPos = text.indexOf(')', pos);
-
-            int bracketPos;
-            boolean openingBracket;
 
-            if (openingBracketPos != -1 && closingBracketPos != -1) {
-                if (openingBracketPos < closingBracketPos) {
-                    bracketPos = openingBracketPos;
-                    openingBracket = true;
-                } else {
-                    bracketPos = closingBracketPos;
-                    openingBracket = false;
-                }
-            } else if (openingBracketPos != -1 || closingBracketPos != -1) {
-                throw new ParseException(openingBracketPos != -1 ? openingBracketPos : closingBracketPos);
-            } else {
-                break;
-            }
-
-            if (!openingBracket)
-                throw new ParseException(bracketPos);
-
-            int depth = 1;
-            for (int i=openingBracketPos+1; i<text.length(); i++) {
-                char c = text.charAt(i);
-                if (c == '(') {
-                    depth++;
-                } else if (c == ')') {
-                    depth--;
-                    if (depth == 0) {
-                        closingBracketPos = i;
-                        break;
-                    }
-                }
-            }
+    private void next () throws ParseException {
+        int begin = tokenEnd;
 
-            if (depth != 0)
-                throw new ParseException(bracketPos);
-
-
-            List<ParseItem> tmp = parseBrackets(text.substring(openingBracketPos+1, closingBracketPos));
-            if (tmp.size() == 0)
-                throw new ParseException(openingBracketPos);
+        // a number which is directly followed by more characters (without an operator or bracket between them) is
+        // multiplied with them
+        if (tokenType == NUMBER && begin < length && !isDelimiter(chars[begin])) {
+            setToken(MULTIPLICATION, begin, begin);
+            return;
+        }
 
-            addSubstring(parsed, text, pos, openingBracketPos);
-            parsed.add(new BracketsItem(tmp));
-            pos = closingBracketPos+1;
+        if (begin == length) {
+            setToken(END, begin, begin);
+            return;
         }
 
-        addSubstring(parsed, text, pos);
 
-        return parsed;
-    }
+        switch (chars[begin]) {
+            case '+':
+                setToken(ADDITION, begin, begin+1);
+                return;
 
+            case '-':
+                setToken(SUBTRACTION, begin, begin+1);
+                return;
 
-    
-    private static abstract class ParseItem { }
+            case '*':
+                setToken(MULTIPLICATION, begin, begin+1);
+                return;
 
-    private static class ExpressionItem extends ParseItem {
+            case '/':
+                setToken(DIVISION, begin, begin+1);
+                return;
 
-        public Expression expression;
+            case '^':
+                setToken(EXPONENTIATION, begin, begin+1);
+                return;
 
+            case '(':
+                setToken(OPENING_BRACKET, begin, begin+1);
+                return;
 
-        public ExpressionItem (Expression expression) {
-            this.expression = expression;
+            case ')':
+                setToken(CLOSING_BRACKET, begin, begin+1);
+                return;
         }
 
-    }
-
-    private static class RawItem extends ParseItem {
 
-        public String raw;
+        // [0-9]+(\.[0-9]*)? or \.[0-9]+
+        if (isDigit(chars[begin]) || (chars[begin] == '.' && begin+1 < length && isDigit(chars[begin+1]))) {
+            int end = begin;
+            while (end < length && isDigit(chars[end]))
+                end++;
 
+            if (end < length && chars[end] == '.') {
+                end++;
+                while (end < length && isDigit(chars[end]))
+                    end++;
+            }
 
-        public RawItem (String raw) {
-            this.raw = raw;
+            tokenValue = Double.parseDouble(new String(chars, begin, end-begin));
+            setToken(NUMBER, begin, end);
+            return;
         }
 
-    }
-
-    private static class BracketsItem extends ParseItem {
-
-        public List<ParseItem> list;
 
+        // otherwise the rest of the characters up to the next operator or bracket has to be a name
+        int end = begin;
+        while (end < length && !isDelimiter(chars[end])) {
+            if (!isNameCharacter(chars[end]))
+                throw new ParseException("unexpected character '" + chars[end] + "'", positions[end]);
 
-        public BracketsItem (List<ParseItem> list) {
-            this.list = list;
+            end++;
         }
 
+        setToken(NAME, begin, end);
     }
 
-    private static class OperatorItem extends ParseItem {
-
-        public Operator operator;
+    private void setToken (int type, int begin, int end) {
+        tokenType = type;
+        tokenBegin = begin;
+        tokenEnd = end;
+    }
 
+    private ParseException error (String message) {
+        return new ParseException(message, positions[tokenBegin]);
+    }
 
-        public OperatorItem (Operator operator) {
-            this.operator = operator;
-        }
 
+    // same characters as \s
+    private static boolean isWhitespace (char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
     }
 
+    private static boolean isDelimiter (char c) {
+        return c == '+' || c == '-' || c == '*' || c == '/' || c == '^' || c == '(' || c == ')';
+    }
 
-    private enum Operator {
-        ADDITION, SUBTRACTION, MULTIPLICATION, DIVISION, EXPONENTIATION
+    private static boolean isDigit (char c) {
+        return c >= '0' && c <= '9';
     }
 
+    // same characters as VariableDefinition.NAME_PATTERN
+    private static boolean isNameCharacter (char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+    }
 
 }
@@ -1,84 +1,345 @@
 package math;
 
 
+import jdk.jfr.FlightRecorder;
+
 import java.util.ArrayList;
 import java.util.List;
 
 
 public class ExpressionSimplifier {
 
+    // maximum number of times the rules are applied to a single node
     private static final int MAX_ITERATIONS = 10000;
 
 
+    private static final Rule[] RULES = Rule.values();
+
+
+    // every interned expression remembers its simplified (interned) form, a simplified expression refers to itself. the
+    // interner is not shared, so no other simplifier sets them
+    private final ExpressionInterner interner;
+
+    // null if nothing is recorded
+    private final SimplifierStatistics statistics;
+
+    private final long deadline;
+    private final int nodeBudget;
+    private int rewrittenNodeCount = 0;
+    private boolean budgetExceeded = false;
+
+
+    // the expected node count sizes the interner, which would otherwise be grown many times for large expressions
+    private ExpressionSimplifier (int expectedNodeCount, SimplifierStatistics statistics, long deadline, int nodeBudget) {
+        this.interner = new ExpressionInterner(2 * expectedNodeCount);
+        this.statistics = statistics;
+        this.deadline = deadline;
+        this.nodeBudget = nodeBudget;
+    }
+
+
     public static Expression simplify (Expression expression) {
-        Expression prevExpression;
-        for (int i=0; i<MAX_ITERATIONS; i++) {
-            prevExpression = expression;
+        return simplify(expression, null);
+    }
 
-            expression = simplifyLists(expression);
-            expression = removeNeutralElement(expression);
-            expression = removeZeroMultiplication(expression);
-            expression = simplifyExponentiation(expression);
-            expression = reduceFraction(expression);
-            expression = mergeExponentiation(expression);
-            expression = evaluateBasicOperations(expression);
+    public static Expression simplify (Expression expression, SimplifierStatistics statistics) {
+        return simplify(expression, 0, 0, statistics);
+    }
 
+    // stops early when the time budget (in nanoseconds) has elapsed or nodeBudget nodes have been rewritten (0 means no
+    // limit). the result is then only partially simplified, but still equivalent to the given expression
+    public static Expression simplify (Expression expression, long timeBudget, int nodeBudget, SimplifierStatistics statistics) {
+        if (expression == null)
+            throw new NullPointerException("expression may not be null");
 
+        if (timeBudget < 0)
+            throw new IllegalArgumentException("time budget may not be negative");
 
-            if (expression instanceof Addition) {
-                expression = new Addition(
-                        simplify(((Addition) expression).getAddend0()),
-                        simplify(((Addition) expression).getAddend1())
-                );
-            } else if (expression instanceof Subtraction) {
-                expression = new Subtraction(
-                        simplify(((Subtraction) expression).getMinuend()),
-                        simplify(((Subtraction) expression).getSubtrahend())
-                );
-            } else if (expression instanceof Multiplication) {
-                expression = new MultiplicationList(
-                        simplify(((Multiplication) expression).getMultiplicand0()),
-                        simplify(((Multiplication) expression).getMultiplicand1())
-                );
-            } else if (expression instanceof Division) {
-                expression = new Division(
-                        simplify(((Division) expression).getDividend()),
-                        simplify(((Division) expression).getDivisor())
-                );
-            } else if (expression instanceof Exponentiation) {
-                expression = new Exponentiation(
-                        simplify(((Exponentiation) expression).getBase()),
-                        simplify(((Exponentiation) expression).getExponent())
-                );
-            } else if (expression instanceof Function) {
-                expression = new Function(
-                        ((Function) expression).getFunction(),
-                        simplify(((Function) expression).getParameter())
-                );
-            } else if (expression instanceof AdditionList) {
-                AdditionList.Addend[] addends = ((AdditionList) expression).getAddends();
+        if (nodeBudget < 0)
+            throw new IllegalArgumentException("node budget may not be negative");
+
+
+        long start = System.nanoTime();
+
+        // creating the first event initializes JFR, which takes a noticeable amount of time, so the events are only used
+        // if a recording has been started
+        SimplificationEvent event = null;
+        if (FlightRecorder.isInitialized()) {
+            event = new SimplificationEvent();
+            event.begin();
+        }
 
-                AdditionList additionList = new AdditionList();
-                for (AdditionList.Addend addend : addends)
-                    additionList.addAddend(new AdditionList.Addend(simplify(addend.expression), addend.subtract));
+        // the rules are only timed if somebody is interested in the results
+        boolean recordEvents = event != null && event.isEnabled();
+        SimplifierStatistics callStatistics = statistics != null || recordEvents ? new SimplifierStatistics() : null;
 
-                expression = additionList;
-            } else if (expression instanceof MultiplicationList) {
-                Expression[] multiplicands = ((MultiplicationList) expression).getMultiplicands();
+        // a deadline of 0 means no time limit, a deadline which happens to be 0 is moved by 1ns
+        long deadline = 0;
+        if (timeBudget > 0) {
+            deadline = start + timeBudget;
+            if (deadline == 0)
+                deadline = 1;
+        }
+
+        ExpressionSimplifier simplifier = new ExpressionSimplifier(countNodes(expression), callStatistics, deadline, nodeBudget);
+        Expression result = simplifier.rewrite(expression);
+
+        if (event != null)
+            event.end();
+
+        if (callStatistics != null) {
+            int nodeCountBefore = countNodes(expression);
+            int nodeCountAfter = countNodes(result);
 
-                MultiplicationList multiplicationList = new MultiplicationList();
-                for (Expression multiplicand : multiplicands)
-                    multiplicationList.addMultiplicand(simplify(multiplicand));
+            callStatistics.recordSimplification(nodeCountBefore, nodeCountAfter, System.nanoTime() - start, simplifier.budgetExceeded);
+
+            if (recordEvents && event.shouldCommit()) {
+                event.iterationCount = callStatistics.getIterationCount();
+                event.rewrittenNodeCount = callStatistics.getRewrittenNodeCount();
+                event.nodeCountBefore = nodeCountBefore;
+                event.nodeCountAfter = nodeCountAfter;
+                event.budgetExceeded = simplifier.budgetExceeded;
+                event.commit();
+
+                for (Rule rule : RULES) {
+                    SimplifierRuleEvent ruleEvent = new SimplifierRuleEvent();
+                    if (!ruleEvent.isEnabled())
+                        break;
 
-                expression = multiplicationList;
+                    ruleEvent.rule = rule.name();
+                    ruleEvent.applicationCount = callStatistics.getRuleApplicationCount(rule);
+                    ruleEvent.changeCount = callStatistics.getRuleChangeCount(rule);
+                    ruleEvent.time = callStatistics.getRuleTime(rule);
+                    ruleEvent.commit();
+                }
             }
 
-            if (prevExpression.equals(expression))
+            if (statistics != null)
+                statistics.add(callStatistics);
+        }
+
+        return result;
+    }
+
+    // number of nodes of the expression tree (shared subexpressions are counted every time they occur)
+    public static int countNodes (Expression expression) {
+        if (expression instanceof Addition) {
+            return 1 + countNodes(((Addition) expression).getAddend0()) + countNodes(((Addition) expression).getAddend1());
+        } else if (expression instanceof Subtraction) {
+            return 1 + countNodes(((Subtraction) expression).getMinuend()) + countNodes(((Subtraction) expression).getSubtrahend());
+        } else if (expression instanceof Multiplication) {
+            return 1 + countNodes(((Multiplication) expression).getMultiplicand0()) + countNodes(((Multiplication) expression).getMultiplicand1());
+        } else if (expression instanceof Division) {
+            return 1 + countNodes(((Division) expression).getDividend()) + countNodes(((Division) expression).getDivisor());
+        } else if (expression instanceof Exponentiation) {
+            return 1 + countNodes(((Exponentiation) expression).getBase()) + countNodes(((Exponentiation) expression).getExponent());
+        } else if (expression instanceof Function) {
+            return 1 + countNodes(((Function) expression).getParameter());
+        } else if (expression instanceof AdditionList) {
+            AdditionList additionList = (AdditionList) expression;
+
+            int count = 1;
+            for (int i=0; i<additionList.getAddendCount(); i++)
+                count += countNodes(additionList.getAddend(i).expression);
+
+            return count;
+        } else if (expression instanceof MultiplicationList) {
+            MultiplicationList multiplicationList = (MultiplicationList) expression;
+
+            int count = 1;
+            for (int i=0; i<multiplicationList.getMultiplicandCount(); i++)
+                count += countNodes(multiplicationList.getMultiplicand(i));
+
+            return count;
+        }
+
+        return 1;
+    }
+
+    // bottom-up rewriting: the children are simplified first (each distinct subexpression only once), then the rules are
+    // applied to the node itself. if a rule changes the node, only the new parts of the result have to be simplified
+    // again, everything else has been simplified already
+    private Expression rewrite (Expression expression) {
+        // no rule changes scalars, constants or variables, so they are not memoized
+        if (expression instanceof Scalar || expression instanceof Constant || expression instanceof Variable)
+            return interner.intern(expression);
+
+        // a node of the given tree is rebuilt from its simplified children instead of interning a copy of the whole tree
+        // first. the rebuilt node is then simplified like any other
+        boolean childrenSimplified = !interner.isInterned(expression);
+        if (childrenSimplified)
+            expression = interner.intern(rewriteChildren(expression));
+
+        Expression simplified = expression.getSimplified();
+        if (simplified != null)
+            return simplified;
+
+        // out of budget: the expression is returned as it is, the parents are still built from whatever their other
+        // children have been simplified to
+        if (isBudgetExceeded())
+            return expression;
+
+        // guards against rules which would (indirectly) rewrite a node into itself
+        expression.setSimplified(expression);
+
+        rewrittenNodeCount++;
+        if (statistics != null)
+            statistics.recordRewrittenNode();
+
+        // a rule may rewrite the node into a form whose children are not simplified yet, a fixed point is reached when
+        // applying the rules and simplifying the children again yields the same node
+        Expression current = childrenSimplified ? expression : rewriteChildren(expression);
+        for (int i=0; i<MAX_ITERATIONS && !isBudgetExceeded(); i++) {
+            // the children of an unchanged node are simplified already
+            Expression result = applyRules(current);
+            if (result == current)
+                break;
+
+            // the rules only build new nodes around interned ones, so nobody else references the new nodes
+            Expression next = rewriteChildren(interner.internNew(result));
+            if (next == current)
                 break;
+
+            current = next;
+        }
+
+        if (current != expression) {
+            expression.setSimplified(current);
+            current.setSimplified(current);
+        }
+
+        return current;
+    }
+
+    private boolean isBudgetExceeded () {
+        if (!budgetExceeded) {
+            budgetExceeded = (nodeBudget > 0 && rewrittenNodeCount >= nodeBudget) ||
+                    (deadline != 0 && System.nanoTime() - deadline >= 0);
+        }
+
+        return budgetExceeded;
+    }
+
+    private Expression rewriteChildren (Expression expression) {
+        if (expression instanceof Addition) {
+            Expression addend0 = ((Addition) expression).getAddend0();
+            Expression addend1 = ((Addition) expression).getAddend1();
+
+            Expression newAddend0 = rewrite(addend0);
+            Expression newAddend1 = rewrite(addend1);
+
+            if (newAddend0 != addend0 || newAddend1 != addend1)
+                return interner.internNew(new Addition(newAddend0, newAddend1));
+        } else if (expression instanceof Subtraction) {
+            Expression minuend = ((Subtraction) expression).getMinuend();
+            Expression subtrahend = ((Subtraction) expression).getSubtrahend();
+
+            Expression newMinuend = rewrite(minuend);
+            Expression newSubtrahend = rewrite(subtrahend);
+
+            if (newMinuend != minuend || newSubtrahend != subtrahend)
+                return interner.internNew(new Subtraction(newMinuend, newSubtrahend));
+        } else if (expression instanceof Multiplication) {
+            Expression multiplicand0 = ((Multiplication) expression).getMultiplicand0();
+            Expression multiplicand1 = ((Multiplication) expression).getMultiplicand1();
+
+            Expression newMultiplicand0 = rewrite(multiplicand0);
+            Expression newMultiplicand1 = rewrite(multiplicand1);
+
+            if (newMultiplicand0 != multiplicand0 || newMultiplicand1 != multiplicand1)
+                return interner.internNew(new Multiplication(newMultiplicand0, newMultiplicand1));
+        } else if (expression instanceof Division) {
+            Expression dividend = ((Division) expression).getDividend();
+            Expression divisor = ((Division) expression).getDivisor();
+
+            Expression newDividend = rewrite(dividend);
+            Expression newDivisor = rewrite(divisor);
+
+            if (newDividend != dividend || newDivisor != divisor)
+                return interner.internNew(new Division(newDividend, newDivisor));
+        } else if (expression instanceof Exponentiation) {
+            Expression base = ((Exponentiation) expression).getBase();
+            Expression exponent = ((Exponentiation) expression).getExponent();
+
+            Expression newBase = rewrite(base);
+            Expression newExponent = rewrite(exponent);
+
+            if (newBase != base || newExponent != exponent)
+                return interner.internNew(new Exponentiation(newBase, newExponent));
+        } else if (expression instanceof Function) {
+            Expression parameter = ((Function) expression).getParameter();
+
+            Expression newParameter = rewrite(parameter);
+
+            if (newParameter != parameter)
+                return interner.internNew(new Function(((Function) expression).getFunction(), newParameter));
+        } else if (expression instanceof AdditionList) {
+            AdditionList addends = (AdditionList) expression;
+
+            // the new list is only built once a child has changed, long lists mostly stay the same
+            AdditionList additionList = null;
+            for (int i=0; i<addends.getAddendCount(); i++) {
+                AdditionList.Addend addend = addends.getAddend(i);
+                Expression newExpression = rewrite(addend.expression);
+
+                if (additionList == null && newExpression != addend.expression) {
+                    additionList = new AdditionList();
+                    for (int j=0; j<i; j++)
+                        additionList.addAddend(addends.getAddend(j));
+                }
+
+                if (additionList != null)
+                    additionList.addAddend(newExpression, addend.subtract);
+            }
+
+            if (additionList != null)
+                return interner.internNew(additionList);
+        } else if (expression instanceof MultiplicationList) {
+            MultiplicationList multiplicands = (MultiplicationList) expression;
+
+            MultiplicationList multiplicationList = null;
+            for (int i=0; i<multiplicands.getMultiplicandCount(); i++) {
+                Expression multiplicand = multiplicands.getMultiplicand(i);
+                Expression newMultiplicand = rewrite(multiplicand);
+
+                if (multiplicationList == null && newMultiplicand != multiplicand) {
+                    multiplicationList = new MultiplicationList();
+                    for (int j=0; j<i; j++)
+                        multiplicationList.addMultiplicand(multiplicands.getMultiplicand(j));
+                }
+
+                if (multiplicationList != null)
+                    multiplicationList.addMultiplicand(newMultiplicand);
+            }
+
+            if (multiplicationList != null)
+                return interner.internNew(multiplicationList);
         }
 
         return expression;
+    }
+
+    // the rules only look at the node and its (already simplified) children
+    private Expression applyRules (Expression expression) {
+        if (statistics == null) {
+            for (Rule rule : RULES)
+                expression = applyRule(rule, expression);
+
+            return expression;
+        }
+
+        statistics.recordIteration();
 
+        for (Rule rule : RULES) {
+            long start = System.nanoTime();
+            Expression result = applyRule(rule, expression);
+            long time = System.nanoTime() - start;
+
+            statistics.recordRule(rule, time, result != expression && !result.equals(expression));
+            expression = result;
+        }
+
+        return expression;
 
         /*
 
@@ -94,6 +355,35 @@ public class ExpressionSimplifier {
          */
     }
 
+    private static Expression applyRule (Rule rule, Expression expression) {
+        switch (rule) {
+            case FLATTEN_LISTS:
+                return flattenLists(expression);
+
+            case REMOVE_NEUTRAL_ELEMENT:
+                return removeNeutralElement(expression);
+
+            case REMOVE_ZERO_MULTIPLICATION:
+                return removeZeroMultiplication(expression);
+
+            case SIMPLIFY_EXPONENTIATION:
+                return simplifyExponentiation(expression);
+
+            case REDUCE_FRACTION:
+                return reduceFraction(expression);
+
+            case MERGE_EXPONENTIATION:
+                return mergeExponentiation(expression);
+
+            case EVALUATE_BASIC_OPERATIONS:
+                return evaluateBasicOperations(expression);
+
+
+            default:
+                throw new UnknownError();
+        }
+    }
+
 
     private static String indent (int n) {
         StringBuilder x = new StringBuilder();
@@ -152,22 +442,29 @@ public class ExpressionSimplifier {
 
     private static Expression mergeExponentiation (Expression expression) {
         if (expression instanceof MultiplicationList) {
+            // the usual case, which does not need the lists below
+            if (hasDistinctBases((MultiplicationList) expression))
+                return expression;
+
             List<Expression> dividendList = new ArrayList<>();
             List<Expression> divisorList = new ArrayList<>();
 
             splitFraction(dividendList, divisorList, expression);
 
 
-            mergeMultiplicationExponentiation(dividendList);
-            mergeMultiplicationExponentiation(divisorList);
-
-            mergeDivisionExponentiation(dividendList, divisorList);
+            boolean merged = mergeMultiplicationExponentiation(dividendList);
+            merged |= mergeMultiplicationExponentiation(divisorList);
+            merged |= mergeDivisionExponentiation(dividendList, divisorList);
 
 
             if (divisorList.size() == 0) {
                 if (dividendList.size() == 0)
                     return new Scalar(1);
 
+                // nothing merged and no fraction split off
+                if (!merged && dividendList.size() == ((MultiplicationList) expression).getMultiplicandCount())
+                    return expression;
+
                 return new MultiplicationList(dividendList.toArray(new Expression[0]));
             }
 
@@ -195,7 +492,7 @@ public class ExpressionSimplifier {
                     Expression divisor = divisorList.get(j);
                     if (dividend.equals(divisor)) {
                         dividendList.remove(i);
-                        divisorList.remove(i);
+                        divisorList.remove(j);
 
                         i--;
                         break;
@@ -258,35 +555,23 @@ public class ExpressionSimplifier {
         return expression;
     }
 
-    private static void mergeMultiplicationExponentiation (List<Expression> list) {
+    // returns whether any elements have been merged, the others are left as they are
+    private static boolean mergeMultiplicationExponentiation (List<Expression> list) {
+        boolean changed = false;
         for (int i=0; i<list.size(); i++) {
-            Expression expression0 = list.get(i);
-            Expression base0, exponent0;
-
-            if (expression0 instanceof Exponentiation) {
-                base0 = ((Exponentiation) expression0).getBase();
-                exponent0 = ((Exponentiation) expression0).getExponent();
-            } else {
-                base0 = expression0;
-                exponent0 = new Scalar(1);
-            }
+            Expression base0 = getBase(list.get(i));
+            Expression exponent0 = null;
 
             for (int j=i+1; j<list.size(); j++) {
                 Expression expression1 = list.get(j);
-                Expression base1, exponent1;
-
-                if (expression1 instanceof Exponentiation) {
-                    base1 = ((Exponentiation) expression1).getBase();
-                    exponent1 = ((Exponentiation) expression1).getExponent();
-                } else {
-                    base1 = expression1;
-                    exponent1 = new Scalar(1);
-                }
 
-                if (base0.equals(base1)) {
+                if (base0.equals(getBase(expression1))) {
+                    if (exponent0 == null)
+                        exponent0 = getExponent(list.get(i));
+
                     exponent0 = evaluateBasicOperations(removeNeutralElement(new AdditionList(
                             new AdditionList.Addend(exponent0),
-                            new AdditionList.Addend(exponent1)
+                            new AdditionList.Addend(getExponent(expression1))
                     )));
 
                     list.remove(j);
@@ -294,49 +579,31 @@ public class ExpressionSimplifier {
                 }
             }
 
-            if (exponent0 instanceof Scalar) {
-                double value = ((Scalar) exponent0).getValue();
-                if (value == 0)
-                    list.set(i, new Scalar(1));
-                else if (value == 1)
-                    list.set(i, base0);
-                else
-                    list.set(i, new Exponentiation(base0, exponent0));
-            } else {
-                list.set(i, new Exponentiation(base0, exponent0));
+            if (exponent0 != null) {
+                list.set(i, mergedExponentiation(base0, exponent0));
+                changed = true;
             }
         }
+
+        return changed;
     }
 
-    private static void mergeDivisionExponentiation (List<Expression> dividend, List<Expression> divisor) {
+    private static boolean mergeDivisionExponentiation (List<Expression> dividend, List<Expression> divisor) {
+        boolean changed = false;
         for (int i=0; i<dividend.size(); i++) {
-            Expression expression0 = dividend.get(i);
-            Expression base0, exponent0;
-
-            if (expression0 instanceof Exponentiation) {
-                base0 = ((Exponentiation) expression0).getBase();
-                exponent0 = ((Exponentiation) expression0).getExponent();
-            } else {
-                base0 = expression0;
-                exponent0 = new Scalar(1);
-            }
+            Expression base0 = getBase(dividend.get(i));
+            Expression exponent0 = null;
 
             for (int j=0; j<divisor.size(); j++) {
                 Expression expression1 = divisor.get(j);
-                Expression base1, exponent1;
-
-                if (expression1 instanceof Exponentiation) {
-                    base1 = ((Exponentiation) expression1).getBase();
-                    exponent1 = ((Exponentiation) expression1).getExponent();
-                } else {
-                    base1 = expression1;
-                    exponent1 = new Scalar(1);
-                }
 
-                if (base0.equals(base1)) {
+                if (base0.equals(getBase(expression1))) {
+                    if (exponent0 == null)
+                        exponent0 = getExponent(dividend.get(i));
+
                     exponent0 = evaluateBasicOperations(removeNeutralElement(new AdditionList(
                             new AdditionList.Addend(exponent0, false),
-                            new AdditionList.Addend(exponent1, true)
+                            new AdditionList.Addend(getExponent(expression1), true)
                     )));
 
                     divisor.remove(j);
@@ -344,24 +611,61 @@ public class ExpressionSimplifier {
                 }
             }
 
-            if (exponent0 instanceof Scalar) {
-                double value = ((Scalar) exponent0).getValue();
-                if (value == 0)
-                    dividend.set(i, new Scalar(1));
-                else if (value == 1)
-                    dividend.set(i, base0);
-                else
-                    dividend.set(i, new Exponentiation(base0, exponent0));
-            } else {
-                dividend.set(i, new Exponentiation(base0, exponent0));
+            if (exponent0 != null) {
+                dividend.set(i, mergedExponentiation(base0, exponent0));
+                changed = true;
             }
         }
+
+        return changed;
+    }
+
+    // whether the list has neither fractions nor nested lists and no base occurs twice, so there is nothing to merge
+    private static boolean hasDistinctBases (MultiplicationList multiplicationList) {
+        if (multiplicationList.getMultiplicandCount() == 0)
+            return false;
+
+        for (int i=0; i<multiplicationList.getMultiplicandCount(); i++) {
+            Expression multiplicand = multiplicationList.getMultiplicand(i);
+            if (multiplicand instanceof Division || multiplicand instanceof MultiplicationList)
+                return false;
+
+            Expression base = getBase(multiplicand);
+            for (int j=0; j<i; j++) {
+                if (base.equals(getBase(multiplicationList.getMultiplicand(j))))
+                    return false;
+            }
+        }
+
+        return true;
+    }
+
+    // any other expression is its own base with the exponent 1
+    private static Expression getBase (Expression expression) {
+        return expression instanceof Exponentiation ? ((Exponentiation) expression).getBase() : expression;
+    }
+
+    private static Expression getExponent (Expression expression) {
+        return expression instanceof Exponentiation ? ((Exponentiation) expression).getExponent() : new Scalar(1);
+    }
+
+    private static Expression mergedExponentiation (Expression base, Expression exponent) {
+        if (exponent instanceof Scalar) {
+            double value = ((Scalar) exponent).getValue();
+            if (value == 0)
+                return new Scalar(1);
+            else if (value == 1)
+                return base;
+        }
+
+        return new Exponentiation(base, exponent);
     }
 
     private static void splitFraction (List<Expression> list0, List<Expression> list1, Expression expression) {
         if (expression instanceof MultiplicationList) {
-            for (Expression multiplicand : ((MultiplicationList) expression).getMultiplicands())
-                splitFraction(list0, list1, multiplicand);
+            MultiplicationList multiplicationList = (MultiplicationList) expression;
+            for (int i=0; i<multiplicationList.getMultiplicandCount(); i++)
+                splitFraction(list0, list1, multiplicationList.getMultiplicand(i));
         } else if (expression instanceof Division) {
             splitFraction(list0, list1, ((Division) expression).getDividend());
             splitFraction(list1, list0, ((Division) expression).getDivisor());
@@ -420,15 +724,7 @@ public class ExpressionSimplifier {
             Expression base = ((Exponentiation) expression).getBase();
             Expression exponent = ((Exponentiation) expression).getExponent();
 
-            if (base instanceof Scalar) {
-                double baseValue = ((Scalar) base).getValue();
-                if (baseValue == 0)
-                    return new Scalar(0);
-
-                if (baseValue == 1)
-                    return new Scalar(1);
-            }
-
+            // like Math.pow: x^0 = 1 also for x = 0
             if (exponent instanceof Scalar) {
                 double exponentValue = ((Scalar) exponent).getValue();
                 if (exponentValue == 0)
@@ -438,6 +734,17 @@ public class ExpressionSimplifier {
                     return base;
             }
 
+            if (base instanceof Scalar) {
+                double baseValue = ((Scalar) base).getValue();
+
+                // 0^x is 0 only for positive x, 0^0 is 1 and negative exponents are infinite
+                if (baseValue == 0 && exponent instanceof Scalar && ((Scalar) exponent).getValue() > 0)
+                    return new Scalar(0);
+
+                if (baseValue == 1)
+                    return new Scalar(1);
+            }
+
             if (base instanceof Constant && Constant.C.e.equals(((Constant) base).getConstant())) {
                 if (exponent instanceof MultiplicationList) {
                     Expression[] multiplicands = ((MultiplicationList) exponent).getMultiplicands();
@@ -499,6 +806,14 @@ public class ExpressionSimplifier {
     }
 
 
+    // whether the addend is the scalar which removeNeutralElement would append for the sum of all scalars
+    private static boolean isMergedScalar (AdditionList.Addend addend, double allScalars) {
+        if (!(addend.expression instanceof Scalar) || allScalars == 0)
+            return false;
+
+        return ((Scalar) addend.expression).getValue() == Math.abs(allScalars) && addend.subtract == allScalars < 0;
+    }
+
     private static Expression removeNeutralElement (Expression expression) {
         if (expression instanceof Addition) {
             Expression addend0 = ((Addition) expression).getAddend0();
@@ -537,37 +852,47 @@ public class ExpressionSimplifier {
             if (divisor instanceof Scalar && ((Scalar) divisor).getValue() == 1)
                 return dividend;
         } else if (expression instanceof AdditionList) {
-            AdditionList.Addend[] addends = ((AdditionList) expression).getAddends();
+            AdditionList addends = (AdditionList) expression;
 
             double allScalars = 0;
+            int scalarCount = 0;
 
             AdditionList additionList = new AdditionList();
-            for (AdditionList.Addend addend : addends) {
+            for (int i=0; i<addends.getAddendCount(); i++) {
+                AdditionList.Addend addend = addends.getAddend(i);
                 Expression tmp = addend.expression;
                 if (tmp instanceof Scalar) {
                     allScalars += (addend.subtract ? -1 : 1) * ((Scalar) tmp).getValue();
+                    scalarCount++;
                     continue;
                 }
 
                 additionList.addAddend(addend);
             }
 
+            // nothing to remove and a single scalar is already merged and at the end, the list stays as it is
+            if (additionList.getAddendCount() > 0 && (scalarCount == 0 && additionList.getAddendCount() > 1 ||
+                    scalarCount == 1 && isMergedScalar(addends.getAddend(addends.getAddendCount()-1), allScalars)))
+                return expression;
+
             if (allScalars != 0)
                 additionList.addAddend(new AdditionList.Addend(new Scalar(allScalars < 0 ? -allScalars : allScalars), allScalars < 0));
 
-            if (additionList.getAddends().length == 0)
+            if (additionList.getAddendCount() == 0)
                 return new Scalar(0);
-            else if (additionList.getAddends().length == 1 && !additionList.getAddends()[0].subtract)
-                return additionList.getAddends()[0].expression;
+            else if (additionList.getAddendCount() == 1 && !additionList.getAddend(0).subtract)
+                return additionList.getAddend(0).expression;
 
             return additionList;
         } else if (expression instanceof MultiplicationList) {
-            Expression[] multiplicands = ((MultiplicationList) expression).getMultiplicands();
+            MultiplicationList multiplicands = (MultiplicationList) expression;
 
             double allScalars = 1;
+            int scalarCount = 0;
 
             MultiplicationList multiplicationList = new MultiplicationList();
-            for (Expression multiplicand : multiplicands) {
+            for (int i=0; i<multiplicands.getMultiplicandCount(); i++) {
+                Expression multiplicand = multiplicands.getMultiplicand(i);
                 if (multiplicand instanceof Scalar) {
                     double value = ((Scalar) multiplicand).getValue();
                     if (Double.isNaN(value))
@@ -577,19 +902,25 @@ public class ExpressionSimplifier {
                         return new Scalar(0);
 
                     allScalars *= value;
+                    scalarCount++;
                     continue;
                 }
 
                 multiplicationList.addMultiplicand(multiplicand);
             }
 
+            int count = multiplicationList.getMultiplicandCount();
+            if (count > 0 && (scalarCount == 0 && count > 1 || scalarCount == 1 && allScalars != 1 &&
+                    multiplicands.getMultiplicand(count) instanceof Scalar))
+                return expression;
+
             if (allScalars != 1)
                 multiplicationList.addMultiplicand(new Scalar(allScalars));
 
-            if (multiplicationList.getMultiplicands().length == 0)
+            if (multiplicationList.getMultiplicandCount() == 0)
                 return new Scalar(1);
-            else if (multiplicationList.getMultiplicands().length == 1)
-                return multiplicationList.getMultiplicands()[0];
+            else if (multiplicationList.getMultiplicandCount() == 1)
+                return multiplicationList.getMultiplicand(0);
 
             return multiplicationList;
         }
@@ -599,6 +930,81 @@ public class ExpressionSimplifier {
 
     
     
+    // same as simplifyLists, but only for the node itself: its children are already flattened
+    private static Expression flattenLists (Expression expression) {
+        if (expression instanceof Addition) {
+            AdditionList additionList = new AdditionList();
+            addAddends(additionList, ((Addition) expression).getAddend0(), false);
+            addAddends(additionList, ((Addition) expression).getAddend1(), false);
+
+            return additionList;
+        } else if (expression instanceof Subtraction) {
+            AdditionList additionList = new AdditionList();
+            addAddends(additionList, ((Subtraction) expression).getMinuend(), false);
+            addAddends(additionList, ((Subtraction) expression).getSubtrahend(), true);
+
+            return additionList;
+        } else if (expression instanceof Multiplication) {
+            MultiplicationList multiplicationList = new MultiplicationList();
+            addMultiplicands(multiplicationList, ((Multiplication) expression).getMultiplicand0());
+            addMultiplicands(multiplicationList, ((Multiplication) expression).getMultiplicand1());
+
+            return multiplicationList;
+        } else if (expression instanceof AdditionList) {
+            AdditionList addends = (AdditionList) expression;
+
+            boolean nested = false;
+            for (int i=0; i<addends.getAddendCount(); i++)
+                nested |= addends.getAddend(i).expression instanceof AdditionList;
+
+            if (!nested)
+                return expression;
+
+            AdditionList additionList = new AdditionList();
+            for (int i=0; i<addends.getAddendCount(); i++)
+                addAddends(additionList, addends.getAddend(i).expression, addends.getAddend(i).subtract);
+
+            return additionList;
+        } else if (expression instanceof MultiplicationList) {
+            MultiplicationList multiplicands = (MultiplicationList) expression;
+
+            boolean nested = false;
+            for (int i=0; i<multiplicands.getMultiplicandCount(); i++)
+                nested |= multiplicands.getMultiplicand(i) instanceof MultiplicationList;
+
+            if (!nested)
+                return expression;
+
+            MultiplicationList multiplicationList = new MultiplicationList();
+            for (int i=0; i<multiplicands.getMultiplicandCount(); i++)
+                addMultiplicands(multiplicationList, multiplicands.getMultiplicand(i));
+
+            return multiplicationList;
+        }
+
+        return expression;
+    }
+
+    private static void addAddends (AdditionList additionList, Expression expression, boolean subtract) {
+        if (expression instanceof AdditionList) {
+            AdditionList addends = (AdditionList) expression;
+            for (int i=0; i<addends.getAddendCount(); i++)
+                additionList.addAddend(addends.getAddend(i).expression, subtract != addends.getAddend(i).subtract);
+        } else {
+            additionList.addAddend(new AdditionList.Addend(expression, subtract));
+        }
+    }
+
+    private static void addMultiplicands (MultiplicationList multiplicationList, Expression expression) {
+        if (expression instanceof MultiplicationList) {
+            MultiplicationList multiplicands = (MultiplicationList) expression;
+            for (int i=0; i<multiplicands.getMultiplicandCount(); i++)
+                multiplicationList.addMultiplicand(multiplicands.getMultiplicand(i));
+        } else {
+            multiplicationList.addMultiplicand(expression);
+        }
+    }
+
     public static Expression simplifyLists (Expression expression) {
         if (expression instanceof Addition) {
             Expression addend0 = ((Addition) expression).getAddend0();
@@ -738,4 +1144,11 @@ public class ExpressionSimplifier {
         }
     }
 
+
+    // in the order in which they are applied
+    public enum Rule {
+        FLATTEN_LISTS, REMOVE_NEUTRAL_ELEMENT, REMOVE_ZERO_MULTIPLICATION, SIMPLIFY_EXPONENTIATION, REDUCE_FRACTION,
+        MERGE_EXPONENTIATION, EVALUATE_BASIC_OPERATIONS
+    }
+
 }
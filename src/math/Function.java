@@ -29,6 +29,8 @@ public class Function extends Expression {
     }
 
     public void setFunction (F function) {
+        checkMutable();
+
         if (function == null)
             throw new NullPointerException("function may not be null");
 
@@ -36,6 +38,8 @@ public class Function extends Expression {
     }
 
     public void setParameter (Expression parameter) {
+        checkMutable();
+
         if (parameter == null)
             throw new NullPointerException("parameter may not be null");
 
@@ -45,7 +49,86 @@ public class Function extends Expression {
 
     @Override
     public double evaluate (VariableDefinition ...variables) throws EvaluationException {
-        double param = parameter.evaluate(variables);
+        return evaluate(parameter.evaluate(variables));
+    }
+
+    @Override
+    public double evaluate (EvaluationContext context) throws EvaluationException {
+        return evaluate(parameter.evaluate(context));
+    }
+
+    @Override
+    public void evaluateDual (EvaluationContext context, int variableSlot, Dual result) throws EvaluationException {
+        parameter.evaluateDual(context, variableSlot, result);
+
+        double param = result.getValue();
+        double paramDerivative = result.getDerivative();
+
+        double value = evaluate(param);
+        result.set(value, paramDerivative != 0 ? derivative(function, param, value) * paramDerivative : 0);
+    }
+
+    // derivative of the function itself, value is the function evaluated at param
+    static double derivative (F function, double param, double value) {
+        switch (function) {
+            case sin:
+                return Math.cos(param);
+
+            case cos:
+                return -Math.sin(param);
+
+            case tan:
+                return 1 + value*value;
+
+            case sinh:
+                return Math.cosh(param);
+
+            case cosh:
+                return Math.sinh(param);
+
+            case tanh:
+                return 1 - value*value;
+
+            case sech:
+                return -value * Math.tanh(param);
+
+            case csch:
+                return -value / Math.tanh(param);
+
+            case cot:
+                return -1 - value*value;
+
+            case coth:
+                return 1 - value*value;
+
+            case csc:
+                return -value / Math.tan(param);
+
+            case sec:
+                return value * Math.tan(param);
+
+            case ln:
+                return 1 / param;
+
+            case abs:
+                return param / value;
+
+            case sqrt:
+                return 1 / (2*value);
+
+            case round:
+            case ceil:
+            case floor:
+                // piecewise constant
+                return 0;
+
+
+            default:
+                throw new UnknownError();
+        }
+    }
+
+    double evaluate (double param) {
         switch (function) {
             case sin:
                 return Math.sin(param);
@@ -107,6 +190,18 @@ public class Function extends Expression {
         }
     }
 
+    @Override
+    public void evaluateComplex (EvaluationContext context, Complex result) throws EvaluationException {
+        parameter.evaluateComplex(context, result);
+        result.function(function);
+    }
+
+    @Override
+    public void evaluateInterval (EvaluationContext context, Interval result) throws EvaluationException {
+        parameter.evaluateInterval(context, result);
+        result.function(function);
+    }
+
     @Override
     public String toString () {
         return function.name() + "(" + parameter.toString() + ")";
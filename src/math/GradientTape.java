@@ -0,0 +1,247 @@
+package math;
+
+
+import math.exception.EvaluationException;
+
+import java.util.Arrays;
+
+
+public class GradientTape {
+
+    // one entry per evaluated node, the edges of entry i are [edgeStart[i], edgeStart[i+1])
+    private double[] values = new double[64];
+    private double[] adjoints = new double[64];
+    private int[] variableSlots = new int[64];
+    private int[] edgeStart = new int[65];
+    private int size = 0;
+
+    // edge from an entry to one of its operands, weighted with the partial derivative
+    private int[] edgeTargets = new int[64];
+    private double[] edgePartials = new double[64];
+    private int edgeCount = 0;
+
+    // operand entries of the nodes which are currently being recorded
+    private int[] operands = new int[64];
+    private int operandCount = 0;
+
+    private int variableCount = 0;
+
+
+    public int getSize () {
+        return size;
+    }
+
+
+    public double gradient (Expression expression, EvaluationContext context, double[] gradient) throws EvaluationException {
+        double value = record(expression, context);
+        backward(gradient);
+
+        return value;
+    }
+
+    public double record (Expression expression, EvaluationContext context) throws EvaluationException {
+        if (expression == null)
+            throw new NullPointerException("expression may not be null");
+
+        if (context == null)
+            throw new NullPointerException("context may not be null");
+
+
+        size = 0;
+        edgeCount = 0;
+        operandCount = 0;
+        variableCount = context.getVariableCount();
+
+        edgeStart[0] = 0;
+
+        // values may be grown while recording, so it is read afterwards
+        int root = recordNode(expression, context);
+        return values[root];
+    }
+
+    public void backward (double[] gradient) {
+        if (size == 0)
+            throw new IllegalStateException("nothing has been recorded");
+
+        if (gradient.length < variableCount)
+            throw new IllegalArgumentException("expected space for " + variableCount + " partial derivatives");
+
+
+        Arrays.fill(gradient, 0, variableCount, 0);
+        Arrays.fill(adjoints, 0, size, 0);
+
+        adjoints[size-1] = 1;
+        for (int i=size-1; i>=0; i--) {
+            double adjoint = adjoints[i];
+            if (adjoint == 0)
+                continue;
+
+            if (variableSlots[i] >= 0)
+                gradient[variableSlots[i]] += adjoint;
+
+            for (int j=edgeStart[i]; j<edgeStart[i+1]; j++)
+                adjoints[edgeTargets[j]] += adjoint * edgePartials[j];
+        }
+    }
+
+
+    private int recordNode (Expression expression, EvaluationContext context) throws EvaluationException {
+        if (expression instanceof Scalar) {
+            return entry(((Scalar) expression).getValue(), -1);
+        } else if (expression instanceof Constant) {
+            return entry(((Constant) expression).getValue(), -1);
+        } else if (expression instanceof Variable) {
+            int slot = ((Variable) expression).resolveSlot(context);
+            return entry(context.getValue(slot), slot);
+        } else if (expression instanceof Addition) {
+            int a = recordNode(((Addition) expression).getAddend0(), context);
+            int b = recordNode(((Addition) expression).getAddend1(), context);
+
+            return binary(values[a] + values[b], a, 1, b, 1);
+        } else if (expression instanceof Subtraction) {
+            int a = recordNode(((Subtraction) expression).getMinuend(), context);
+            int b = recordNode(((Subtraction) expression).getSubtrahend(), context);
+
+            return binary(values[a] - values[b], a, 1, b, -1);
+        } else if (expression instanceof Multiplication) {
+            int a = recordNode(((Multiplication) expression).getMultiplicand0(), context);
+            int b = recordNode(((Multiplication) expression).getMultiplicand1(), context);
+
+            return binary(values[a] * values[b], a, values[b], b, values[a]);
+        } else if (expression instanceof Division) {
+            int a = recordNode(((Division) expression).getDividend(), context);
+            int b = recordNode(((Division) expression).getDivisor(), context);
+
+            double divisor = values[b];
+            return binary(values[a] / divisor, a, 1 / divisor, b, -values[a] / (divisor*divisor));
+        } else if (expression instanceof Exponentiation) {
+            int a = recordNode(((Exponentiation) expression).getBase(), context);
+            int b = recordNode(((Exponentiation) expression).getExponent(), context);
+
+            double base = values[a];
+            double exponent = values[b];
+            double value = Math.pow(base, exponent);
+
+            return binary(value, a, exponent * Math.pow(base, exponent-1), b, value * Math.log(base));
+        } else if (expression instanceof Function) {
+            Function function = (Function) expression;
+
+            int parameter = recordNode(function.getParameter(), context);
+            double value = function.evaluate(values[parameter]);
+
+            int entry = entry(value, -1);
+            addEdge(parameter, Function.derivative(function.getFunction(), values[parameter], value));
+
+            return entry;
+        } else if (expression instanceof AdditionList) {
+            return additionList((AdditionList) expression, context);
+        } else if (expression instanceof MultiplicationList) {
+            return multiplicationList((MultiplicationList) expression, context);
+        }
+
+        throw new UnknownError("unknown expression: " + expression.getClass().getName());
+    }
+
+    private int additionList (AdditionList additionList, EvaluationContext context) throws EvaluationException {
+        int first = operandCount;
+
+        double value = 0;
+        for (int i=0; i<additionList.getAddendCount(); i++) {
+            AdditionList.Addend addend = additionList.getAddend(i);
+
+            int operand = recordNode(addend.expression, context);
+            pushOperand(operand);
+
+            if (!addend.subtract)
+                value += values[operand];
+            else
+                value -= values[operand];
+        }
+
+        int entry = entry(value, -1);
+        for (int i=0; i<additionList.getAddendCount(); i++)
+            addEdge(operands[first+i], additionList.getAddend(i).subtract ? -1 : 1);
+
+        operandCount = first;
+        return entry;
+    }
+
+    private int multiplicationList (MultiplicationList multiplicationList, EvaluationContext context) throws EvaluationException {
+        int first = operandCount;
+        int count = multiplicationList.getMultiplicandCount();
+
+        for (int i=0; i<count; i++)
+            pushOperand(recordNode(multiplicationList.getMultiplicand(i), context));
+
+        // the partial derivative for each multiplicand is the product of all the others: prefix products first, then
+        // multiply with the suffix products, so no division is needed (multiplicands may be zero)
+        double value = 1;
+        int entry = entry(0, -1);
+        int firstEdge = edgeCount;
+        for (int i=0; i<count; i++) {
+            addEdge(operands[first+i], value);
+            value *= values[operands[first+i]];
+        }
+
+        double suffix = 1;
+        for (int i=count-1; i>=0; i--) {
+            edgePartials[firstEdge+i] *= suffix;
+            suffix *= values[operands[first+i]];
+        }
+
+        values[entry] = value;
+
+        operandCount = first;
+        return entry;
+    }
+
+
+    private int binary (double value, int a, double partialA, int b, double partialB) {
+        int entry = entry(value, -1);
+        addEdge(a, partialA);
+        addEdge(b, partialB);
+
+        return entry;
+    }
+
+    private int entry (double value, int variableSlot) {
+        if (size == values.length) {
+            int capacity = values.length * 2;
+
+            values = Arrays.copyOf(values, capacity);
+            adjoints = Arrays.copyOf(adjoints, capacity);
+            variableSlots = Arrays.copyOf(variableSlots, capacity);
+            edgeStart = Arrays.copyOf(edgeStart, capacity+1);
+        }
+
+        int entry = size++;
+        values[entry] = value;
+        variableSlots[entry] = variableSlot;
+        edgeStart[entry] = edgeCount;
+        edgeStart[entry+1] = edgeCount;
+
+        return entry;
+    }
+
+    // adds an edge to the most recently created entry
+    private void addEdge (int target, double partial) {
+        if (edgeCount == edgeTargets.length) {
+            edgeTargets = Arrays.copyOf(edgeTargets, edgeTargets.length * 2);
+            edgePartials = Arrays.copyOf(edgePartials, edgePartials.length * 2);
+        }
+
+        edgeTargets[edgeCount] = target;
+        edgePartials[edgeCount] = partial;
+        edgeCount++;
+
+        edgeStart[size] = edgeCount;
+    }
+
+    private void pushOperand (int operand) {
+        if (operandCount == operands.length)
+            operands = Arrays.copyOf(operands, operands.length * 2);
+
+        operands[operandCount++] = operand;
+    }
+
+}
@@ -0,0 +1,420 @@
+package math;
+
+
+// mutable interval of real numbers, used as accumulator by the interval evaluation like Complex. all operations round
+// outwards, so the result encloses the exact range of the operation over its operands. parts where the operation is
+// not defined (e.g. ln of negative numbers) are left out, an interval completely outside of the domain becomes empty.
+// intervals around a pole become unbounded
+public class Interval {
+
+    // the functions of Math are within 1 ulp of the exact result, sinh, cosh and tanh within 2.5 ulps
+    private static final int FUNCTION_ULPS = 3;
+
+    // critical points and poles of the trigonometric functions are located with the double value of pi, which is only
+    // reliable for moderate arguments. beyond this, the whole range (or the whole line for tan and cot) is assumed
+    private static final double MAXIMUM_PERIODIC_ARGUMENT = 1e6;
+
+    // error of locating the critical points, in periods per period of the argument
+    private static final double PERIOD_TOLERANCE = 1e-14;
+
+
+    private double lower;
+    private double upper;  // both NaN for the empty interval
+
+
+    public Interval () {
+        this(0, 0);
+    }
+
+    public Interval (double lower, double upper) {
+        set(lower, upper);
+    }
+
+
+    public double getLower () {
+        return lower;
+    }
+
+    public double getUpper () {
+        return upper;
+    }
+
+    // NaN for the empty interval
+    public double getWidth () {
+        return upper - lower;
+    }
+
+    // the midpoint rounded to a double within the interval, 0 for the whole line
+    public double getMidpoint () {
+        if (lower == Double.NEGATIVE_INFINITY && upper == Double.POSITIVE_INFINITY)
+            return 0;
+
+        if (lower == Double.NEGATIVE_INFINITY)
+            return -Double.MAX_VALUE;
+
+        if (upper == Double.POSITIVE_INFINITY)
+            return Double.MAX_VALUE;
+
+        // halving first avoids the overflow of lower + upper
+        double midpoint = lower/2 + upper/2;
+        return Math.min(Math.max(midpoint, lower), upper);
+    }
+
+    public boolean isEmpty () {
+        return Double.isNaN(lower);
+    }
+
+    public boolean contains (double value) {
+        return lower <= value && value <= upper;
+    }
+
+    // NaN bounds make the interval empty
+    public void set (double lower, double upper) {
+        if (Double.isNaN(lower) || Double.isNaN(upper)) {
+            setEmpty();
+            return;
+        }
+
+        if (lower > upper)
+            throw new IllegalArgumentException("lower bound may not be greater than the upper bound");
+
+        this.lower = lower;
+        this.upper = upper;
+    }
+
+    public void setEmpty () {
+        this.lower = Double.NaN;
+        this.upper = Double.NaN;
+    }
+
+    private void setEntire () {
+        this.lower = Double.NEGATIVE_INFINITY;
+        this.upper = Double.POSITIVE_INFINITY;
+    }
+
+    // widens the bounds by the given number of ulps. a NaN bound comes from an undefined operation on infinite bounds
+    // (e.g. inf - inf), it is replaced by the infinity on its side, so the result is still an enclosure
+    private void setRounded (double lower, double upper, int ulps) {
+        for (int i=0; i<ulps; i++) {
+            lower = Math.nextDown(lower);
+            upper = Math.nextUp(upper);
+        }
+
+        this.lower = Double.isNaN(lower) ? Double.NEGATIVE_INFINITY : lower;
+        this.upper = Double.isNaN(upper) ? Double.POSITIVE_INFINITY : upper;
+    }
+
+
+    public void add (double lower, double upper) {
+        if (isEmpty() || Double.isNaN(lower) || Double.isNaN(upper)) {
+            setEmpty();
+            return;
+        }
+
+        setRounded(this.lower + lower, this.upper + upper, 1);
+    }
+
+    public void subtract (double lower, double upper) {
+        if (isEmpty() || Double.isNaN(lower) || Double.isNaN(upper)) {
+            setEmpty();
+            return;
+        }
+
+        setRounded(this.lower - upper, this.upper - lower, 1);
+    }
+
+    public void negate () {
+        double lower = this.lower;
+        this.lower = -upper;
+        this.upper = -lower;
+    }
+
+    public void multiply (double lower, double upper) {
+        if (isEmpty() || Double.isNaN(lower) || Double.isNaN(upper)) {
+            setEmpty();
+            return;
+        }
+
+        double p0 = multiplyBounds(this.lower, lower);
+        double p1 = multiplyBounds(this.lower, upper);
+        double p2 = multiplyBounds(this.upper, lower);
+        double p3 = multiplyBounds(this.upper, upper);
+
+        setRounded(Math.min(Math.min(p0, p1), Math.min(p2, p3)), Math.max(Math.max(p0, p1), Math.max(p2, p3)), 1);
+    }
+
+    // infinite bounds are never reached, so 0 * inf is 0
+    private static double multiplyBounds (double a, double b) {
+        return a == 0 || b == 0 ? 0 : a * b;
+    }
+
+    public void divide (double lower, double upper) {
+        double dividendLower = this.lower, dividendUpper = this.upper;
+
+        set(lower, upper);
+        reciprocal();
+        multiply(dividendLower, dividendUpper);
+    }
+
+    // 0 itself is left out, so an interval with 0 as bound only becomes unbounded on one side
+    public void reciprocal () {
+        double a = lower, b = upper;
+
+        if (isEmpty())
+            return;
+
+        if (a > 0 || b < 0)
+            setRounded(1/b, 1/a, 1);
+        else if (a == 0 && b == 0)
+            setEmpty();
+        else if (a == 0)
+            setRounded(1/b, Double.POSITIVE_INFINITY, 1);
+        else if (b == 0)
+            setRounded(Double.NEGATIVE_INFINITY, 1/a, 1);
+        else
+            setEntire();
+    }
+
+    public void pow (double lower, double upper) {
+        if (isEmpty() || Double.isNaN(lower) || Double.isNaN(upper)) {
+            setEmpty();
+            return;
+        }
+
+        if (lower == upper) {
+            pow(lower);
+            return;
+        }
+
+        // negative bases are only defined for integer exponents. those points are not tracked, the whole line is
+        // assumed instead
+        if (this.lower < 0) {
+            if (Math.floor(upper) >= Math.ceil(lower)) {
+                setEntire();
+                return;
+            }
+
+            if (this.upper < 0) {
+                setEmpty();
+                return;
+            }
+
+            this.lower = 0;
+        }
+
+        // a^b is monotonic in a and in b for a >= 0, so the extremes lie at the corners
+        double p0 = Math.pow(this.lower, lower);
+        double p1 = Math.pow(this.lower, upper);
+        double p2 = Math.pow(this.upper, lower);
+        double p3 = Math.pow(this.upper, upper);
+
+        setRounded(Math.min(Math.min(p0, p1), Math.min(p2, p3)), Math.max(Math.max(p0, p1), Math.max(p2, p3)), FUNCTION_ULPS);
+    }
+
+    private void pow (double exponent) {
+        if (exponent == 0) {
+            set(1, 1);
+            return;
+        }
+
+        if (exponent == Math.rint(exponent)) {
+            double magnitude = Math.abs(exponent);
+
+            // even powers only depend on the absolute value
+            if (magnitude % 2 == 0)
+                function(Function.F.abs);
+
+            setRounded(Math.pow(lower, magnitude), Math.pow(upper, magnitude), FUNCTION_ULPS);
+
+            if (exponent < 0)
+                reciprocal();
+
+            return;
+        }
+
+        if (upper < 0) {
+            setEmpty();
+            return;
+        }
+
+        double a = Math.max(lower, 0), b = upper;
+        if (exponent > 0) {
+            setRounded(Math.pow(a, exponent), Math.pow(b, exponent), FUNCTION_ULPS);
+        } else if (b == 0) {
+            setEmpty();
+        } else {
+            setRounded(Math.pow(b, exponent), a == 0 ? Double.POSITIVE_INFINITY : Math.pow(a, exponent), FUNCTION_ULPS);
+        }
+    }
+
+
+    public void function (Function.F function) {
+        double a = lower, b = upper;
+
+        if (isEmpty())
+            return;
+
+        switch (function) {
+            case sin:
+                periodic(Math.sin(a), Math.sin(b), Math.PI/2);
+                break;
+
+            case cos:
+                periodic(Math.cos(a), Math.cos(b), 0);
+                break;
+
+            case tan:
+                if (containsPole(Math.PI/2))
+                    setEntire();
+                else
+                    setRounded(Math.tan(a), Math.tan(b), FUNCTION_ULPS);
+                break;
+
+            case sinh:
+                setRounded(Math.sinh(a), Math.sinh(b), FUNCTION_ULPS);
+                break;
+
+            case cosh:
+                if (a >= 0)
+                    setRounded(Math.cosh(a), Math.cosh(b), FUNCTION_ULPS);
+                else if (b <= 0)
+                    setRounded(Math.cosh(b), Math.cosh(a), FUNCTION_ULPS);
+                else
+                    setRounded(1, Math.cosh(Math.max(-a, b)), FUNCTION_ULPS);
+
+                lower = Math.max(lower, 1);
+                break;
+
+            case tanh:
+                setRounded(Math.tanh(a), Math.tanh(b), FUNCTION_ULPS);
+                clamp(-1, 1);
+                break;
+
+            case sech:
+                function(Function.F.cosh);
+                reciprocal();
+                break;
+
+            case csch:
+                function(Function.F.sinh);
+                reciprocal();
+                break;
+
+            case cot:
+                // decreasing between the poles
+                if (containsPole(0))
+                    setEntire();
+                else
+                    setRounded(1/Math.tan(b), 1/Math.tan(a), FUNCTION_ULPS);
+                break;
+
+            case coth:
+                function(Function.F.tanh);
+                reciprocal();
+                break;
+
+            case csc:
+                function(Function.F.sin);
+                reciprocal();
+                break;
+
+            case sec:
+                function(Function.F.cos);
+                reciprocal();
+                break;
+
+            case ln:
+                if (b <= 0)
+                    setEmpty();
+                else
+                    setRounded(a <= 0 ? Double.NEGATIVE_INFINITY : Math.log(a), Math.log(b), FUNCTION_ULPS);
+                break;
+
+            case abs:
+                if (a >= 0)
+                    set(a, b);
+                else if (b <= 0)
+                    set(-b, -a);
+                else
+                    set(0, Math.max(-a, b));
+                break;
+
+            case sqrt:
+                if (b < 0) {
+                    setEmpty();
+                } else {
+                    setRounded(Math.sqrt(Math.max(a, 0)), Math.sqrt(b), 1);
+                    lower = Math.max(lower, 0);
+                }
+                break;
+
+            // monotonic and exact
+            case round:
+                set(Math.round(a), Math.round(b));
+                break;
+
+            case ceil:
+                set(Math.ceil(a), Math.ceil(b));
+                break;
+
+            case floor:
+                set(Math.floor(a), Math.floor(b));
+                break;
+
+
+            default:
+                throw new UnknownError();
+        }
+    }
+
+    // sin or cos with the values at the bounds, maximum is the position of a maximum within the first period. the
+    // minima lie half a period further
+    private void periodic (double lowerValue, double upperValue, double maximum) {
+        if (!(upper - lower < 2*Math.PI) || Math.max(-lower, upper) > MAXIMUM_PERIODIC_ARGUMENT) {
+            set(-1, 1);
+            return;
+        }
+
+        boolean containsMaximum = containsPeriodicPoint(maximum, 2*Math.PI);
+        boolean containsMinimum = containsPeriodicPoint(maximum + Math.PI, 2*Math.PI);
+
+        setRounded(Math.min(lowerValue, upperValue), Math.max(lowerValue, upperValue), FUNCTION_ULPS);
+
+        if (containsMinimum)
+            lower = -1;
+
+        if (containsMaximum)
+            upper = 1;
+
+        clamp(-1, 1);
+    }
+
+    // poles of tan (at pi/2) and cot (at 0), which repeat every pi
+    private boolean containsPole (double pole) {
+        return !(upper - lower < Math.PI) || Math.max(-lower, upper) > MAXIMUM_PERIODIC_ARGUMENT || containsPeriodicPoint(pole, Math.PI);
+    }
+
+    // whether point + k*period lies within the interval for any integer k. points close to a bound count as contained
+    private boolean containsPeriodicPoint (double point, double period) {
+        double first = (lower - point) / period;
+        double last = (upper - point) / period;
+        double tolerance = PERIOD_TOLERANCE * (1 + Math.max(Math.abs(first), Math.abs(last)));
+
+        return Math.floor(last + tolerance) >= Math.ceil(first - tolerance);
+    }
+
+    private void clamp (double lower, double upper) {
+        this.lower = Math.max(this.lower, lower);
+        this.upper = Math.min(this.upper, upper);
+    }
+
+
+    @Override
+    public String toString () {
+        if (isEmpty())
+            return "[]";
+
+        return "[" + lower + ", " + upper + "]";
+    }
+
+}
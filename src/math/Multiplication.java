@@ -24,6 +24,8 @@ public class Multiplication extends Expression {
     }
 
     public void setMultiplicand0 (Expression multiplicand0) {
+        checkMutable();
+
         if (multiplicand0 == null)
             throw new NullPointerException("multiplicand may not be null");
 
@@ -31,6 +33,8 @@ public class Multiplication extends Expression {
     }
 
     public void setMultiplicand1 (Expression multiplicand1) {
+        checkMutable();
+
         if (multiplicand0 == null)
             throw new NullPointerException("multiplicand may not be null");
 
@@ -43,6 +47,44 @@ public class Multiplication extends Expression {
         return multiplicand0.evaluate(variables) * multiplicand1.evaluate(variables);
     }
 
+    @Override
+    public double evaluate (EvaluationContext context) throws EvaluationException {
+        return multiplicand0.evaluate(context) * multiplicand1.evaluate(context);
+    }
+
+    @Override
+    public void evaluateDual (EvaluationContext context, int variableSlot, Dual result) throws EvaluationException {
+        multiplicand0.evaluateDual(context, variableSlot, result);
+        double a = result.getValue();
+        double da = result.getDerivative();
+
+        multiplicand1.evaluateDual(context, variableSlot, result);
+        double b = result.getValue();
+        double db = result.getDerivative();
+
+        result.set(a * b, da*b + a*db);
+    }
+
+    @Override
+    public void evaluateComplex (EvaluationContext context, Complex result) throws EvaluationException {
+        multiplicand0.evaluateComplex(context, result);
+        double a = result.getReal();
+        double b = result.getImaginary();
+
+        multiplicand1.evaluateComplex(context, result);
+        result.multiply(a, b);
+    }
+
+    @Override
+    public void evaluateInterval (EvaluationContext context, Interval result) throws EvaluationException {
+        multiplicand0.evaluateInterval(context, result);
+        double a = result.getLower();
+        double b = result.getUpper();
+
+        multiplicand1.evaluateInterval(context, result);
+        result.multiply(a, b);
+    }
+
     @Override
     public String toString () {
         return "(" + multiplicand0.toString() + " * " + multiplicand1.toString() + ")";
@@ -21,8 +21,18 @@ public class MultiplicationList extends Expression {
         return multiplicands.toArray(new Expression[0]);
     }
 
+    public int getMultiplicandCount () {
+        return multiplicands.size();
+    }
+
+    public Expression getMultiplicand (int i) {
+        return multiplicands.get(i);
+    }
+
 
     public void setMultiplicands (Expression ...multiplicands) {
+        checkMutable();
+
         if (multiplicands == null)
             throw new NullPointerException("multiplicands may not be null");
 
@@ -36,6 +46,8 @@ public class MultiplicationList extends Expression {
     }
 
     public void addMultiplicand (Expression multiplicand) {
+        checkMutable();
+
         if (multiplicand == null)
             throw new NullPointerException("multiplicand may not be null");
 
@@ -43,6 +55,8 @@ public class MultiplicationList extends Expression {
     }
 
     public void removeMultiplicand (int i) {
+        checkMutable();
+
         this.multiplicands.remove(i);
     }
 
@@ -59,6 +73,9 @@ public class MultiplicationList extends Expression {
         MultiplicationList multiplicationList0 = this;
         MultiplicationList multiplicationList1 = (MultiplicationList) obj;
 
+        if (multiplicationList0.isDistinctFrom(multiplicationList1))
+            return false;
+
         if (multiplicationList0.multiplicands.size() != multiplicationList1.multiplicands.size())
             return false;
 
@@ -73,12 +90,6 @@ public class MultiplicationList extends Expression {
         return true;
     }
 
-    @Override
-    public int hashCode () {
-        return 0;
-    }
-
-
     @Override
     public double evaluate (VariableDefinition... variables) throws EvaluationException {
         double res = 1;
@@ -88,6 +99,64 @@ public class MultiplicationList extends Expression {
         return res;
     }
 
+    @Override
+    public double evaluate (EvaluationContext context) throws EvaluationException {
+        double res = 1;
+        for (int i=0; i<this.multiplicands.size(); i++)
+            res *= this.multiplicands.get(i).evaluate(context);
+
+        return res;
+    }
+
+    @Override
+    public void evaluateDual (EvaluationContext context, int variableSlot, Dual result) throws EvaluationException {
+        double res = 1;
+        double derivative = 0;
+        for (int i=0; i<this.multiplicands.size(); i++) {
+            this.multiplicands.get(i).evaluateDual(context, variableSlot, result);
+
+            // (a*b)' = a' * b + a * b'
+            derivative = derivative * result.getValue() + res * result.getDerivative();
+            res *= result.getValue();
+        }
+
+        result.set(res, derivative);
+    }
+
+    @Override
+    public void evaluateComplex (EvaluationContext context, Complex result) throws EvaluationException {
+        double real = 1;
+        double imaginary = 0;
+        for (int i=0; i<this.multiplicands.size(); i++) {
+            this.multiplicands.get(i).evaluateComplex(context, result);
+            result.multiply(real, imaginary);
+
+            real = result.getReal();
+            imaginary = result.getImaginary();
+        }
+
+        result.set(real, imaginary);
+    }
+
+    @Override
+    public void evaluateInterval (EvaluationContext context, Interval result) throws EvaluationException {
+        if (this.multiplicands.isEmpty()) {
+            result.set(1, 1);
+            return;
+        }
+
+        double lower = 1;
+        double upper = 1;
+        for (int i=0; i<this.multiplicands.size(); i++) {
+            this.multiplicands.get(i).evaluateInterval(context, result);
+            if (i > 0)
+                result.multiply(lower, upper);
+
+            lower = result.getLower();
+            upper = result.getUpper();
+        }
+    }
+
     @Override
     public String toString () {
         StringBuilder str = new StringBuilder("(");
@@ -0,0 +1,433 @@
+package math;
+
+import math.exception.EvaluationException;
+
+import java.util.List;
+
+
+// arithmetic of a number type T, which evaluate() uses to compute an expression in another precision than double. a
+// backend only has to provide the basic operations and its precision, the functions are computed from them with
+// series (the double backend uses Math instead). operations which are not defined throw an ArithmeticException
+public abstract class NumericBackend<T> {
+
+    // integer exponents up to this magnitude are computed by repeated squaring, so negative bases work
+    private static final int MAXIMUM_INTEGER_EXPONENT = 1024;
+
+    // the argument of exp is halved this often before the series is summed
+    private static final int EXP_HALVINGS = 8;
+
+    // beyond this argument exp over- or underflows in every backend with a double exponent range
+    private static final double MAXIMUM_EXP_ARGUMENT = 1e8;
+
+    // series are summed until the terms are below this fraction of the precision. newton iterations stop once the
+    // correction is within this multiple of the precision (or after the maximum count), their error is the square of it
+    private static final double SERIES_TOLERANCE = 1.0 / 16;
+    private static final double NEWTON_TOLERANCE = 16;
+    private static final int MAXIMUM_NEWTON_ITERATIONS = 32;
+
+
+    // computed on first use
+    private T pi, e, ln2;
+
+
+    public abstract T valueOf (double value);
+    public abstract double toDouble (T value);
+
+    public abstract T add (T a, T b);
+    public abstract T subtract (T a, T b);
+    public abstract T multiply (T a, T b);
+    public abstract T divide (T a, T b);
+    public abstract T negate (T a);
+    public abstract T floor (T a);
+    public abstract int signum (T a);
+
+    // the relative precision of the operations
+    public abstract double getEpsilon ();
+
+    // backends without infinity and NaN throw an ArithmeticException instead
+    public boolean isFinite (T value) {
+        return true;
+    }
+
+
+    // values are indexed by the slots of the context
+    public T evaluate (Expression expression, EvaluationContext context, List<T> values) throws EvaluationException {
+        T result;
+        try {
+            result = evaluateNode(expression, context, values);
+        } catch (ArithmeticException e) {
+            throw new EvaluationException("value is not defined", e);
+        }
+
+        if (!isFinite(result))
+            throw new EvaluationException("value is not finite");
+
+        return result;
+    }
+
+    private T evaluateNode (Expression expression, EvaluationContext context, List<T> values) throws EvaluationException {
+        if (expression instanceof Addition) {
+            return add(evaluateNode(((Addition) expression).getAddend0(), context, values), evaluateNode(((Addition) expression).getAddend1(), context, values));
+        } else if (expression instanceof Subtraction) {
+            return subtract(evaluateNode(((Subtraction) expression).getMinuend(), context, values), evaluateNode(((Subtraction) expression).getSubtrahend(), context, values));
+        } else if (expression instanceof Multiplication) {
+            return multiply(evaluateNode(((Multiplication) expression).getMultiplicand0(), context, values), evaluateNode(((Multiplication) expression).getMultiplicand1(), context, values));
+        } else if (expression instanceof Division) {
+            return divide(evaluateNode(((Division) expression).getDividend(), context, values), evaluateNode(((Division) expression).getDivisor(), context, values));
+        } else if (expression instanceof Exponentiation) {
+            Expression base = ((Exponentiation) expression).getBase();
+
+            // e^x directly, instead of exp(x * ln(e)) with a logarithm of its own
+            if (base instanceof Constant && Constant.C.e.equals(((Constant) base).getConstant()))
+                return exp(evaluateNode(((Exponentiation) expression).getExponent(), context, values));
+
+            return pow(evaluateNode(base, context, values), evaluateNode(((Exponentiation) expression).getExponent(), context, values));
+        } else if (expression instanceof Function) {
+            return function(((Function) expression).getFunction(), evaluateNode(((Function) expression).getParameter(), context, values));
+        } else if (expression instanceof Scalar) {
+            return valueOf(((Scalar) expression).getValue());
+        } else if (expression instanceof Constant) {
+            return constant(((Constant) expression).getConstant());
+        } else if (expression instanceof Variable) {
+            return values.get(((Variable) expression).resolveSlot(context));
+        } else if (expression instanceof AdditionList) {
+            AdditionList additionList = (AdditionList) expression;
+
+            T sum = valueOf(0);
+            for (int i=0; i<additionList.getAddendCount(); i++) {
+                AdditionList.Addend addend = additionList.getAddend(i);
+                T value = evaluateNode(addend.expression, context, values);
+                sum = addend.subtract ? subtract(sum, value) : add(sum, value);
+            }
+
+            return sum;
+        } else if (expression instanceof MultiplicationList) {
+            MultiplicationList multiplicationList = (MultiplicationList) expression;
+
+            T product = valueOf(1);
+            for (int i=0; i<multiplicationList.getMultiplicandCount(); i++)
+                product = multiply(product, evaluateNode(multiplicationList.getMultiplicand(i), context, values));
+
+            return product;
+        } else {
+            throw new UnknownError();
+        }
+    }
+
+
+    public T constant (Constant.C constant) {
+        switch (constant) {
+            case pi:
+                return getPi();
+
+            case e:
+                if (e == null)
+                    e = exp(valueOf(1));
+
+                return e;
+
+            default:
+                throw new UnknownError();
+        }
+    }
+
+    public T function (Function.F function, T param) {
+        switch (function) {
+            case sin:
+                return sin(param);
+
+            case cos:
+                return cos(param);
+
+            case tan:
+                return divide(sin(param), cos(param));
+
+            case sinh:
+                return sinh(param);
+
+            case cosh:
+                return cosh(param);
+
+            case tanh:
+                return tanh(param);
+
+            case sech:
+                return divide(valueOf(1), cosh(param));
+
+            case csch:
+                return divide(valueOf(1), sinh(param));
+
+            case cot:
+                return divide(cos(param), sin(param));
+
+            case coth:
+                return divide(valueOf(1), tanh(param));
+
+            case csc:
+                return divide(valueOf(1), sin(param));
+
+            case sec:
+                return divide(valueOf(1), cos(param));
+
+            case ln:
+                return log(param);
+
+            case abs:
+                return signum(param) < 0 ? negate(param) : param;
+
+            case sqrt:
+                return sqrt(param);
+
+            // like Math.round, which rounds halves up
+            case round:
+                return floor(add(param, valueOf(0.5)));
+
+            case ceil:
+                return negate(floor(negate(param)));
+
+            case floor:
+                return floor(param);
+
+
+            default:
+                throw new UnknownError();
+        }
+    }
+
+    public T pow (T base, T exponent) {
+        double n = toDouble(exponent);
+        if (n == Math.rint(n) && Math.abs(n) <= MAXIMUM_INTEGER_EXPONENT && signum(subtract(exponent, valueOf(n))) == 0)
+            return integerPow(base, (int) n);
+
+        int sign = signum(base);
+        if (sign < 0)
+            throw new ArithmeticException("power of a negative base with a non-integer exponent");
+
+        if (sign == 0) {
+            if (signum(exponent) > 0)
+                return valueOf(0);
+
+            throw new ArithmeticException("power of 0 with a negative exponent");
+        }
+
+        return exp(multiply(exponent, log(base)));
+    }
+
+    private T integerPow (T base, int exponent) {
+        T result = valueOf(1);
+        T power = base;
+
+        for (int n=Math.abs(exponent); n>0; n>>=1) {
+            if ((n & 1) != 0)
+                result = multiply(result, power);
+
+            if (n > 1)
+                power = multiply(power, power);
+        }
+
+        return exponent < 0 ? divide(valueOf(1), result) : result;
+    }
+
+
+    public T sqrt (T value) {
+        int sign = signum(value);
+        if (sign < 0)
+            throw new ArithmeticException("square root of a negative number");
+
+        if (sign == 0)
+            return value;
+
+        // heron's method from the double root, the precision doubles with every iteration
+        T root = valueOf(Math.sqrt(toDouble(value)));
+        T half = valueOf(0.5);
+        for (int i=0; i<MAXIMUM_NEWTON_ITERATIONS; i++) {
+            T next = multiply(add(root, divide(value, root)), half);
+            boolean converged = hasConverged(subtract(next, root), next, NEWTON_TOLERANCE);
+
+            root = next;
+            if (converged)
+                break;
+        }
+
+        return root;
+    }
+
+    // exp(x) = 2^k * exp(r) with |r| <= ln(2)/2. exp(r) - 1 is summed for r / 2^h and squared back h times as
+    // (e-1)(e+1) + 2(e-1), which keeps its relative precision
+    public T exp (T value) {
+        double x = toDouble(value);
+
+        if (Math.abs(x) > MAXIMUM_EXP_ARGUMENT)
+            return valueOf(Math.exp(x));
+
+        long k = Math.round(x / Math.log(2));
+
+        T r = subtract(value, multiply(valueOf(k), getLn2()));
+        r = multiply(r, valueOf(Math.scalb(1.0, -EXP_HALVINGS)));
+
+        T sum = r;
+        T term = r;
+        for (int i=2; !hasConverged(term, sum, SERIES_TOLERANCE); i++) {
+            term = divide(multiply(term, r), valueOf(i));
+            sum = add(sum, term);
+        }
+
+        T two = valueOf(2);
+        for (int i=0; i<EXP_HALVINGS; i++)
+            sum = multiply(sum, add(sum, two));
+
+        // scaled in two steps, 2^k itself may overflow although the result does not
+        T result = multiply(add(sum, valueOf(1)), integerPow(two, (int) (k / 2)));
+        return multiply(result, integerPow(two, (int) (k - k/2)));
+    }
+
+    // newton's method for exp(y) = x from the double logarithm
+    public T log (T value) {
+        if (signum(value) <= 0)
+            throw new ArithmeticException("logarithm of a non-positive number");
+
+        T one = valueOf(1);
+        T y = valueOf(Math.log(toDouble(value)));
+        for (int i=0; i<MAXIMUM_NEWTON_ITERATIONS; i++) {
+            T correction = subtract(multiply(value, exp(negate(y))), one);
+            y = add(y, correction);
+
+            if (hasConverged(correction, y, NEWTON_TOLERANCE))
+                break;
+        }
+
+        return y;
+    }
+
+    public T sin (T value) {
+        return trigonometric(value, 0);
+    }
+
+    public T cos (T value) {
+        return trigonometric(value, 1);
+    }
+
+    // sin(x + shift * pi/2). x is reduced to r = x - k*pi/2 with |r| <= pi/4, sin(x) is one of ±sin(r) and ±cos(r)
+    // depending on k
+    private T trigonometric (T value, int shift) {
+        double k = Math.rint(toDouble(value) / (Math.PI/2));
+        T halfPi = multiply(getPi(), valueOf(0.5));
+        T r = subtract(value, multiply(valueOf(k), halfPi));
+
+        int quadrant = (int) ((k % 4 + 4 + shift) % 4);
+        T result = quadrant % 2 == 0 ? sinSeries(r) : cosSeries(r);
+
+        return quadrant >= 2 ? negate(result) : result;
+    }
+
+    private T sinSeries (T value) {
+        T square = multiply(value, value);
+
+        T sum = value;
+        T term = value;
+        for (int i=3; !hasConverged(term, sum, SERIES_TOLERANCE); i+=2) {
+            term = negate(divide(multiply(term, square), valueOf((double) (i-1) * i)));
+            sum = add(sum, term);
+        }
+
+        return sum;
+    }
+
+    private T cosSeries (T value) {
+        T square = multiply(value, value);
+
+        T sum = valueOf(1);
+        T term = sum;
+        for (int i=2; !hasConverged(term, sum, SERIES_TOLERANCE); i+=2) {
+            term = negate(divide(multiply(term, square), valueOf((double) (i-1) * i)));
+            sum = add(sum, term);
+        }
+
+        return sum;
+    }
+
+    // the series for small arguments, where (e^x - e^-x)/2 would cancel
+    public T sinh (T value) {
+        if (Math.abs(toDouble(value)) >= 1) {
+            T e = exp(value);
+            return multiply(subtract(e, divide(valueOf(1), e)), valueOf(0.5));
+        }
+
+        T square = multiply(value, value);
+
+        T sum = value;
+        T term = value;
+        for (int i=3; !hasConverged(term, sum, SERIES_TOLERANCE); i+=2) {
+            term = divide(multiply(term, square), valueOf((double) (i-1) * i));
+            sum = add(sum, term);
+        }
+
+        return sum;
+    }
+
+    public T cosh (T value) {
+        T e = exp(value);
+        return multiply(add(e, divide(valueOf(1), e)), valueOf(0.5));
+    }
+
+    // (1 - e^-2|x|) / (1 + e^-2|x|) for large arguments, which does not overflow
+    public T tanh (T value) {
+        if (Math.abs(toDouble(value)) < 1)
+            return divide(sinh(value), cosh(value));
+
+        boolean negative = signum(value) < 0;
+        T e = exp(multiply(negative ? value : negate(value), valueOf(2)));
+        T one = valueOf(1);
+        T result = divide(subtract(one, e), add(one, e));
+
+        return negative ? negate(result) : result;
+    }
+
+
+    // machin's formula pi = 16 atan(1/5) - 4 atan(1/239)
+    public T getPi () {
+        if (pi == null)
+            pi = subtract(multiply(valueOf(16), inverseAtan(5)), multiply(valueOf(4), inverseAtan(239)));
+
+        return pi;
+    }
+
+    // ln(2) = 2 atanh(1/3)
+    public T getLn2 () {
+        if (ln2 == null)
+            ln2 = multiply(valueOf(2), inverseAtanh(3));
+
+        return ln2;
+    }
+
+    private T inverseAtan (int n) {
+        return inverseSeries(n, true);
+    }
+
+    private T inverseAtanh (int n) {
+        return inverseSeries(n, false);
+    }
+
+    // sum of (±1)^k / ((2k+1) n^(2k+1))
+    private T inverseSeries (int n, boolean alternating) {
+        T power = divide(valueOf(1), valueOf(n));
+        T square = valueOf((double) n * n);
+
+        T sum = power;
+        T term = power;
+        for (int k=1; !hasConverged(term, sum, SERIES_TOLERANCE); k++) {
+            power = divide(power, square);
+            term = divide(power, valueOf(2*k + 1));
+            sum = alternating && k % 2 == 1 ? subtract(sum, term) : add(sum, term);
+        }
+
+        return sum;
+    }
+
+    // whether a term or correction is within the tolerance (in multiples of the precision) of the value, also true for
+    // NaN, so the loops end for values which are not finite
+    private boolean hasConverged (T term, T value, double tolerance) {
+        return !(Math.abs(toDouble(term)) > tolerance * getEpsilon() * Math.abs(toDouble(value)));
+    }
+
+}
@@ -0,0 +1,570 @@
+package math;
+
+
+import java.util.Arrays;
+
+
+// polynomial in one variable with real coefficients, evaluated with horner's scheme. polynomials with few terms
+// compared to their degree are evaluated sparsely, powers of the variable between the terms are computed by repeated
+// squaring. a polynomial is immutable and can be shared between threads
+public class Polynomial {
+
+    // larger degrees are not expanded, e.g. (x+1)^100000
+    public static final int MAXIMUM_DEGREE = 1024;
+
+    // the sparse form is used if the polynomial has less than one term per this many degrees
+    private static final int SPARSE_RATIO = 8;
+
+    // a root of findRoots() is converged if the last correction is below this fraction of its magnitude, or if its value
+    // is within the rounding error of horner's scheme
+    private static final double ROOT_PRECISION = 0x1p-50;
+    private static final double ROUNDING_ERROR = 0x1p-51;
+
+
+    // coefficients[k] belongs to x^k, the leading coefficient is not 0 (except for the zero polynomial)
+    private final double[] coefficients;
+
+    // exponents and coefficients of the non-zero terms in descending order, null if the dense form is used
+    private final int[] sparseExponents;
+    private final double[] sparseCoefficients;
+
+
+    public Polynomial (double ...coefficients) {
+        if (coefficients == null)
+            throw new NullPointerException("coefficients may not be null");
+
+        int degree = coefficients.length - 1;
+        while (degree > 0 && coefficients[degree] == 0)
+            degree--;
+
+        this.coefficients = Arrays.copyOf(coefficients, Math.max(degree + 1, 1));
+
+        int termCount = 0;
+        for (double coefficient : this.coefficients) {
+            if (coefficient != 0)
+                termCount++;
+        }
+
+        if (termCount * SPARSE_RATIO < degree) {
+            sparseExponents = new int[termCount];
+            sparseCoefficients = new double[termCount];
+
+            for (int k=degree, i=0; k>=0; k--) {
+                if (this.coefficients[k] != 0) {
+                    sparseExponents[i] = k;
+                    sparseCoefficients[i] = this.coefficients[k];
+                    i++;
+                }
+            }
+        } else {
+            sparseExponents = null;
+            sparseCoefficients = null;
+        }
+    }
+
+
+    // null if the expression is not a polynomial in the variable, e.g. because it contains other variables, divides by
+    // the variable or has a degree above MAXIMUM_DEGREE. products and powers of sums are expanded
+    public static Polynomial fromExpression (Expression expression, String variableName) {
+        if (expression == null)
+            throw new NullPointerException("expression may not be null");
+
+        if (variableName == null)
+            throw new NullPointerException("variable name may not be null");
+
+        double[] coefficients = convert(expression, variableName);
+        return coefficients != null ? new Polynomial(coefficients) : null;
+    }
+
+    // whether the expression is a sum of monomials c*x^k, whose coefficients horner's scheme evaluates as precisely as
+    // the expression itself. products and powers of sums (e.g. (x-1)^7) expand into coefficients which cancel close to
+    // their roots
+    public static boolean isSumOfMonomials (Expression expression, String variableName) {
+        if (expression == null)
+            throw new NullPointerException("expression may not be null");
+
+        if (variableName == null)
+            throw new NullPointerException("variable name may not be null");
+
+        if (expression instanceof Addition) {
+            Addition addition = (Addition) expression;
+            return isSumOfMonomials(addition.getAddend0(), variableName) && isSumOfMonomials(addition.getAddend1(), variableName);
+        } else if (expression instanceof Subtraction) {
+            Subtraction subtraction = (Subtraction) expression;
+            return isSumOfMonomials(subtraction.getMinuend(), variableName) && isSumOfMonomials(subtraction.getSubtrahend(), variableName);
+        } else if (expression instanceof AdditionList) {
+            for (AdditionList.Addend addend : ((AdditionList) expression).getAddends()) {
+                if (!isSumOfMonomials(addend.expression, variableName))
+                    return false;
+            }
+
+            return true;
+        }
+
+        return isMonomial(expression, variableName);
+    }
+
+    private static boolean isMonomial (Expression expression, String variableName) {
+        if (expression instanceof Variable) {
+            return variableName.equals(((Variable) expression).getName());
+        } else if (expression instanceof Exponentiation) {
+            Exponentiation exponentiation = (Exponentiation) expression;
+            if (exponentiation.getBase() instanceof Variable)
+                return isMonomial(exponentiation.getBase(), variableName) && isConstant(exponentiation.getExponent(), variableName);
+        } else if (expression instanceof Multiplication) {
+            Multiplication multiplication = (Multiplication) expression;
+            return isMonomial(multiplication.getMultiplicand0(), variableName) && isMonomial(multiplication.getMultiplicand1(), variableName);
+        } else if (expression instanceof MultiplicationList) {
+            for (Expression multiplicand : ((MultiplicationList) expression).getMultiplicands()) {
+                if (!isMonomial(multiplicand, variableName))
+                    return false;
+            }
+
+            return true;
+        } else if (expression instanceof Division) {
+            Division division = (Division) expression;
+            return isMonomial(division.getDividend(), variableName) && isConstant(division.getDivisor(), variableName);
+        }
+
+        return isConstant(expression, variableName);
+    }
+
+    private static boolean isConstant (Expression expression, String variableName) {
+        double[] coefficients = convert(expression, variableName);
+        return coefficients != null && coefficients.length == 1;
+    }
+
+    private static double[] convert (Expression expression, String variableName) {
+        if (expression instanceof Scalar) {
+            return new double[] {((Scalar) expression).getValue()};
+        } else if (expression instanceof Constant) {
+            return new double[] {((Constant) expression).getValue()};
+        } else if (expression instanceof Variable) {
+            return variableName.equals(((Variable) expression).getName()) ? new double[] {0, 1} : null;
+        } else if (expression instanceof Addition) {
+            Addition addition = (Addition) expression;
+            return add(convert(addition.getAddend0(), variableName), convert(addition.getAddend1(), variableName), 1);
+        } else if (expression instanceof Subtraction) {
+            Subtraction subtraction = (Subtraction) expression;
+            return add(convert(subtraction.getMinuend(), variableName), convert(subtraction.getSubtrahend(), variableName), -1);
+        } else if (expression instanceof AdditionList) {
+            double[] result = {0};
+            for (AdditionList.Addend addend : ((AdditionList) expression).getAddends())
+                result = add(result, convert(addend.expression, variableName), addend.subtract ? -1 : 1);
+
+            return result;
+        } else if (expression instanceof Multiplication) {
+            Multiplication multiplication = (Multiplication) expression;
+            return multiply(convert(multiplication.getMultiplicand0(), variableName), convert(multiplication.getMultiplicand1(), variableName));
+        } else if (expression instanceof MultiplicationList) {
+            double[] result = {1};
+            for (Expression multiplicand : ((MultiplicationList) expression).getMultiplicands())
+                result = multiply(result, convert(multiplicand, variableName));
+
+            return result;
+        } else if (expression instanceof Division) {
+            Division division = (Division) expression;
+            double[] dividend = convert(division.getDividend(), variableName);
+            double[] divisor = convert(division.getDivisor(), variableName);
+
+            if (divisor == null || divisor.length != 1)
+                return null;
+
+            return multiply(dividend, new double[] {1 / divisor[0]});
+        } else if (expression instanceof Exponentiation) {
+            Exponentiation exponentiation = (Exponentiation) expression;
+            double[] base = convert(exponentiation.getBase(), variableName);
+            double[] exponent = convert(exponentiation.getExponent(), variableName);
+
+            if (base == null || exponent == null || exponent.length != 1)
+                return null;
+
+            if (base.length == 1)
+                return new double[] {Math.pow(base[0], exponent[0])};
+
+            return pow(base, exponent[0]);
+        } else if (expression instanceof Function) {
+            Function function = (Function) expression;
+            double[] parameter = convert(function.getParameter(), variableName);
+
+            if (parameter == null || parameter.length != 1)
+                return null;
+
+            return new double[] {function.evaluate(parameter[0])};
+        }
+
+        return null;
+    }
+
+    // a + factor*b
+    private static double[] add (double[] a, double[] b, double factor) {
+        if (a == null || b == null)
+            return null;
+
+        double[] result = Arrays.copyOf(a, Math.max(a.length, b.length));
+        for (int k=0; k<b.length; k++)
+            result[k] += factor * b[k];
+
+        return trim(result);
+    }
+
+    private static double[] multiply (double[] a, double[] b) {
+        if (a == null || b == null)
+            return null;
+
+        if (a.length + b.length - 2 > MAXIMUM_DEGREE)
+            return null;
+
+        double[] result = new double[a.length + b.length - 1];
+        for (int i=0; i<a.length; i++) {
+            if (a[i] == 0)
+                continue;
+
+            for (int j=0; j<b.length; j++)
+                result[i+j] += a[i] * b[j];
+        }
+
+        return trim(result);
+    }
+
+    private static double[] pow (double[] base, double exponent) {
+        if (exponent < 0 || exponent != Math.rint(exponent) || (base.length - 1) * exponent > MAXIMUM_DEGREE)
+            return null;
+
+        double[] result = {1};
+        for (int n=(int) exponent; n>0; n>>=1) {
+            if ((n & 1) != 0)
+                result = multiply(result, base);
+
+            if (n > 1)
+                base = multiply(base, base);
+        }
+
+        return result;
+    }
+
+    // removes leading zero coefficients
+    private static double[] trim (double[] coefficients) {
+        int length = coefficients.length;
+        while (length > 1 && coefficients[length-1] == 0)
+            length--;
+
+        return length < coefficients.length ? Arrays.copyOf(coefficients, length) : coefficients;
+    }
+
+
+    public int getDegree () {
+        return coefficients.length - 1;
+    }
+
+    public double[] getCoefficients () {
+        return coefficients.clone();
+    }
+
+    // 0 for k above the degree
+    public double getCoefficient (int k) {
+        return k < coefficients.length ? coefficients[k] : 0;
+    }
+
+    public boolean isSparse () {
+        return sparseExponents != null;
+    }
+
+
+    public double evaluate (double x) {
+        if (sparseExponents != null) {
+            double p = sparseCoefficients[0];
+            for (int i=1; i<sparseExponents.length; i++)
+                p = p * pow(x, sparseExponents[i-1] - sparseExponents[i]) + sparseCoefficients[i];
+
+            return p * pow(x, sparseExponents[sparseExponents.length-1]);
+        }
+
+        final double[] c = coefficients;
+
+        double p = c[c.length-1];
+        for (int k=c.length-2; k>=0; k--)
+            p = p*x + c[k];
+
+        return p;
+    }
+
+    // value and derivative in one pass
+    public void evaluate (double x, Dual result) {
+        if (sparseExponents != null) {
+            evaluateSparse(x, result);
+            return;
+        }
+
+        final double[] c = coefficients;
+
+        double p = c[c.length-1];
+        double d = 0;
+        for (int k=c.length-2; k>=0; k--) {
+            d = d*x + p;
+            p = p*x + c[k];
+        }
+
+        result.set(p, d);
+    }
+
+    // (p*x^g + c)' = p'*x^g + g*p*x^(g-1)
+    private void evaluateSparse (double x, Dual result) {
+        double p = sparseCoefficients[0];
+        double d = 0;
+        for (int i=1; i<=sparseExponents.length; i++) {
+            int gap = i < sparseExponents.length ? sparseExponents[i-1] - sparseExponents[i] : sparseExponents[i-1];
+            double coefficient = i < sparseExponents.length ? sparseCoefficients[i] : 0;
+
+            if (gap == 0)
+                continue;
+
+            double power = pow(x, gap - 1);
+            d = d * power*x + gap * p * power;
+            p = p * power*x + coefficient;
+        }
+
+        result.set(p, d);
+    }
+
+    // x^n by repeated squaring, which is exact for small integers and much faster than Math.pow
+    private static double pow (double x, int n) {
+        double result = 1;
+        for (; n>0; n>>=1) {
+            if ((n & 1) != 0)
+                result *= x;
+
+            x *= x;
+        }
+
+        return result;
+    }
+
+
+    // all complex roots at once with the aberth-ehrlich method, which converges cubically for simple roots. every root
+    // is corrected by its newton step, repelled by the other roots:
+    // z_i -= w / (1 - w * sum_j 1/(z_i - z_j)) with w = p(z_i) / p'(z_i)
+    public Roots findRoots (int maximumIterationCount) {
+        int degree = getDegree();
+
+        // roots at 0 are split off, so they are exact and the other roots can be placed around a non-zero value
+        int zeroRootCount = 0;
+        while (zeroRootCount < degree && coefficients[zeroRootCount] == 0)
+            zeroRootCount++;
+
+        double[] c = Arrays.copyOfRange(coefficients, zeroRootCount, coefficients.length);
+        int n = c.length - 1;
+
+        double[] real = new double[degree];
+        double[] imaginary = new double[degree];
+        double[] errors = new double[degree];
+        boolean[] converged = new boolean[degree];
+        Arrays.fill(converged, 0, zeroRootCount, true);
+
+        if (n == 0)
+            return new Roots(real, imaginary, errors, converged, 0);
+
+
+        // the start values lie on a circle around the mean of the roots, with the geometric mean of their distances to
+        // it as radius, since |p(center)| = |c_n| * product |center - z_i|. the angles are rotated a bit, so no start
+        // value lies on the real axis
+        double center = -c[n-1] / (n * c[n]);
+        double radius = Math.pow(Math.abs(new Polynomial(c).evaluate(center) / c[n]), 1.0 / n);
+        if (radius == 0 || !Double.isFinite(radius))
+            radius = 1;
+
+        for (int i=0; i<n; i++) {
+            double angle = 2 * Math.PI * i / n + 0.4;
+            real[zeroRootCount + i] = center + radius * Math.cos(angle);
+            imaginary[zeroRootCount + i] = radius * Math.sin(angle);
+        }
+
+
+        Complex value = new Complex(), derivative = new Complex(), sum = new Complex(), difference = new Complex();
+
+        int iterationCount = 0;
+        boolean finished = false;
+        while (!finished && iterationCount < maximumIterationCount) {
+            iterationCount++;
+            finished = true;
+
+            for (int i=zeroRootCount; i<degree; i++) {
+                if (converged[i])
+                    continue;
+
+                double zr = real[i], zi = imaginary[i];
+                double bound = evaluate(c, zr, zi, value, derivative);
+
+                if (value.getAbsolute() <= ROUNDING_ERROR * bound) {
+                    converged[i] = true;
+                    continue;
+                }
+
+                // w = p / p'
+                value.divide(derivative.getReal(), derivative.getImaginary());
+                double wr = value.getReal(), wi = value.getImaginary();
+                errors[i] = n * value.getAbsolute();
+
+                sum.set(0, 0);
+                for (int j=zeroRootCount; j<degree; j++) {
+                    if (j == i)
+                        continue;
+
+                    difference.set(zr - real[j], zi - imaginary[j]);
+                    difference.reciprocal();
+                    sum.set(sum.getReal() + difference.getReal(), sum.getImaginary() + difference.getImaginary());
+                }
+
+                // correction = w / (1 - w * sum)
+                sum.multiply(wr, wi);
+                value.divide(1 - sum.getReal(), -sum.getImaginary());
+
+                if (!value.isFinite()) {
+                    // p' = 0 or two coinciding roots, the plain newton step is not possible either, so the root is
+                    // moved slightly
+                    value.set(ROOT_PRECISION * Math.max(1, Math.hypot(zr, zi)), 0);
+                    finished = false;
+                }
+
+                real[i] = zr - value.getReal();
+                imaginary[i] = zi - value.getImaginary();
+
+                if (value.getAbsolute() <= ROOT_PRECISION * Math.hypot(real[i], imaginary[i]))
+                    converged[i] = true;
+                else
+                    finished = false;
+            }
+        }
+
+        return new Roots(real, imaginary, errors, converged, iterationCount);
+    }
+
+    // value and derivative at a complex point with horner's scheme, returns the bound sum |c_k|*|z|^k, which the
+    // rounding error of the value does not exceed by more than about 2k ulps
+    private static double evaluate (double[] c, double zr, double zi, Complex value, Complex derivative) {
+        double pr = c[c.length-1], pi = 0;
+        double dr = 0, di = 0;
+        double absolute = Math.hypot(zr, zi), bound = Math.abs(pr);
+
+        for (int k=c.length-2; k>=0; k--) {
+            double t = dr*zr - di*zi + pr;
+            di = dr*zi + di*zr + pi;
+            dr = t;
+
+            t = pr*zr - pi*zi + c[k];
+            pi = pr*zi + pi*zr;
+            pr = t;
+
+            bound = bound*absolute + Math.abs(c[k]);
+        }
+
+        value.set(pr, pi);
+        derivative.set(dr, di);
+
+        return (c.length - 1) * bound;
+    }
+
+
+    @Override
+    public String toString () {
+        StringBuilder builder = new StringBuilder();
+
+        for (int k=coefficients.length-1; k>=0; k--) {
+            double coefficient = coefficients[k];
+            if (coefficient == 0 && (k > 0 || builder.length() > 0))
+                continue;
+
+            if (builder.length() > 0)
+                builder.append(coefficient < 0 ? " - " : " + ");
+            else if (coefficient < 0)
+                builder.append('-');
+
+            builder.append(Math.abs(coefficient));
+            if (k > 0)
+                builder.append("*x").append(k > 1 ? "^" + k : "");
+        }
+
+        return builder.toString();
+    }
+
+
+    // one entry per root in each array, multiple roots are repeated. roots at 0 come first
+    public static class Roots {
+
+        private final double[] real;
+        private final double[] imaginary;
+        private final double[] errors;
+        private final boolean[] converged;
+        private final int iterationCount;
+
+
+        private Roots (double[] real, double[] imaginary, double[] errors, boolean[] converged, int iterationCount) {
+            this.real = real;
+            this.imaginary = imaginary;
+            this.errors = errors;
+            this.converged = converged;
+            this.iterationCount = iterationCount;
+        }
+
+
+        public int getSize () {
+            return real.length;
+        }
+
+        public double[] getReal () {
+            return real;
+        }
+
+        public double[] getImaginary () {
+            return imaginary;
+        }
+
+        // n * |p(z)/p'(z)| at the last evaluation of the root, the disk with this radius around it contains a root of the
+        // polynomial (up to rounding errors). multiple roots are only found with about 1/multiplicity of the precision
+        public double[] getErrors () {
+            return errors;
+        }
+
+        public int getIterationCount () {
+            return iterationCount;
+        }
+
+        public boolean isConverged (int index) {
+            return converged[index];
+        }
+
+        public boolean isConverged () {
+            for (boolean c : converged) {
+                if (!c)
+                    return false;
+            }
+
+            return true;
+        }
+
+        // a root is real if its error disk reaches the real axis
+        public boolean isReal (int index) {
+            return Math.abs(imaginary[index]) <= Math.max(errors[index], ROOT_PRECISION * Math.abs(real[index]));
+        }
+
+        // the real parts of the real roots in ascending order
+        public double[] getRealRoots () {
+            int count = 0;
+            for (int i=0; i<real.length; i++) {
+                if (isReal(i))
+                    count++;
+            }
+
+            double[] realRoots = new double[count];
+            for (int i=0, j=0; i<real.length; i++) {
+                if (isReal(i))
+                    realRoots[j++] = real[i];
+            }
+
+            Arrays.sort(realRoots);
+            return realRoots;
+        }
+
+    }
+
+}
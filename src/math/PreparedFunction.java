@@ -0,0 +1,175 @@
+package math;
+
+
+import math.exception.ParseException;
+import math.exception.UnknownVariableException;
+
+import java.util.function.DoubleUnaryOperator;
+
+
+// everything which is needed to run newton's method on a function: the simplified function, its simplified derivative
+// and the compiled evaluators. all expressions (including the unsimplified one) are interned and therefore immutable,
+// interned variables do not cache their slot, so a prepared function can be shared between threads. the compiled
+// evaluators are copied for every caller
+public class PreparedFunction {
+
+    private final String text;
+    private final String variableName;
+
+    private final Expression originalFunction;
+    private final Expression function;
+    private final Expression functionDerivative;
+    private final Polynomial polynomial;
+    private final boolean sumOfMonomials;
+
+    private final CompiledExpression compiledFunction;
+    private final CompiledExpression compiledFunctionAndDerivative;
+
+    // generated on first use, see getGeneratedFunction()
+    private boolean generated;
+    private DoubleUnaryOperator generatedFunction;
+    private DoubleUnaryOperator generatedFunctionDerivative;
+
+
+    private PreparedFunction (String text, String variableName, Expression originalFunction, Expression function, Expression functionDerivative) {
+        this.text = text;
+        this.variableName = variableName;
+        this.originalFunction = originalFunction;
+        this.function = function;
+        this.functionDerivative = functionDerivative;
+
+        polynomial = Polynomial.fromExpression(function, variableName);
+        sumOfMonomials = polynomial != null && Polynomial.isSumOfMonomials(function, variableName);
+        compiledFunction = compile(variableName, function);
+        compiledFunctionAndDerivative = functionDerivative != null ? compile(variableName, function, functionDerivative) : null;
+    }
+
+
+    public static PreparedFunction prepare (String text, String variableName) throws ParseException {
+        if (text == null)
+            throw new NullPointerException("text may not be null");
+
+        checkVariableName(variableName);
+
+        return prepare(ExpressionParser.removeWhitespaces(text), Expression.parse(text), variableName);
+    }
+
+    public static PreparedFunction prepare (Expression function, String variableName) {
+        if (function == null)
+            throw new NullPointerException("function may not be null");
+
+        checkVariableName(variableName);
+
+        return prepare(null, function, variableName);
+    }
+
+    private static PreparedFunction prepare (String text, Expression originalFunction, String variableName) {
+        Expression function = ExpressionSimplifier.simplify(originalFunction);
+
+        Expression functionDerivative;
+        try {
+            functionDerivative = ExpressionSimplifier.simplify(FunctionDerivative.compute(function, variableName));
+        } catch (UnsupportedOperationException e) {
+            functionDerivative = null;
+        }
+
+        // the given tree may still be changed by the caller
+        return new PreparedFunction(text, variableName, new ExpressionInterner().intern(originalFunction), function, functionDerivative);
+    }
+
+    private static void checkVariableName (String variableName) {
+        if (variableName == null)
+            throw new NullPointerException("variable name may not be null");
+
+        if (!VariableDefinition.checkName(variableName))
+            throw new IllegalArgumentException("variable name contains illegal characters");
+    }
+
+    // null if the function contains other variables or is too large for a generated method
+    private static DoubleUnaryOperator generate (String variableName, Expression expression) {
+        try {
+            return ExpressionCodeGenerator.generateUnary(expression, variableName);
+        } catch (UnknownVariableException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    // null if the function contains other variables
+    private static CompiledExpression compile (String variableName, Expression ...expressions) {
+        try {
+            return ExpressionCompiler.compile(expressions, variableName);
+        } catch (UnknownVariableException e) {
+            return null;
+        }
+    }
+
+
+    // the function text without whitespaces, null if the function has not been prepared from a text
+    public String getText () {
+        return text;
+    }
+
+    public String getVariableName () {
+        return variableName;
+    }
+
+    public Expression getFunction () {
+        return function;
+    }
+
+    // the function before it has been simplified, whose constants have not been folded in double yet
+    public Expression getOriginalFunction () {
+        return originalFunction;
+    }
+
+    // null if the derivative cannot be computed
+    public Expression getFunctionDerivative () {
+        return functionDerivative;
+    }
+
+    // null if the function is not a polynomial in the variable
+    public Polynomial getPolynomial () {
+        return polynomial;
+    }
+
+    // the polynomial if the function already is a sum of monomials, so horner's scheme can evaluate it instead of the
+    // compiled program. null otherwise, e.g. for (x-1)^7, whose expanded coefficients cancel close to the root
+    public Polynomial getHornerPolynomial () {
+        return sumOfMonomials ? polynomial : null;
+    }
+
+    // compiled expressions must not be shared between threads, so every call returns a new copy (or null if the
+    // function contains other variables)
+    public CompiledExpression getCompiledFunction () {
+        return compiledFunction != null ? compiledFunction.copy() : null;
+    }
+
+    // function and derivative in one program, see ExpressionCompiler.compile(Expression[], String...)
+    public CompiledExpression getCompiledFunctionAndDerivative () {
+        return compiledFunctionAndDerivative != null ? compiledFunctionAndDerivative.copy() : null;
+    }
+
+    // the function as a generated class, see ExpressionCodeGenerator. the classes of the function and its derivative are
+    // only generated on first use, since each of them is loaded separately. they have no state and are shared between
+    // threads. null if the function contains other variables or is too large
+    public synchronized DoubleUnaryOperator getGeneratedFunction () {
+        generate();
+        return generatedFunction;
+    }
+
+    // null if the derivative cannot be computed or generated
+    public synchronized DoubleUnaryOperator getGeneratedFunctionDerivative () {
+        generate();
+        return generatedFunctionDerivative;
+    }
+
+    private void generate () {
+        if (generated)
+            return;
+
+        generatedFunction = generate(variableName, function);
+        generatedFunctionDerivative = functionDerivative != null ? generate(variableName, functionDerivative) : null;
+        generated = true;
+    }
+
+}
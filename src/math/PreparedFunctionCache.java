@@ -0,0 +1,113 @@
+package math;
+
+
+import math.exception.ParseException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+// thread-safe cache of prepared functions, the least recently used one is removed when the cache is full
+public class PreparedFunctionCache {
+
+    private final int maximumSize;
+
+    // key: variable name + ':' + function text without whitespaces
+    private final Map<String, PreparedFunction> preparedFunctions;
+
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long evictionCount = 0;
+
+
+    public PreparedFunctionCache (int maximumSize) {
+        if (maximumSize <= 0)
+            throw new IllegalArgumentException("maximum size must be positive");
+
+        this.maximumSize = maximumSize;
+
+        preparedFunctions = new LinkedHashMap<String, PreparedFunction>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry (Map.Entry<String, PreparedFunction> eldest) {
+                if (size() <= PreparedFunctionCache.this.maximumSize)
+                    return false;
+
+                evictionCount++;
+                return true;
+            }
+        };
+    }
+
+
+    public PreparedFunction get (String text, String variableName) throws ParseException {
+        if (text == null)
+            throw new NullPointerException("text may not be null");
+
+        if (variableName == null)
+            throw new NullPointerException("variable name may not be null");
+
+
+        String key = variableName + ':' + ExpressionParser.removeWhitespaces(text);
+
+        synchronized (this) {
+            PreparedFunction preparedFunction = preparedFunctions.get(key);
+            if (preparedFunction != null) {
+                hitCount++;
+                return preparedFunction;
+            }
+
+            missCount++;
+        }
+
+        // prepared without holding the lock, so other lookups are not blocked. if several threads prepare the same
+        // function at once, the first result is kept
+        PreparedFunction preparedFunction = PreparedFunction.prepare(text, variableName);
+
+        synchronized (this) {
+            PreparedFunction existing = preparedFunctions.get(key);
+            if (existing != null)
+                return existing;
+
+            preparedFunctions.put(key, preparedFunction);
+        }
+
+        return preparedFunction;
+    }
+
+    public synchronized void clear () {
+        preparedFunctions.clear();
+    }
+
+
+    public int getMaximumSize () {
+        return maximumSize;
+    }
+
+    public synchronized int getSize () {
+        return preparedFunctions.size();
+    }
+
+    public synchronized long getHitCount () {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount () {
+        return missCount;
+    }
+
+    public synchronized long getEvictionCount () {
+        return evictionCount;
+    }
+
+    public synchronized double getHitRate () {
+        long requestCount = hitCount + missCount;
+        return requestCount > 0 ? (double) hitCount / requestCount : 0;
+    }
+
+
+    @Override
+    public synchronized String toString () {
+        return "size: " + preparedFunctions.size() + "/" + maximumSize + ", hits: " + hitCount + ", misses: " + missCount + ", evictions: " + evictionCount;
+    }
+
+}
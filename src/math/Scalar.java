@@ -20,6 +20,8 @@ public class Scalar extends Expression {
     }
 
     public void setValue (double value) {
+        checkMutable();
+
         this.value = value;
     }
 
@@ -29,6 +31,26 @@ public class Scalar extends Expression {
         return value;
     }
 
+    @Override
+    public double evaluate (EvaluationContext context) {
+        return value;
+    }
+
+    @Override
+    public void evaluateDual (EvaluationContext context, int variableSlot, Dual result) {
+        result.set(value, 0);
+    }
+
+    @Override
+    public void evaluateComplex (EvaluationContext context, Complex result) {
+        result.set(value, 0);
+    }
+
+    @Override
+    public void evaluateInterval (EvaluationContext context, Interval result) {
+        result.set(value, value);
+    }
+
     @Override
     public String toString () {
         String str = Double.toString(value);
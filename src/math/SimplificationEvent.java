@@ -0,0 +1,32 @@
+package math;
+
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+
+@Name("math.Simplification")
+@Label("Expression Simplification")
+@Category("Newton's Method")
+@Description("One call of ExpressionSimplifier.simplify")
+class SimplificationEvent extends Event {
+
+    @Label("Iterations")
+    long iterationCount;
+
+    @Label("Rewritten Nodes")
+    long rewrittenNodeCount;
+
+    @Label("Nodes Before")
+    int nodeCountBefore;
+
+    @Label("Nodes After")
+    int nodeCountAfter;
+
+    @Label("Budget Exceeded")
+    boolean budgetExceeded;
+
+}
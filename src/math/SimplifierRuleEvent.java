@@ -0,0 +1,33 @@
+package math;
+
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+
+@Name("math.SimplifierRule")
+@Label("Simplifier Rule")
+@Category("Newton's Method")
+@Description("Applications of one rule during a call of ExpressionSimplifier.simplify")
+@StackTrace(false)
+class SimplifierRuleEvent extends Event {
+
+    @Label("Rule")
+    String rule;
+
+    @Label("Applications")
+    long applicationCount;
+
+    @Label("Changes")
+    long changeCount;
+
+    @Label("Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long time;
+
+}
@@ -0,0 +1,154 @@
+package math;
+
+
+import math.ExpressionSimplifier.Rule;
+
+
+// collects counters and timings of ExpressionSimplifier, the values of several simplifications are accumulated
+public class SimplifierStatistics {
+
+    private static final Rule[] RULES = Rule.values();
+
+
+    private final long[] ruleApplicationCounts = new long[RULES.length];
+    private final long[] ruleChangeCounts = new long[RULES.length];
+    private final long[] ruleTimes = new long[RULES.length];
+
+    private long simplificationCount;
+    private long iterationCount;
+    private long rewrittenNodeCount;
+    private long nodeCountBefore;
+    private long nodeCountAfter;
+    private long time;
+    private long budgetExceededCount;
+
+
+    public long getRuleApplicationCount (Rule rule) {
+        return ruleApplicationCounts[rule.ordinal()];
+    }
+
+    // number of applications which actually changed the expression
+    public long getRuleChangeCount (Rule rule) {
+        return ruleChangeCounts[rule.ordinal()];
+    }
+
+    // in nanoseconds
+    public long getRuleTime (Rule rule) {
+        return ruleTimes[rule.ordinal()];
+    }
+
+    public long getSimplificationCount () {
+        return simplificationCount;
+    }
+
+    // number of times the rules have been applied to a node
+    public long getIterationCount () {
+        return iterationCount;
+    }
+
+    // number of distinct nodes which have been simplified
+    public long getRewrittenNodeCount () {
+        return rewrittenNodeCount;
+    }
+
+    public long getNodeCountBefore () {
+        return nodeCountBefore;
+    }
+
+    public long getNodeCountAfter () {
+        return nodeCountAfter;
+    }
+
+    // in nanoseconds
+    public long getTime () {
+        return time;
+    }
+
+    // number of simplifications which stopped early and returned a partially simplified expression
+    public long getBudgetExceededCount () {
+        return budgetExceededCount;
+    }
+
+
+    public void reset () {
+        for (int i=0; i<RULES.length; i++) {
+            ruleApplicationCounts[i] = 0;
+            ruleChangeCounts[i] = 0;
+            ruleTimes[i] = 0;
+        }
+
+        simplificationCount = 0;
+        iterationCount = 0;
+        rewrittenNodeCount = 0;
+        nodeCountBefore = 0;
+        nodeCountAfter = 0;
+        time = 0;
+        budgetExceededCount = 0;
+    }
+
+    public void add (SimplifierStatistics statistics) {
+        for (int i=0; i<RULES.length; i++) {
+            ruleApplicationCounts[i] += statistics.ruleApplicationCounts[i];
+            ruleChangeCounts[i] += statistics.ruleChangeCounts[i];
+            ruleTimes[i] += statistics.ruleTimes[i];
+        }
+
+        simplificationCount += statistics.simplificationCount;
+        iterationCount += statistics.iterationCount;
+        rewrittenNodeCount += statistics.rewrittenNodeCount;
+        nodeCountBefore += statistics.nodeCountBefore;
+        nodeCountAfter += statistics.nodeCountAfter;
+        time += statistics.time;
+        budgetExceededCount += statistics.budgetExceededCount;
+    }
+
+
+    void recordRule (Rule rule, long time, boolean changed) {
+        ruleApplicationCounts[rule.ordinal()]++;
+        if (changed)
+            ruleChangeCounts[rule.ordinal()]++;
+
+        ruleTimes[rule.ordinal()] += time;
+    }
+
+    void recordIteration () {
+        iterationCount++;
+    }
+
+    void recordRewrittenNode () {
+        rewrittenNodeCount++;
+    }
+
+    void recordSimplification (int nodeCountBefore, int nodeCountAfter, long time, boolean budgetExceeded) {
+        this.simplificationCount++;
+        this.nodeCountBefore += nodeCountBefore;
+        this.nodeCountAfter += nodeCountAfter;
+        this.time += time;
+
+        if (budgetExceeded)
+            this.budgetExceededCount++;
+    }
+
+
+    @Override
+    public String toString () {
+        StringBuilder str = new StringBuilder();
+
+        str.append("simplifications: ").append(simplificationCount)
+                .append(", iterations: ").append(iterationCount)
+                .append(", rewritten nodes: ").append(rewrittenNodeCount)
+                .append(", nodes: ").append(nodeCountBefore).append(" -> ").append(nodeCountAfter)
+                .append(", time: ").append(time / 1000).append(" us")
+                .append(", budget exceeded: ").append(budgetExceededCount);
+
+        for (Rule rule : RULES) {
+            str.append("\n    ").append(rule.name())
+                    .append(": ").append(getRuleApplicationCount(rule)).append(" applications")
+                    .append(", ").append(getRuleChangeCount(rule)).append(" changes")
+                    .append(", ").append(getRuleTime(rule) / 1000).append(" us");
+        }
+
+        return str.toString();
+    }
+
+}
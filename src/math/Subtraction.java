@@ -24,6 +24,8 @@ public class Subtraction extends Expression {
     }
 
     public void setMinuend (Expression minuend) {
+        checkMutable();
+
         if (minuend == null)
             throw new NullPointerException("minuend may not be null");
 
@@ -31,6 +33,8 @@ public class Subtraction extends Expression {
     }
 
     public void setSubtrahend (Expression subtrahend) {
+        checkMutable();
+
         if (subtrahend == null)
             throw new NullPointerException("subtrahend may not be null");
 
@@ -43,6 +47,48 @@ public class Subtraction extends Expression {
         return minuend.evaluate(variables) - subtrahend.evaluate(variables);
     }
 
+    @Override
+    public double evaluate (EvaluationContext context) throws EvaluationException {
+        return minuend.evaluate(context) - subtrahend.evaluate(context);
+    }
+
+    @Override
+    public void evaluateDual (EvaluationContext context, int variableSlot, Dual result) throws EvaluationException {
+        minuend.evaluateDual(context, variableSlot, result);
+        double a = result.getValue();
+        double da = result.getDerivative();
+
+        subtrahend.evaluateDual(context, variableSlot, result);
+        double b = result.getValue();
+        double db = result.getDerivative();
+
+        result.set(a - b, da - db);
+    }
+
+    @Override
+    public void evaluateComplex (EvaluationContext context, Complex result) throws EvaluationException {
+        minuend.evaluateComplex(context, result);
+        double a = result.getReal();
+        double b = result.getImaginary();
+
+        subtrahend.evaluateComplex(context, result);
+        result.set(a - result.getReal(), b - result.getImaginary());
+    }
+
+    @Override
+    public void evaluateInterval (EvaluationContext context, Interval result) throws EvaluationException {
+        minuend.evaluateInterval(context, result);
+        double a = result.getLower();
+        double b = result.getUpper();
+
+        subtrahend.evaluateInterval(context, result);
+        double c = result.getLower();
+        double d = result.getUpper();
+
+        result.set(a, b);
+        result.subtract(c, d);
+    }
+
     @Override
     public String toString () {
         return "(" + minuend.toString() + " - " + subtrahend.toString() + ")";
@@ -7,6 +7,7 @@ import math.exception.UnknownVariableException;
 public class Variable extends Expression {
 
     private String name;
+    private int slot = -1;
 
 
     public Variable (String name) {
@@ -19,6 +20,8 @@ public class Variable extends Expression {
     }
 
     public void setName (String name) {
+        checkMutable();
+
         if (name == null)
             throw new NullPointerException("name may not be null");
 
@@ -27,6 +30,14 @@ public class Variable extends Expression {
 
 
         this.name = name;
+        this.slot = -1;
+    }
+
+    // an interned variable may be evaluated by several threads with different contexts, so only mutable variables
+    // remember their slot
+    void setSlot (int slot) {
+        if (!isFrozen())
+            this.slot = slot;
     }
 
 
@@ -43,6 +54,44 @@ public class Variable extends Expression {
         throw new UnknownVariableException(name);
     }
 
+    @Override
+    public double evaluate (EvaluationContext context) throws EvaluationException {
+        return context.getValue(resolveSlot(context));
+    }
+
+    @Override
+    public void evaluateDual (EvaluationContext context, int variableSlot, Dual result) throws EvaluationException {
+        int slot = resolveSlot(context);
+        result.set(context.getValue(slot), slot == variableSlot ? 1 : 0);
+    }
+
+    int resolveSlot (EvaluationContext context) throws UnknownVariableException {
+        // the slot is resolved by EvaluationContext.bind(), but a variable may be shared between trees with different contexts.
+        // frozen variables look it up by name on every evaluation
+        int slot = this.slot;
+        if (slot < 0 || slot >= context.getVariableCount() || !name.equals(context.getVariableName(slot))) {
+            slot = context.getSlot(name);
+            if (slot == -1)
+                throw new UnknownVariableException(name);
+
+            setSlot(slot);
+        }
+
+        return slot;
+    }
+
+    @Override
+    public void evaluateComplex (EvaluationContext context, Complex result) throws EvaluationException {
+        int slot = resolveSlot(context);
+        result.set(context.getValue(slot), context.getImaginaryValue(slot));
+    }
+
+    @Override
+    public void evaluateInterval (EvaluationContext context, Interval result) throws EvaluationException {
+        int slot = resolveSlot(context);
+        result.set(context.getLowerValue(slot), context.getUpperValue(slot));
+    }
+
     @Override
     public String toString () {
         return name;